@@ -0,0 +1,69 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+
+/**
+ * Generate the in-memory statements of the benchmarks
+ */
+public class BenchmarkStatements {
+
+	private BenchmarkStatements() { }
+
+	public static Statement[] generate(int count) {
+
+		Statement[] statements = new Statement[count];
+
+		for (int i = 0; i < count; i++) {
+			statements[i] = new Statement();
+		}
+		return statements;
+	}
+
+	/**
+	 * @return <code>count</code> statements with a value for each core field (the values of generateJson)
+	 */
+	public static Statement[] generateWithValues(int count) {
+
+		Statement[] statements = new Statement[count];
+
+		for (int i = 0; i < count; i++) {
+
+			statements[i] = new Statement();
+
+			for (CoreStatementField field : CoreStatementField.values()) {
+				statements[i].put(field, field.getName().toLowerCase() + '-' + (i % 1000));
+			}
+		}
+		return statements;
+	}
+
+	/**
+	 * @return a json array of <code>count</code> statements with a value for each core field
+	 */
+	public static String generateJson(int count) {
+
+		StringBuilder sb = new StringBuilder("[");
+
+		for (int i = 0; i < count; i++) {
+
+			if (i > 0) {
+				sb.append(",");
+			}
+			sb.append("{");
+
+			CoreStatementField[] fields = CoreStatementField.values();
+
+			for (int j = 0; j < fields.length; j++) {
+
+				if (j > 0) {
+					sb.append(",");
+				}
+				sb.append('"').append(fields[j].getName()).append("\":\"")
+						.append(fields[j].getName().toLowerCase()).append('-').append(i % 1000).append('"');
+			}
+			sb.append("}");
+		}
+		return sb.append("]").toString();
+	}
+}
@@ -0,0 +1,100 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.apache.log4j.Level;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ExecutionBackend;
+import org.nextprot.pipeline.statement.PipelineElement;
+import org.nextprot.pipeline.statement.PipelineLogging;
+import org.nextprot.pipeline.statement.elements.Sink;
+import org.nextprot.pipeline.statement.muxdemux.Demultiplexer;
+import org.nextprot.pipeline.statement.ports.PipePortType;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan statements out from a Demultiplexer to 1..32 draining sinks (time per statement)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DemultiplexerBenchmark {
+
+	private static final int STATEMENTS = 10000;
+	private static final int CAPACITY = 1024;
+
+	@Param({"1", "2", "4", "8", "16", "32"})
+	private int branches;
+
+	@Param({"MONITOR", "SPSC_RING"})
+	private PipePortType type;
+
+	private Statement[] statements;
+	private SourcePipePort source;
+	private Map<PipelineElement<?>, Future<?>> futures;
+
+	@Setup(org.openjdk.jmh.annotations.Level.Trial)
+	public void generateStatements() {
+
+		PipelineLogging.setLevel(Level.WARN);
+		statements = BenchmarkStatements.generate(STATEMENTS);
+	}
+
+	@Setup(org.openjdk.jmh.annotations.Level.Iteration)
+	public void startDemultiplexer() throws IOException {
+
+		Demultiplexer demux = new Demultiplexer(new SinkPipePort(CAPACITY, type), branches);
+
+		source = new SourcePipePort(CAPACITY);
+		source.connect(demux.getSinkPipePort());
+
+		DrainingSink sink = new DrainingSink(CAPACITY / branches);
+		sink.getSinkPipePort().setType(type);
+		demux.pipe(sink);
+
+		futures = new LinkedHashMap<>();
+		demux.start(ExecutionBackend.threadPerElement(), futures);
+	}
+
+	@TearDown(org.openjdk.jmh.annotations.Level.Iteration)
+	public void stopDemultiplexer() throws IOException, InterruptedException, ExecutionException {
+
+		source.write(Sink.END_OF_FLOW_TOKEN);
+		source.close();
+
+		for (Future<?> future : futures.values()) {
+			future.get();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public void fanOut() throws IOException {
+
+		for (int i = 0; i < STATEMENTS; i += CAPACITY) {
+			source.write(statements, i, Math.min(CAPACITY, STATEMENTS - i));
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.elements.Sink;
+
+import java.io.IOException;
+
+/**
+ * A sink reading statements in bulk until the end of flow and counting them
+ */
+public class DrainingSink extends Sink {
+
+	private static int COUNT = 0;
+
+	private final int id;
+	private volatile long drainedCount;
+
+	public DrainingSink(int capacity) {
+
+		super(capacity);
+		id = ++COUNT;
+	}
+
+	@Override
+	public DrainingSink duplicate(int newCapacity) {
+
+		return new DrainingSink(newCapacity);
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	public long getDrainedCount() {
+
+		return drainedCount;
+	}
+
+	@Override
+	protected void handleFlow() throws IOException {
+
+		Statement[] buffer = new Statement[getSinkPipePort().capacity()];
+		long count = 0;
+		int n;
+
+		while ((n = getSinkPipePort().read(buffer, 0, buffer.length)) != -1) {
+
+			for (int i = 0; i < n; i++) {
+
+				if (buffer[i] == END_OF_FLOW_TOKEN) {
+					drainedCount = count;
+					return;
+				}
+				count++;
+			}
+		}
+		drainedCount = count;
+	}
+}
@@ -0,0 +1,57 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+
+import java.util.List;
+
+/**
+ * Pump pre-generated statements
+ */
+public class InMemoryStatementPump implements Pump<Statement> {
+
+	private final Statement[] statements;
+	private final int capacity;
+	private int next = 0;
+
+	public InMemoryStatementPump(Statement[] statements, int capacity) {
+
+		this.statements = statements;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public Statement pump() {
+
+		return (next < statements.length) ? statements[next++] : null;
+	}
+
+	@Override
+	public int capacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public int pump(List<Statement> collector) {
+
+		if (next == statements.length) {
+			return -1;
+		}
+
+		int count = Math.min(capacity, statements.length - next);
+		for (int i = 0; i < count; i++) {
+			collector.add(statements[next++]);
+		}
+		return count;
+	}
+
+	@Override
+	public boolean isEmpty() {
+
+		return next == statements.length;
+	}
+
+	@Override
+	public void close() { }
+}
@@ -0,0 +1,99 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ports.PipePortType;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer statements from a SourcePipePort to a SinkPipePort drained by another thread
+ * (time per statement)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipePortBenchmark {
+
+	private static final int STATEMENTS = 10000;
+
+	@Param({"MONITOR", "SPSC_RING"})
+	private PipePortType type;
+
+	@Param({"10", "100", "1000"})
+	private int capacity;
+
+	private Statement[] statements;
+	private SourcePipePort source;
+	private Thread drainer;
+
+	@Setup(Level.Trial)
+	public void generateStatements() {
+
+		statements = BenchmarkStatements.generate(STATEMENTS);
+	}
+
+	@Setup(Level.Iteration)
+	public void connect() throws IOException {
+
+		SinkPipePort sink = new SinkPipePort(capacity, type);
+		source = new SourcePipePort(capacity);
+		source.connect(sink);
+
+		drainer = new Thread(() -> {
+			try {
+				Statement[] buffer = new Statement[capacity];
+				while (sink.read(buffer, 0, capacity) != -1) {
+					// drain
+				}
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		}, "drainer");
+		drainer.start();
+	}
+
+	@TearDown(Level.Iteration)
+	public void disconnect() throws IOException, InterruptedException {
+
+		source.close();
+		drainer.join();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public void singleStatementTransfer() throws IOException {
+
+		for (Statement statement : statements) {
+			source.write(statement);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public void bulkTransfer() throws IOException {
+
+		for (int i = 0; i < STATEMENTS; i += capacity) {
+			source.write(statements, i, Math.min(capacity, STATEMENTS - i));
+		}
+	}
+}
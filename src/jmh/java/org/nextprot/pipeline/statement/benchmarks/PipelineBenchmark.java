@@ -0,0 +1,81 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.apache.log4j.Level;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ExecutionBackend;
+import org.nextprot.pipeline.statement.PipelineElement;
+import org.nextprot.pipeline.statement.PipelineLogging;
+import org.nextprot.pipeline.statement.elements.FusedFilter;
+import org.nextprot.pipeline.statement.elements.Source;
+import org.nextprot.pipeline.statement.ports.PipePortType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Run a whole source -> filter -> sink pipeline, including the start of its threads (time per statement)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PipelineBenchmark {
+
+	private static final int STATEMENTS = 100000;
+
+	@Param({"MONITOR", "SPSC_RING"})
+	private PipePortType type;
+
+	@Param({"100", "1000"})
+	private int capacity;
+
+	private Statement[] statements;
+
+	@Setup(org.openjdk.jmh.annotations.Level.Trial)
+	public void generateStatements() {
+
+		PipelineLogging.setLevel(Level.WARN);
+		statements = BenchmarkStatements.generate(STATEMENTS);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public long sourceFilterSink() throws IOException, InterruptedException, ExecutionException {
+
+		Source source = new Source(new InMemoryStatementPump(statements, capacity));
+		FusedFilter filter = new FusedFilter(capacity, (batch, length) -> length);
+		DrainingSink sink = new DrainingSink(capacity);
+
+		filter.getSinkPipePort().setType(type);
+		sink.getSinkPipePort().setType(type);
+
+		source.pipe(filter);
+		filter.pipe(sink);
+
+		Map<PipelineElement<?>, Future<?>> futures = new LinkedHashMap<>();
+		source.start(ExecutionBackend.threadPerElement(), futures);
+
+		for (Future<?> future : futures.values()) {
+			future.get();
+		}
+		return sink.getDrainedCount();
+	}
+}
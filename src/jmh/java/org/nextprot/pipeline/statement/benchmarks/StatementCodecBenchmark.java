@@ -0,0 +1,107 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.elements.Source;
+import org.nextprot.pipeline.statement.source.BinaryStatementPump;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode statements in the binary format vs parse the same statements in json (time per statement)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementCodecBenchmark {
+
+	private static final int STATEMENTS = 10000;
+	private static final int CAPACITY = 1000;
+
+	private final StatementCodec codec = new StatementCodec(Arrays.asList(CoreStatementField.values()));
+
+	private Statement[] statements;
+	private ByteBuffer buffer;
+	private byte[] binary;
+	private String json;
+
+	@Setup(Level.Trial)
+	public void generate() {
+
+		statements = BenchmarkStatements.generateWithValues(STATEMENTS);
+		json = BenchmarkStatements.generateJson(STATEMENTS);
+
+		buffer = ByteBuffer.allocate(1 << 22);
+		codec.encodeHeader(buffer);
+		for (Statement statement : statements) {
+			codec.encode(statement, buffer);
+		}
+		binary = Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public int encodeBinary() {
+
+		buffer.clear();
+
+		for (Statement statement : statements) {
+			codec.encode(statement, buffer);
+		}
+		return buffer.position();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public int pumpBinary() throws IOException {
+
+		return drain(new BinaryStatementPump(new ByteArrayInputStream(binary), codec, CAPACITY));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public int pumpJson() throws IOException {
+
+		return drain(new Source.StatementPump(new StringReader(json), CAPACITY));
+	}
+
+	private static int drain(Pump<Statement> pump) throws IOException {
+
+		List<Statement> collector = new ArrayList<>(CAPACITY);
+
+		int count = 0;
+		int n;
+
+		while ((n = pump.pump(collector)) != -1) {
+			count += n;
+			collector.clear();
+		}
+		pump.close();
+
+		return count;
+	}
+}
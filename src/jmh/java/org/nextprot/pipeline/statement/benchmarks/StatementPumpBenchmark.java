@@ -0,0 +1,67 @@
+package org.nextprot.pipeline.statement.benchmarks;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.elements.Source;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse json statements with Source.StatementPump (time per statement)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StatementPumpBenchmark {
+
+	private static final int STATEMENTS = 10000;
+
+	@Param({"100", "1000"})
+	private int capacity;
+
+	private String json;
+
+	@Setup(Level.Trial)
+	public void generateJson() {
+
+		json = BenchmarkStatements.generateJson(STATEMENTS);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(STATEMENTS)
+	public int pumpJson() throws IOException {
+
+		Source.StatementPump pump = new Source.StatementPump(new StringReader(json), capacity);
+		List<Statement> collector = new ArrayList<>(capacity);
+
+		int count = 0;
+		int n;
+
+		while ((n = pump.pump(collector)) != -1) {
+			count += n;
+			collector.clear();
+		}
+		pump.close();
+
+		return count;
+	}
+}
@@ -0,0 +1,108 @@
+package org.nextprot.pipeline.statement;
+
+import org.apache.log4j.AppenderSkeleton;
+import org.apache.log4j.Layout;
+import org.apache.log4j.spi.LoggingEvent;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * An appender writing the events of each element logger in its own buffered file
+ * <code>&lt;directory&gt;/&lt;element&gt;.log</code>, created on the first event of the element.
+ *
+ * The element name is the last component of the logger name.
+ */
+public class ElementFileAppender extends AppenderSkeleton {
+
+	private final File directory;
+	private final Map<String, Writer> writers = new HashMap<>();
+
+	public ElementFileAppender(File directory, Layout layout) {
+
+		this.directory = directory;
+		this.layout = layout;
+	}
+
+	@Override
+	protected void append(LoggingEvent event) {
+
+		String loggerName = event.getLoggerName();
+		String elementName = loggerName.substring(loggerName.lastIndexOf('.') + 1);
+
+		try {
+			Writer writer = getWriter(elementName);
+
+			writer.write(layout.format(event));
+
+			String[] throwable = event.getThrowableStrRep();
+			if (throwable != null && layout.ignoresThrowable()) {
+
+				for (String line : throwable) {
+					writer.write(line);
+					writer.write(System.lineSeparator());
+				}
+			}
+		} catch (IOException e) {
+			System.err.println(getClass().getSimpleName() + ": cannot write log of " + elementName + ", e=" + e.getMessage());
+		}
+	}
+
+	private Writer getWriter(String elementName) throws IOException {
+
+		Writer writer = writers.get(elementName);
+
+		if (writer == null) {
+
+			if (!directory.isDirectory() && !directory.mkdirs()) {
+				throw new IOException("cannot create directory " + directory);
+			}
+			writer = new BufferedWriter(new FileWriter(new File(directory, elementName + ".log")));
+			writers.put(elementName, writer);
+		}
+		return writer;
+	}
+
+	/**
+	 * Flush all the files
+	 */
+	public synchronized void flush() {
+
+		for (Map.Entry<String, Writer> entry : writers.entrySet()) {
+			try {
+				entry.getValue().flush();
+			} catch (IOException e) {
+				System.err.println(getClass().getSimpleName() + ": cannot flush log of " + entry.getKey() + ", e=" + e.getMessage());
+			}
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+
+		if (closed) {
+			return;
+		}
+		closed = true;
+
+		for (Map.Entry<String, Writer> entry : writers.entrySet()) {
+			try {
+				entry.getValue().close();
+			} catch (IOException e) {
+				System.err.println(getClass().getSimpleName() + ": cannot close log of " + entry.getKey() + ", e=" + e.getMessage());
+			}
+		}
+		writers.clear();
+	}
+
+	@Override
+	public boolean requiresLayout() {
+
+		return true;
+	}
+}
@@ -0,0 +1,77 @@
+package org.nextprot.pipeline.statement;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The backend running the pipeline elements.
+ *
+ * Each element runs until its end of flow and blocks while its pipes are empty or full,
+ * so every element of a running pipeline needs its own (platform or virtual) thread.
+ */
+public interface ExecutionBackend {
+
+	/**
+	 * Run the given element
+	 *
+	 * @return the future completed when the element has stopped
+	 */
+	default Future<?> submit(PipelineElement<?> element) {
+
+		return submit(element.getThreadName(), Executors.callable(element));
+	}
+
+	/**
+	 * Run a task on behalf of an element (ie: the pumping threads of a parallel source)
+	 *
+	 * @param threadName the name of the thread while it runs the task
+	 * @return the future completed when the task has stopped, cancelling it interrupts the task
+	 */
+	<T> Future<T> submit(String threadName, Callable<T> task);
+
+	/**
+	 * Release the threads of this backend once all the pipelines it runs are complete
+	 * (called by a pipeline owning its backend, see Pipeline.open(ExecutionBackend, boolean))
+	 */
+	void shutdown();
+
+	/**
+	 * @return a backend starting a new platform thread per element (the default)
+	 */
+	static ExecutionBackend threadPerElement() {
+
+		return new ThreadPerElementBackend();
+	}
+
+	/**
+	 * @param threadCount the number of platform threads, it has to be greater than or equal to the total number
+	 *                    of elements of the pipelines run concurrently by this backend, plus the pumping threads
+	 *                    of their sources: elements never give their thread back until their end of flow,
+	 *                    those waiting for a thread would block the elements piped to them
+	 * @return a backend running the elements in a fixed pool of platform threads
+	 */
+	static ExecutionBackend fixedThreadPool(int threadCount) {
+
+		return new ExecutorServiceBackend(Executors.newFixedThreadPool(threadCount), true);
+	}
+
+	/**
+	 * @return a backend starting a new virtual thread per element
+	 * @throws UnsupportedOperationException if the JVM does not support virtual threads (Java 21+)
+	 */
+	static ExecutionBackend virtualThreadPerElement() {
+
+		return new ExecutorServiceBackend(ExecutorServiceBackend.newVirtualThreadPerTaskExecutor(), true);
+	}
+
+	/**
+	 * @param executorService an executor managed by the caller (it is not shut down by this backend)
+	 * @return a backend running the elements with the given executor
+	 */
+	static ExecutionBackend of(ExecutorService executorService) {
+
+		return new ExecutorServiceBackend(executorService, false);
+	}
+}
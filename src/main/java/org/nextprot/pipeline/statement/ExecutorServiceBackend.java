@@ -0,0 +1,80 @@
+package org.nextprot.pipeline.statement;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Run the elements with an ExecutorService.
+ *
+ * The thread running an element (or a task) is renamed after the element while it runs.
+ */
+public class ExecutorServiceBackend implements ExecutionBackend {
+
+	private final ExecutorService executorService;
+	private final boolean owned;
+
+	/**
+	 * @param executorService the executor running the elements
+	 * @param owned true if the executor has to be shut down with this backend
+	 */
+	public ExecutorServiceBackend(ExecutorService executorService, boolean owned) {
+
+		this.executorService = executorService;
+		this.owned = owned;
+	}
+
+	@Override
+	public <T> Future<T> submit(String threadName, Callable<T> task) {
+
+		return executorService.submit(() -> {
+
+			Thread thread = Thread.currentThread();
+			String name = thread.getName();
+
+			thread.setName(threadName);
+			try {
+				return task.call();
+			} finally {
+				thread.setName(name);
+			}
+		});
+	}
+
+	@Override
+	public void shutdown() {
+
+		if (owned) {
+			executorService.shutdown();
+		}
+	}
+
+	/**
+	 * Get Executors.newVirtualThreadPerTaskExecutor() by reflection, the code has to compile with Java 8
+	 *
+	 * @throws UnsupportedOperationException if the JVM does not support virtual threads
+	 */
+	static ExecutorService newVirtualThreadPerTaskExecutor() {
+
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new UnsupportedOperationException("virtual threads are not supported by this JVM (Java 21+ required)", e);
+		} catch (InvocationTargetException e) {
+			throw new UnsupportedOperationException("cannot create a virtual thread executor", e.getCause());
+		}
+	}
+
+	/** @return true if the JVM supports virtual threads */
+	public static boolean isVirtualThreadSupported() {
+
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+}
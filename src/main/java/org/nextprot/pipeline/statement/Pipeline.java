@@ -1,47 +1,142 @@
 package org.nextprot.pipeline.statement;
 
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
 import org.nextprot.pipeline.statement.elements.Sink;
 import org.nextprot.pipeline.statement.elements.Source;
+import org.nextprot.pipeline.statement.metrics.ElementMetrics;
+import org.nextprot.pipeline.statement.metrics.PipelineMetrics;
+import org.nextprot.pipeline.statement.muxdemux.DispatchPolicy;
 import org.nextprot.pipeline.statement.muxdemux.DuplicableElement;
+import org.nextprot.pipeline.statement.ports.WaitStrategy;
+import org.nextprot.pipeline.statement.source.SplittableStatementSource;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.function.Function;
 
 public class Pipeline {
 
-	private Source source;
-	private List<Thread> threads;
+	/** The source of the pipeline and the sources of the statements sent back by remote stages */
+	private final List<Source> sources = new ArrayList<>();
+	private Map<PipelineElement<?>, Future<?>> futures = new LinkedHashMap<>();
+	private ScheduledExecutorService metricsScheduler;
+	/** The backend to shut down once the pipeline is complete, null if it is shared with other pipelines */
+	private ExecutionBackend ownedBackend;
 	private final Monitorable monitorable;
 
 	public Pipeline(DataCollector dataCollector) {
 
-		source = dataCollector.getSource();
+		sources.add(dataCollector.getSource());
+		sources.addAll(dataCollector.getReturnSources());
 		monitorable = dataCollector.getMonitorable();
 	}
 
+	/**
+	 * Open the pipeline running each element in a new platform thread
+	 */
 	public void open() {
 
-		threads = new ArrayList<>();
+		open(ExecutionBackend.threadPerElement());
+	}
+
+	/**
+	 * Open the pipeline running the elements with the given backend, shut down once the pipeline is complete
+	 *
+	 * @param backend the backend running the elements (ie: a pool of platform threads or virtual threads)
+	 */
+	public void open(ExecutionBackend backend) {
+
+		open(backend, true);
+	}
+
+	/**
+	 * Open the pipeline running the elements with the given backend
+	 *
+	 * @param backend the backend running the elements (ie: a pool of platform threads or virtual threads)
+	 * @param owned true to shut down the backend once the pipeline is complete, false if it runs other pipelines
+	 *              (the caller then shuts it down)
+	 */
+	public void open(ExecutionBackend backend, boolean owned) {
+
+		futures = new LinkedHashMap<>();
+		ownedBackend = (owned) ? backend : null;
 
-		source.start(threads);
-		for (Thread thread : threads) {
-			System.out.println("Thread "+thread.getName() + ": created");
+		for (Source source : sources) {
+			source.start(backend, futures);
+		}
+		for (PipelineElement<?> element : futures.keySet()) {
+			System.out.println("Thread "+element.getThreadName() + ": created");
 		}
 		monitorable.started();
+
+		long period = monitorable.getMetricsPeriodMillis();
+
+		if (period > 0) {
+
+			metricsScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "PipelineMetrics");
+				thread.setDaemon(true);
+				return thread;
+			});
+			metricsScheduler.scheduleAtFixedRate(this::updateMetrics, period, period, TimeUnit.MILLISECONDS);
+		}
 	}
 
 	/**
-	 * Wait for all threads in the pipe to terminate
+	 * @return a snapshot of the metrics of all the elements of the pipeline
+	 */
+	public PipelineMetrics getMetrics() {
+
+		List<ElementMetrics> elements = futures.keySet().stream()
+				.map(PipelineElement::getMetrics)
+				.collect(Collectors.toList());
+
+		return new PipelineMetrics(System.currentTimeMillis(), elements);
+	}
+
+	private void updateMetrics() {
+
+		try {
+			monitorable.metricsUpdated(getMetrics());
+		} catch (RuntimeException e) {
+			// an exception would cancel the next calls
+			System.err.println("PipelineMetrics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Wait for all elements in the pipe to terminate, then shut down the backend owned by the pipeline
 	 */
 	public void waitForThePipesToComplete() throws InterruptedException {
 
-		for (Thread thread : threads) {
-			thread.join();
-			System.out.println("Thread "+thread.getName() + ": died");
+		for (Map.Entry<PipelineElement<?>, Future<?>> entry : futures.entrySet()) {
+			try {
+				entry.getValue().get();
+			} catch (ExecutionException e) {
+				System.err.println(entry.getKey().getThreadName() + ": " + e.getCause());
+			}
+			System.out.println("Thread "+entry.getKey().getThreadName() + ": died");
+		}
+		if (metricsScheduler != null) {
+			metricsScheduler.shutdownNow();
+		}
+		if (ownedBackend != null) {
+			ownedBackend.shutdown();
+			ownedBackend = null;
 		}
+		updateMetrics();
+		PipelineLogging.flush();
 		monitorable.ended();
 	}
 
@@ -57,15 +152,85 @@ public class Pipeline {
 	interface SourceStep {
 
 		FilterStep source(Pump<Statement> pump);
+
+		/**
+		 * Pump up to <code>prefetchDepth</code> batches ahead on a separate I/O thread
+		 */
+		FilterStep source(Pump<Statement> pump, int prefetchDepth);
+
+		/**
+		 * Pump the splits of the source with <code>parallelism</code> threads into the first pipe
+		 */
+		default FilterStep source(SplittableStatementSource source, int parallelism) throws IOException {
+
+			return source(source, parallelism, 100);
+		}
+
+		FilterStep source(SplittableStatementSource source, int parallelism, int capacity) throws IOException;
+
+		/**
+		 * Pump the given pumps with <code>parallelism</code> threads into the first pipe
+		 */
+		FilterStep source(List<? extends Pump<Statement>> pumps, int parallelism, int capacity);
+
+		/**
+		 * Pump the statements sent to <code>address</code> by <code>connections</code> remote sinks
+		 * (ie: in a worker process running a stage offloaded by a remote step)
+		 */
+		FilterStep remoteSource(InetSocketAddress address, StatementCodec codec, int capacity, int connections) throws IOException;
 	}
 
 	interface FilterStep {
 
 		FilterStep filter(Function<Integer, DuplicableElement> filterProvider) throws IOException;
 
+		/**
+		 * Pipe a filter through a lock-free ring in which both sides wait with the given strategy
+		 */
+		FilterStep filter(Function<Integer, DuplicableElement> filterProvider, WaitStrategy waitStrategy) throws IOException;
+
 		FilterStep demuxFilter(Function<Integer, DuplicableElement> filterProvider, int sourcePipePortCount) throws IOException;
 
+		/**
+		 * Duplicate the chain starting at the filter and distribute the statements with the given policy
+		 * (ie: a KeyPartitionedDispatchPolicy keeps all the statements of an entry in the same chain)
+		 */
+		FilterStep demuxFilter(Function<Integer, DuplicableElement> filterProvider, int sourcePipePortCount, DispatchPolicy dispatchPolicy) throws IOException;
+
+		/**
+		 * Pipe a stateless transform in its own element
+		 * (or append it to the previous element after a fuse step)
+		 */
+		FilterStep transform(StatementTransform transform) throws IOException;
+
+		/**
+		 * Fuse the following transform steps into a single element (the previous element if it is a FusedFilter)
+		 * calling them as a chain on each batch, without any thread or pipe in between
+		 */
+		FilterStep fuse();
+
+		/**
+		 * Merge the chains duplicated by the previous demuxFilter step into a single channel
+		 */
+		FilterStep mux() throws IOException;
+
 		TerminateStep sink(Function<Integer, Sink> sinkProvider) throws IOException;
+
+		/**
+		 * Pipe a sink through a lock-free ring in which both sides wait with the given strategy
+		 */
+		TerminateStep sink(Function<Integer, Sink> sinkProvider, WaitStrategy waitStrategy) throws IOException;
+
+		/**
+		 * Offload the next stage to a worker process: send the statements to the worker listening to <code>worker</code>,
+		 * then pipe the statements the worker sends back to <code>returnAddress</code> to the next elements
+		 */
+		FilterStep remote(InetSocketAddress worker, InetSocketAddress returnAddress, StatementCodec codec) throws IOException;
+
+		/**
+		 * Send the statements to a remote pipeline (ie: back to the process that offloaded the stage run by this worker)
+		 */
+		TerminateStep remoteSink(InetSocketAddress address, StatementCodec codec) throws IOException;
 	}
 
 	interface TerminateStep {
@@ -73,11 +238,24 @@ public class Pipeline {
 		Pipeline build() throws IOException;
 	}
 
-	interface Monitorable {
+	public interface Monitorable {
 
 		void started();
 
 		void ended();
+
+		/**
+		 * Called periodically while the pipeline runs and once more when all the elements have completed
+		 *
+		 * @param metrics a snapshot of the metrics of all the elements
+		 */
+		default void metricsUpdated(PipelineMetrics metrics) { }
+
+		/** @return the period between two metricsUpdated() calls in milliseconds or 0 for no periodic call */
+		default long getMetricsPeriodMillis() {
+
+			return 0;
+		}
 	}
 
 	/**
@@ -113,8 +291,10 @@ public class Pipeline {
 	static class DataCollector {
 
 		private Source source;
+		private final List<Source> returnSources = new ArrayList<>();
 		private Monitorable monitorable;
 		private int demuxSourcePipePortCount;
+		private DispatchPolicy demuxDispatchPolicy;
 		private PipelineElement elementBeforeDemux;
 		private DuplicableElement fromElement;
 
@@ -122,6 +302,10 @@ public class Pipeline {
 			return demuxSourcePipePortCount;
 		}
 
+		public DispatchPolicy getDemuxDispatchPolicy() {
+			return demuxDispatchPolicy;
+		}
+
 		public DuplicableElement getDemuxFromElement() {
 			return fromElement;
 		}
@@ -134,6 +318,10 @@ public class Pipeline {
 			this.demuxSourcePipePortCount = sourcePipePortCount;
 		}
 
+		public void setDemuxDispatchPolicy(DispatchPolicy dispatchPolicy) {
+			this.demuxDispatchPolicy = dispatchPolicy;
+		}
+
 		public void setDemuxFromElement(PipelineElement elementBeforeDemux, DuplicableElement fromElement) {
 			this.elementBeforeDemux = elementBeforeDemux;
 			this.fromElement = fromElement;
@@ -147,6 +335,14 @@ public class Pipeline {
 			this.source = source;
 		}
 
+		public List<Source> getReturnSources() {
+			return returnSources;
+		}
+
+		public void addReturnSource(Source source) {
+			returnSources.add(source);
+		}
+
 		public Monitorable getMonitorable() {
 			return monitorable;
 		}
@@ -1,17 +1,74 @@
 package org.nextprot.pipeline.statement;
 
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointCoordinator;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.elements.FusedFilter;
+import org.nextprot.pipeline.statement.elements.ParallelSource;
 import org.nextprot.pipeline.statement.elements.Sink;
 import org.nextprot.pipeline.statement.elements.Source;
 import org.nextprot.pipeline.statement.muxdemux.Demultiplexer;
+import org.nextprot.pipeline.statement.muxdemux.DispatchPolicy;
 import org.nextprot.pipeline.statement.muxdemux.DuplicableElement;
+import org.nextprot.pipeline.statement.muxdemux.Multiplexer;
+import org.nextprot.pipeline.statement.muxdemux.RoundRobinDispatchPolicy;
+import org.nextprot.pipeline.statement.ports.PipePortType;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.WaitStrategy;
+import org.nextprot.pipeline.statement.remote.RemoteSink;
+import org.nextprot.pipeline.statement.remote.RemoteStatementPump;
+import org.nextprot.pipeline.statement.source.SplittableStatementSource;
 
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.function.Function;
 
 public class PipelineBuilder implements Pipeline.StartStep {
 
 	private final Pipeline.DataCollector dataCollector = new Pipeline.DataCollector();
+	private final PipePortType pipePortType;
+	private Path spillDirectory;
+	private StatementCodec spillCodec;
+	private CheckpointCoordinator checkpoints;
+
+	public PipelineBuilder() {
+
+		this(PipePortType.MONITOR);
+	}
+
+	/**
+	 * @param pipePortType the type of buffer behind the sink pipe ports connecting the elements
+	 */
+	public PipelineBuilder(PipePortType pipePortType) {
+
+		this.pipePortType = pipePortType;
+	}
+
+	/**
+	 * Let the pipes connecting the elements overflow to spill files instead of blocking the upstream elements
+	 * (ie: the source keeps reading its stream while a sink is stalled)
+	 *
+	 * @param directory the directory of the spill files
+	 * @param codec encodes the spilled statements (only the fields of the codec are kept)
+	 */
+	public PipelineBuilder spillover(Path directory, StatementCodec codec) {
+
+		this.spillDirectory = directory;
+		this.spillCodec = codec;
+		return this;
+	}
+
+	/**
+	 * Checkpoint the progress of the run periodically, and resume from the last checkpoint of the coordinator store
+	 * (a checkpointed pipeline cannot have remote steps: the barriers do not cross the wire)
+	 */
+	public PipelineBuilder checkpointing(CheckpointCoordinator checkpoints) {
+
+		this.checkpoints = checkpoints;
+		return this;
+	}
 
 	@Override
 	public Pipeline.SourceStep start(Pipeline.Monitorable monitorable) {
@@ -20,12 +77,57 @@ public class PipelineBuilder implements Pipeline.StartStep {
 		return new SourceStep();
 	}
 
+	/**
+	 * A remote sink would acknowledge the barriers once sent, not once the statements are durable on the other side,
+	 * and the statements sent back to a remote source would not be checkpointed
+	 *
+	 * @throws IllegalStateException if the pipeline is checkpointed
+	 */
+	private void checkNotCheckpointing() {
+
+		if (checkpoints != null) {
+			throw new IllegalStateException("a checkpointed pipeline cannot have remote steps");
+		}
+	}
+
 	public class SourceStep implements Pipeline.SourceStep {
 
 		@Override
 		public Pipeline.FilterStep source(Pump<Statement> pump) {
 
-			final Source source = new Source(pump);
+			return startFrom(new Source(pump));
+		}
+
+		@Override
+		public Pipeline.FilterStep source(Pump<Statement> pump, int prefetchDepth) {
+
+			return startFrom(new Source(pump, prefetchDepth));
+		}
+
+		@Override
+		public Pipeline.FilterStep source(SplittableStatementSource source, int parallelism, int capacity) throws IOException {
+
+			return startFrom(ParallelSource.valueOf(source, parallelism, capacity));
+		}
+
+		@Override
+		public Pipeline.FilterStep source(List<? extends Pump<Statement>> pumps, int parallelism, int capacity) {
+
+			return startFrom(new ParallelSource(pumps, parallelism, capacity));
+		}
+
+		@Override
+		public Pipeline.FilterStep remoteSource(InetSocketAddress address, StatementCodec codec, int capacity, int connections) throws IOException {
+
+			checkNotCheckpointing();
+			return startFrom(new Source(new RemoteStatementPump(address, codec, capacity, connections)));
+		}
+
+		private Pipeline.FilterStep startFrom(Source source) {
+
+			if (checkpoints != null) {
+				source.setCheckpointCoordinator(checkpoints);
+			}
 			dataCollector.setSource(source);
 
 			return new FilterStep(source);
@@ -35,18 +137,31 @@ public class PipelineBuilder implements Pipeline.StartStep {
 	public class FilterStep implements Pipeline.FilterStep {
 
 		private final PipelineElement previousElement;
-
+		/** true if the transform steps are fused into the previous element */
+		private final boolean fusing;
 
 		FilterStep(PipelineElement previousElement) {
 
+			this(previousElement, false);
+		}
+
+		FilterStep(PipelineElement previousElement, boolean fusing) {
+
 			this.previousElement = previousElement;
+			this.fusing = fusing;
 		}
 
 		@Override
 		public Pipeline.FilterStep filter(Function<Integer, DuplicableElement> filterProvider) throws IOException {
 
+			return filter(filterProvider, null);
+		}
+
+		@Override
+		public Pipeline.FilterStep filter(Function<Integer, DuplicableElement> filterProvider, WaitStrategy waitStrategy) throws IOException {
+
 			DuplicableElement pipedFilter = filterProvider.apply(previousElement.getSourcePipePort().capacity());
-			previousElement.pipe(pipedFilter);
+			pipe(pipedFilter, waitStrategy);
 
 			return new FilterStep(pipedFilter);
 		}
@@ -54,24 +169,116 @@ public class PipelineBuilder implements Pipeline.StartStep {
 		@Override
 		public Pipeline.FilterStep demuxFilter(Function<Integer, DuplicableElement> filterProvider, int sourcePipePortCount) throws IOException {
 
+			return demuxFilter(filterProvider, sourcePipePortCount, new RoundRobinDispatchPolicy());
+		}
+
+		@Override
+		public Pipeline.FilterStep demuxFilter(Function<Integer, DuplicableElement> filterProvider, int sourcePipePortCount, DispatchPolicy dispatchPolicy) throws IOException {
+
 			DuplicableElement pipedFilter = filterProvider.apply(previousElement.getSourcePipePort().capacity());
-			previousElement.pipe(pipedFilter);
+			pipe(pipedFilter, null);
 
 			dataCollector.setDemuxSourcePipePortCount(sourcePipePortCount);
+			dataCollector.setDemuxDispatchPolicy(dispatchPolicy);
 			dataCollector.setDemuxFromElement(previousElement, pipedFilter);
 
 			return new FilterStep(pipedFilter);
 		}
 
+		@Override
+		public Pipeline.FilterStep transform(StatementTransform transform) throws IOException {
+
+			if (fusing && previousElement instanceof FusedFilter) {
+
+				((FusedFilter) previousElement).then(transform);
+				return this;
+			}
+
+			FusedFilter pipedFilter = new FusedFilter(previousElement.getSourcePipePort().capacity(), transform);
+			pipe(pipedFilter, null);
+
+			return new FilterStep(pipedFilter, fusing);
+		}
+
+		@Override
+		public Pipeline.FilterStep fuse() {
+
+			return new FilterStep(previousElement, true);
+		}
+
+		@Override
+		public Pipeline.FilterStep mux() throws IOException {
+
+			int sinkPipePortCount = (dataCollector.getDemuxFromElement() != null) ? dataCollector.getDemuxSourcePipePortCount() : 1;
+
+			Multiplexer multiplexer = new Multiplexer(previousElement.getSourcePipePort().capacity(), sinkPipePortCount);
+			previousElement.pipe(multiplexer);
+
+			return new FilterStep(multiplexer);
+		}
+
 		@Override
 		public Pipeline.TerminateStep sink(Function<Integer, Sink> sinkProvider) throws IOException {
 
+			return sink(sinkProvider, null);
+		}
+
+		@Override
+		public Pipeline.TerminateStep sink(Function<Integer, Sink> sinkProvider, WaitStrategy waitStrategy) throws IOException {
+
 			Sink sink = sinkProvider.apply(1);
-			previousElement.pipe(sink);
+			pipe(sink, waitStrategy);
 
 			return new TerminateStep();
 		}
 
+		@Override
+		public Pipeline.FilterStep remote(InetSocketAddress worker, InetSocketAddress returnAddress, StatementCodec codec) throws IOException {
+
+			checkNotCheckpointing();
+
+			int capacity = previousElement.getSourcePipePort().capacity();
+
+			// listens right away: the worker sends back its first statements before the end of the flow
+			Source returnSource = new Source(new RemoteStatementPump(returnAddress, codec.copy(), capacity));
+
+			pipe(new RemoteSink(capacity, worker, codec), null);
+			dataCollector.addReturnSource(returnSource);
+
+			return new FilterStep(returnSource);
+		}
+
+		@Override
+		public Pipeline.TerminateStep remoteSink(InetSocketAddress address, StatementCodec codec) throws IOException {
+
+			checkNotCheckpointing();
+			pipe(new RemoteSink(previousElement.getSourcePipePort().capacity(), address, codec), null);
+
+			return new TerminateStep();
+		}
+
+		/**
+		 * Pipe the previous element to the next element
+		 *
+		 * @param nextElement the element to connect
+		 * @param waitStrategy the wait strategy of the connection or null to use the default port type
+		 */
+		private void pipe(DuplicableElement nextElement, WaitStrategy waitStrategy) throws IOException {
+
+			SinkPipePort port = nextElement.getSinkPipePort();
+
+			if (waitStrategy != null) {
+				port.setType(PipePortType.SPSC_RING);
+				port.setWaitStrategy(waitStrategy);
+			} else {
+				port.setType(pipePortType);
+			}
+			if (spillDirectory != null) {
+				port.setSpillover(spillDirectory, spillCodec);
+			}
+			previousElement.pipe(nextElement);
+		}
+
 		public class TerminateStep implements Pipeline.TerminateStep {
 
 			@Override
@@ -82,7 +289,7 @@ public class PipelineBuilder implements Pipeline.StartStep {
 					DuplicableElement fromElement = dataCollector.getDemuxFromElement();
 
 					Demultiplexer demultiplexer = new Demultiplexer(fromElement.getSinkPipePort(),
-							dataCollector.getDemuxSourcePipePortCount());
+							dataCollector.getDemuxSourcePipePortCount(), dataCollector.getDemuxDispatchPolicy());
 
 					demultiplexer.pipe(fromElement);
 
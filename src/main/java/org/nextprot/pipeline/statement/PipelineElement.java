@@ -1,13 +1,14 @@
 package org.nextprot.pipeline.statement;
 
+import org.apache.log4j.Logger;
+import org.nextprot.pipeline.statement.metrics.ElementMetrics;
 import org.nextprot.pipeline.statement.ports.SinkPipePort;
 import org.nextprot.pipeline.statement.ports.SourcePipePort;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.PrintStream;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 
 /**
  * This class represent an element of the pipeline
@@ -32,28 +33,39 @@ public interface PipelineElement<E extends PipelineElement> extends Runnable {
 
 	/**
 	 * Start the element and the following connected element
-	 * @param collector collect running pipeline elements needed for thread management
+	 * @param backend the backend running the elements
+	 * @param collector collect the futures of the running pipeline elements needed for thread management
 	 */
-	void start(List<Thread> collector);
+	void start(ExecutionBackend backend, Map<PipelineElement<?>, Future<?>> collector);
 
 	/** Stop the processing */
 	void stop() throws IOException;
 
-	/** @return the log stream */
-	PrintStream getLogStream();
+	/** @return a snapshot of the metrics of this element */
+	ElementMetrics getMetrics();
+
+	/** @return the logger of this element (see PipelineLogging) */
+	default Logger getLogger() {
+
+		return PipelineLogging.getLogger(getThreadName());
+	}
 
 	/** log a message */
 	default void printlnTextInLog(String message) {
 
-		getLogStream().println(getThreadName()+":" + message);
+		getLogger().info(message);
 	}
 
-	/** @return output stream for log messages */
-	default PrintStream createLogStream() {
-		try {
-			return new PrintStream(new File("logs"+File.separator+getThreadName()+".log"));
-		} catch (FileNotFoundException e) {
-			throw new IllegalStateException("Cannot create log file for pipeline element "+ getThreadName(), e);
+	/**
+	 * log a message at debug level, the message is only built if debug is enabled
+	 * (note: per-statement loops should rather test getLogger().isDebugEnabled() once per batch)
+	 */
+	default void debugInLog(Supplier<String> message) {
+
+		Logger logger = getLogger();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug(message.get());
 		}
 	}
 }
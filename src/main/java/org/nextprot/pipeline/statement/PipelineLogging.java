@@ -0,0 +1,118 @@
+package org.nextprot.pipeline.statement;
+
+import org.apache.log4j.AsyncAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+
+import java.io.File;
+
+/**
+ * The loggers of the pipeline elements.
+ *
+ * Each element logs through its own logger named after the element thread. Unless the parent logger
+ * is configured by log4j, events are queued to an AsyncAppender and written by its single dispatcher thread
+ * in buffered files <code>logs/&lt;thread&gt;.log</code>, created on the first event of each element.
+ *
+ * The default level is INFO: per-statement messages are logged at DEBUG level.
+ */
+public class PipelineLogging {
+
+	/** The name of the parent of all element loggers */
+	public static final String ELEMENT_LOGGER_PARENT = PipelineElement.class.getName();
+
+	private static final String LOG_DIRECTORY = "logs";
+	private static final String LAYOUT_PATTERN = "%d{ISO8601} %-5p %c{1}:%m%n";
+	private static final int ASYNC_BUFFER_SIZE = 8192;
+
+	private static volatile boolean configured = false;
+
+	private static AsyncAppender asyncAppender;
+	private static ElementFileAppender fileAppender;
+
+	private PipelineLogging() { }
+
+	/**
+	 * @param elementName the name of the element thread
+	 * @return the logger of the element
+	 */
+	public static Logger getLogger(String elementName) {
+
+		if (!configured) {
+			configure();
+		}
+		return Logger.getLogger(ELEMENT_LOGGER_PARENT + "." + elementName);
+	}
+
+	/**
+	 * Set the level of all element loggers (ie: DEBUG to log every statement)
+	 */
+	public static void setLevel(Level level) {
+
+		getParentLogger().setLevel(level);
+	}
+
+	/**
+	 * Flush the files of the events already dispatched by the asynchronous appender
+	 */
+	public static synchronized void flush() {
+
+		if (fileAppender != null) {
+			fileAppender.flush();
+		}
+	}
+
+	/**
+	 * Dispatch the pending events and close all the files
+	 */
+	public static synchronized void shutdown() {
+
+		if (asyncAppender != null) {
+
+			getParentLogger().removeAppender(asyncAppender);
+			// drains the queued events then closes the file appender
+			asyncAppender.close();
+
+			asyncAppender = null;
+			fileAppender = null;
+			configured = false;
+		}
+	}
+
+	private static Logger getParentLogger() {
+
+		if (!configured) {
+			configure();
+		}
+		return Logger.getLogger(ELEMENT_LOGGER_PARENT);
+	}
+
+	private static synchronized void configure() {
+
+		if (configured) {
+			return;
+		}
+
+		Logger parent = Logger.getLogger(ELEMENT_LOGGER_PARENT);
+
+		// do not override a log4j configuration
+		if (!parent.getAllAppenders().hasMoreElements()) {
+
+			fileAppender = new ElementFileAppender(new File(LOG_DIRECTORY), new PatternLayout(LAYOUT_PATTERN));
+
+			asyncAppender = new AsyncAppender();
+			asyncAppender.setName("pipeline-elements");
+			asyncAppender.setBufferSize(ASYNC_BUFFER_SIZE);
+			asyncAppender.addAppender(fileAppender);
+
+			parent.addAppender(asyncAppender);
+			parent.setAdditivity(false);
+
+			Runtime.getRuntime().addShutdownHook(new Thread(PipelineLogging::shutdown, "PipelineLogging-shutdown"));
+		}
+		if (parent.getLevel() == null) {
+			parent.setLevel(Level.INFO);
+		}
+		configured = true;
+	}
+}
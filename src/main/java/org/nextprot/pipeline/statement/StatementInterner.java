@@ -0,0 +1,58 @@
+package org.nextprot.pipeline.statement;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.StatementField;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A transform replacing the values of the given fields by their instance in a shared dictionary.
+ *
+ * Fields whose values are unique (ie: the statement id) would only fill the dictionary: only the fields
+ * whose values repeat should be interned.
+ */
+public class StatementInterner implements StatementTransform {
+
+	private final ValueDictionary dictionary;
+	private final Set<StatementField> fields;
+
+	/**
+	 * @param fields the fields to intern or null for all the fields
+	 */
+	public StatementInterner(ValueDictionary dictionary, Collection<? extends StatementField> fields) {
+
+		this.dictionary = dictionary;
+		this.fields = (fields != null) ? new HashSet<>(fields) : null;
+	}
+
+	public ValueDictionary getDictionary() {
+
+		return dictionary;
+	}
+
+	/**
+	 * Intern the values of the statement in place
+	 */
+	public Statement intern(Statement statement) {
+
+		for (Map.Entry<StatementField, String> entry : statement.entrySet()) {
+
+			if (fields == null || fields.contains(entry.getKey())) {
+				entry.setValue(dictionary.intern(entry.getValue()));
+			}
+		}
+		return statement;
+	}
+
+	@Override
+	public int transform(Statement[] statements, int length) {
+
+		for (int i = 0; i < length; i++) {
+			intern(statements[i]);
+		}
+		return length;
+	}
+}
@@ -0,0 +1,45 @@
+package org.nextprot.pipeline.statement;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.commons.statements.specs.StatementField;
+import org.nextprot.commons.statements.specs.StatementSpecifications;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Functions extracting keys from statements
+ */
+public class StatementKeys {
+
+	private StatementKeys() { }
+
+	/** @return the neXtProt entry accession of a statement */
+	public static Function<Statement, String> entryAccession() {
+
+		return statement -> statement.getValue(CoreStatementField.ENTRY_ACCESSION);
+	}
+
+	/**
+	 * @param specifications the specifications of the statement source
+	 * @return the concatenated values of the fields contributing to the unicity key
+	 */
+	public static Function<Statement, String> unicityKey(StatementSpecifications specifications) {
+
+		List<StatementField> fields = specifications.getFields().stream()
+				.filter(StatementField::isPartOfUnicityKey)
+				.collect(Collectors.toList());
+
+		return statement -> {
+
+			StringBuilder sb = new StringBuilder();
+
+			for (StatementField field : fields) {
+				sb.append(statement.getValue(field)).append('|');
+			}
+			return sb.toString();
+		};
+	}
+}
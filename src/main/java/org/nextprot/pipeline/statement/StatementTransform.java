@@ -0,0 +1,66 @@
+package org.nextprot.pipeline.statement;
+
+import org.nextprot.commons.statements.Statement;
+
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * A stateless transformation of a batch of statements.
+ *
+ * Contrary to a {@link Filter}, a transform does not read or write any port: consecutive transforms
+ * can be fused and called as a chain on the same batch in a single pipeline element (see FusedFilter).
+ * The same instance may be shared by the duplicated chains of a Demultiplexer, it has to be thread-safe.
+ */
+@FunctionalInterface
+public interface StatementTransform {
+
+	/**
+	 * Transform the statements in place
+	 *
+	 * @param statements the batch of statements (without END_OF_FLOW_TOKEN)
+	 * @param length the number of statements in the batch
+	 * @return the number of statements kept at the beginning of the batch (at most <code>length</code>)
+	 */
+	int transform(Statement[] statements, int length);
+
+	/**
+	 * @return a transform replacing each statement by the result of the given function,
+	 * the statements mapped to null are dropped (a null left in the batch would be taken for the END_OF_FLOW_TOKEN)
+	 */
+	static StatementTransform map(UnaryOperator<Statement> function) {
+
+		return (statements, length) -> {
+
+			int kept = 0;
+
+			for (int i = 0; i < length; i++) {
+
+				Statement statement = function.apply(statements[i]);
+
+				if (statement != null) {
+					statements[kept++] = statement;
+				}
+			}
+			return kept;
+		};
+	}
+
+	/**
+	 * @return a transform keeping only the statements matching the given predicate
+	 */
+	static StatementTransform filter(Predicate<Statement> predicate) {
+
+		return (statements, length) -> {
+
+			int kept = 0;
+
+			for (int i = 0; i < length; i++) {
+				if (predicate.test(statements[i])) {
+					statements[kept++] = statements[i];
+				}
+			}
+			return kept;
+		};
+	}
+}
@@ -0,0 +1,24 @@
+package org.nextprot.pipeline.statement;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Start each element (or task) in its own new platform thread named after the element
+ */
+public class ThreadPerElementBackend implements ExecutionBackend {
+
+	@Override
+	public <T> Future<T> submit(String threadName, Callable<T> task) {
+
+		FutureTask<T> future = new FutureTask<>(task);
+
+		new Thread(future, threadName).start();
+
+		return future;
+	}
+
+	@Override
+	public void shutdown() { }
+}
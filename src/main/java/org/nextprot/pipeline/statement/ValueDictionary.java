@@ -0,0 +1,142 @@
+package org.nextprot.pipeline.statement;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded concurrent dictionary of field values.
+ *
+ * Interning a value returns the instance already in the dictionary, so that the statements in flight
+ * share the strings of the values that repeat (source names, evidence codes, entry accessions...).
+ * Each value in the dictionary also gets an int id that can stand for it in hashing or grouping.
+ *
+ * When the dictionary is full new values are not added anymore: they are returned as is.
+ */
+public class ValueDictionary {
+
+	private final int maxSize;
+	private final ConcurrentHashMap<String, Entry> entries;
+	private final AtomicInteger size = new AtomicInteger(0);
+	private final AtomicInteger nextId = new AtomicInteger(0);
+
+	private final LongAdder hitCount = new LongAdder();
+	private final LongAdder rejectedCount = new LongAdder();
+	private final LongAdder savedBytes = new LongAdder();
+
+	/**
+	 * @param maxSize the maximum number of distinct values in the dictionary
+	 */
+	public ValueDictionary(int maxSize) {
+
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("Dictionary size <= 0");
+		}
+		this.maxSize = maxSize;
+		this.entries = new ConcurrentHashMap<>(Math.min(maxSize, 1 << 16));
+	}
+
+	/**
+	 * @return the instance of the value in the dictionary or the given value if the dictionary is full
+	 */
+	public String intern(String value) {
+
+		if (value == null) {
+			return null;
+		}
+
+		Entry entry = entries.get(value);
+
+		if (entry == null) {
+
+			if (size.incrementAndGet() > maxSize) {
+				size.decrementAndGet();
+				rejectedCount.increment();
+				return value;
+			}
+
+			entry = entries.putIfAbsent(value, new Entry(value, nextId.getAndIncrement()));
+
+			// added by this thread
+			if (entry == null) {
+				return value;
+			}
+			size.decrementAndGet();
+		}
+
+		hitCount.increment();
+		if (entry.value != value) {
+			savedBytes.add(estimateSize(value));
+		}
+		return entry.value;
+	}
+
+	/**
+	 * @return the id of the value or -1 if it is not in the dictionary
+	 */
+	public int getId(String value) {
+
+		Entry entry = (value != null) ? entries.get(value) : null;
+
+		return (entry != null) ? entry.id : -1;
+	}
+
+	/** @return the number of distinct values in the dictionary */
+	public int size() {
+
+		return size.get();
+	}
+
+	public int getMaxSize() {
+
+		return maxSize;
+	}
+
+	/** @return the number of values found in the dictionary */
+	public long getHitCount() {
+
+		return hitCount.sum();
+	}
+
+	/** @return the number of new values not added because the dictionary was full */
+	public long getRejectedCount() {
+
+		return rejectedCount.sum();
+	}
+
+	/**
+	 * @return an estimate of the heap no longer taken by the copies of the values replaced by their dictionary instance
+	 * (once the copies are garbage collected)
+	 */
+	public long getSavedBytes() {
+
+		return savedBytes.sum();
+	}
+
+	/**
+	 * @return the estimated size of a String with its char array (Java 8 layout with compressed oops)
+	 */
+	static long estimateSize(String value) {
+
+		return 24 + ((16 + 2L * value.length() + 7) & ~7L);
+	}
+
+	@Override
+	public String toString() {
+
+		return "dictionary: " + size() + "/" + maxSize + " values, " + getHitCount() + " hits, " +
+				getRejectedCount() + " rejected, ~" + getSavedBytes() / 1024 + " KiB saved";
+	}
+
+	private static class Entry {
+
+		private final String value;
+		private final int id;
+
+		private Entry(String value, int id) {
+
+			this.value = value;
+			this.id = id;
+		}
+	}
+}
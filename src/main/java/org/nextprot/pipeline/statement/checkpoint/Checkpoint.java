@@ -0,0 +1,59 @@
+package org.nextprot.pipeline.statement.checkpoint;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The progress of a pipeline run: the number of statements pumped from each split of the source
+ * and handled by all the sinks
+ */
+public class Checkpoint {
+
+	/** The offset of a split pumped to the end */
+	public static final long DONE = -1;
+
+	private final long id;
+	private final Map<String, Long> offsets;
+
+	/**
+	 * @param offsets the number of statements pumped from each split (or DONE)
+	 */
+	public Checkpoint(long id, Map<String, Long> offsets) {
+
+		this.id = id;
+		this.offsets = Collections.unmodifiableMap(new HashMap<>(offsets));
+	}
+
+	public long getId() {
+
+		return id;
+	}
+
+	public Map<String, Long> getOffsets() {
+
+		return offsets;
+	}
+
+	/** @return the number of statements of the split to skip (0 if the split is unknown) */
+	public long getOffset(String split) {
+
+		Long offset = offsets.get(split);
+
+		return (offset == null || offset == DONE) ? 0 : offset;
+	}
+
+	/** @return true if the split was pumped to the end */
+	public boolean isDone(String split) {
+
+		Long offset = offsets.get(split);
+
+		return offset != null && offset == DONE;
+	}
+
+	@Override
+	public String toString() {
+
+		return "checkpoint " + id + " " + offsets;
+	}
+}
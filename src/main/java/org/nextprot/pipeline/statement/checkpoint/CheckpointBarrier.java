@@ -0,0 +1,74 @@
+package org.nextprot.pipeline.statement.checkpoint;
+
+import org.nextprot.commons.statements.Statement;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A marker flowing through the pipes with the statements: each sink acknowledges it once all the statements
+ * before it are durable, and the checkpoint it carries is committed when every sink reached by the barrier has
+ * acknowledged it.
+ *
+ * Pipe ports hand the barrier over to their element between two reads (see SinkPipePort.setBarrierHandler),
+ * so elements never see it among the statements they process. The readers of raw statements check for it
+ * explicitly: a Multiplexer passes it on from its fan-in pipe, the stream and reactive adapters of pumps drop it.
+ */
+public final class CheckpointBarrier extends Statement {
+
+	private final Checkpoint checkpoint;
+	private final boolean last;
+	private final CheckpointCoordinator coordinator;
+
+	/** The number of acknowledgements missing before the checkpoint is committed */
+	private final AtomicInteger pendingAcks = new AtomicInteger(1);
+
+	CheckpointBarrier(Checkpoint checkpoint, boolean last, CheckpointCoordinator coordinator) {
+
+		this.checkpoint = checkpoint;
+		this.last = last;
+		this.coordinator = coordinator;
+	}
+
+	public Checkpoint getCheckpoint() {
+
+		return checkpoint;
+	}
+
+	/** @return true if the barrier follows the last statement of the source */
+	public boolean isLast() {
+
+		return last;
+	}
+
+	/**
+	 * The barrier is sent to <code>branches</code> elements instead of one (ie: by a demultiplexer):
+	 * each of them will be acknowledged
+	 */
+	public void fork(int branches) {
+
+		pendingAcks.addAndGet(branches - 1);
+	}
+
+	/**
+	 * Acknowledges that all the statements before this barrier are durable
+	 */
+	public void acknowledge() throws IOException {
+
+		if (pendingAcks.decrementAndGet() == 0) {
+			coordinator.commit(this);
+		}
+	}
+
+	@Override
+	public boolean equals(Object o) {
+
+		return this == o;
+	}
+
+	@Override
+	public int hashCode() {
+
+		return System.identityHashCode(this);
+	}
+}
@@ -0,0 +1,160 @@
+package org.nextprot.pipeline.statement.checkpoint;
+
+import org.apache.log4j.Logger;
+import org.nextprot.pipeline.statement.PipelineLogging;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates the checkpoints of a pipeline run.
+ *
+ * The source asks for a barrier each time a checkpoint is due and writes it after the statements pumped so far.
+ * Once the barrier is acknowledged by all the sinks, its checkpoint is committed and saved in the store by a
+ * background thread, so that neither the source nor the sinks wait for the store. Once the last barrier,
+ * following the end of the source, is acknowledged the run is complete: the sink acknowledging it clears the store
+ * (after the pending saves), so that the next run starts from scratch.
+ *
+ * A coordinator created on a store holding the checkpoint of a previous run restores it: the source then skips
+ * the statements already committed.
+ */
+public class CheckpointCoordinator {
+
+	private final CheckpointStore store;
+	private final long intervalNanos;
+	private final Checkpoint restored;
+	private final Logger logger = PipelineLogging.getLogger("Checkpoint");
+
+	private final ExecutorService persister = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "Checkpoint-persister");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private long nextId;
+	private volatile long lastBarrierNanos;
+	private volatile Checkpoint committed;
+
+	/**
+	 * @param interval the time between two barriers
+	 */
+	public CheckpointCoordinator(CheckpointStore store, long interval, TimeUnit unit) throws IOException {
+
+		this.store = store;
+		this.intervalNanos = unit.toNanos(interval);
+		this.restored = store.load();
+		this.committed = restored;
+		this.nextId = (restored != null) ? restored.getId() + 1 : 1;
+		this.lastBarrierNanos = System.nanoTime();
+
+		if (restored != null) {
+			logger.info("resuming from " + restored);
+		}
+	}
+
+	/** @return the checkpoint of the previous run or null if the run starts from scratch */
+	public Checkpoint getRestoredCheckpoint() {
+
+		return restored;
+	}
+
+	/** @return the last committed checkpoint or null if none was committed yet */
+	public Checkpoint getCommittedCheckpoint() {
+
+		return committed;
+	}
+
+	/** @return the number of statements of the split committed by the previous run */
+	public long getRestoredOffset(String split) {
+
+		return (restored != null) ? restored.getOffset(split) : 0;
+	}
+
+	/** @return true if the split was pumped to the end by the previous run */
+	public boolean isRestoredDone(String split) {
+
+		return restored != null && restored.isDone(split);
+	}
+
+	/** @return true if the interval since the last barrier has elapsed */
+	public boolean isDue() {
+
+		return System.nanoTime() - lastBarrierNanos >= intervalNanos;
+	}
+
+	/**
+	 * Create the next barrier (the caller must not write statements concurrently between taking the offsets and
+	 * writing the barrier)
+	 *
+	 * @param offsets the number of statements of each split written before the barrier (or Checkpoint.DONE)
+	 * @param last true if no statement will follow the barrier
+	 */
+	public synchronized CheckpointBarrier newBarrier(Map<String, Long> offsets, boolean last) {
+
+		lastBarrierNanos = System.nanoTime();
+
+		return new CheckpointBarrier(new Checkpoint(nextId++, offsets), last, this);
+	}
+
+	/**
+	 * Commit the checkpoint of a barrier acknowledged by all the sinks
+	 */
+	void commit(CheckpointBarrier barrier) throws IOException {
+
+		Checkpoint checkpoint = barrier.getCheckpoint();
+
+		synchronized (this) {
+			// barriers are acknowledged in order by each sink, so are they committed
+			if (committed != null && committed.getId() >= checkpoint.getId()) {
+				return;
+			}
+			committed = checkpoint;
+		}
+
+		if (!barrier.isLast()) {
+			persister.submit(() -> save(checkpoint));
+			return;
+		}
+
+		try {
+			persister.submit(() -> complete(checkpoint)).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			throw new IOException("cannot complete the run at " + checkpoint, e.getCause());
+		} finally {
+			persister.shutdown();
+		}
+	}
+
+	/**
+	 * Clear the store once the run is complete
+	 */
+	private Void complete(Checkpoint checkpoint) throws IOException {
+
+		try {
+			store.clear();
+			logger.info(checkpoint + " committed, run complete");
+		} catch (IOException e) {
+			logger.error("cannot clear the checkpoint store after " + checkpoint + ": " + e.getMessage());
+			throw e;
+		}
+		return null;
+	}
+
+	private Void save(Checkpoint checkpoint) throws IOException {
+
+		try {
+			store.save(checkpoint);
+			logger.info(checkpoint + " committed");
+		} catch (IOException e) {
+			logger.error("cannot save " + checkpoint + ": " + e.getMessage());
+			throw e;
+		}
+		return null;
+	}
+}
@@ -0,0 +1,103 @@
+package org.nextprot.pipeline.statement.checkpoint;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Persists the last committed checkpoint of a run in a properties file, until the run is complete:
+ * <pre>
+ *   id=12
+ *   split.0=done
+ *   split.1=250000
+ * </pre>
+ *
+ * The file is replaced atomically so that a run dying while saving leaves the previous checkpoint.
+ */
+public class CheckpointStore {
+
+	private static final String ID = "id";
+	private static final String SPLIT_PREFIX = "split.";
+	private static final String DONE = "done";
+
+	private final Path file;
+
+	public CheckpointStore(Path file) {
+
+		this.file = file;
+	}
+
+	public Path getFile() {
+
+		return file;
+	}
+
+	/**
+	 * @return the last saved checkpoint or null if none was saved
+	 */
+	public Checkpoint load() throws IOException {
+
+		if (!Files.exists(file)) {
+			return null;
+		}
+
+		Properties properties = new Properties();
+
+		try (InputStream in = Files.newInputStream(file)) {
+			properties.load(in);
+		}
+
+		Map<String, Long> offsets = new HashMap<>();
+
+		for (String key : properties.stringPropertyNames()) {
+
+			if (key.startsWith(SPLIT_PREFIX)) {
+
+				String value = properties.getProperty(key);
+				offsets.put(key.substring(SPLIT_PREFIX.length()), DONE.equals(value) ? Checkpoint.DONE : Long.parseLong(value));
+			}
+		}
+		try {
+			return new Checkpoint(Long.parseLong(properties.getProperty(ID)), offsets);
+		} catch (NumberFormatException e) {
+			throw new IOException("invalid checkpoint file " + file, e);
+		}
+	}
+
+	public void save(Checkpoint checkpoint) throws IOException {
+
+		Properties properties = new Properties();
+		properties.setProperty(ID, String.valueOf(checkpoint.getId()));
+
+		for (Map.Entry<String, Long> offset : checkpoint.getOffsets().entrySet()) {
+			properties.setProperty(SPLIT_PREFIX + offset.getKey(),
+					(offset.getValue() == Checkpoint.DONE) ? DONE : String.valueOf(offset.getValue()));
+		}
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (OutputStream out = Files.newOutputStream(tmp)) {
+			properties.store(out, null);
+		}
+		try {
+			Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Forgets the saved checkpoint, the next run starts from scratch
+	 */
+	public void clear() throws IOException {
+
+		Files.deleteIfExists(file);
+	}
+}
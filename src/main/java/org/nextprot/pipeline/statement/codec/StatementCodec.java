@@ -0,0 +1,359 @@
+package org.nextprot.pipeline.statement.codec;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.StatementField;
+import org.nextprot.commons.statements.specs.StatementSpecifications;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A compact binary format of statements sharing the fields of a specification.
+ *
+ * A stream starts with a header:
+ * <pre>
+ *   magic "NXST" | version (1 byte) | field count (varint) | field names (varint length + UTF-8 bytes)...
+ * </pre>
+ * followed by records:
+ * <pre>
+ *   record length (varint) | field presence bitmap (1 bit per field) | present values (varint length + UTF-8 bytes)...
+ * </pre>
+ *
+ * Values are encoded straight into the buffer and decoded from it without intermediate copies
+ * (except from a direct buffer), so that a codec and its buffers can be reused for a whole stream.
+ * Encoding and decoding return a failure rather than throwing when the buffer is too small:
+ * the caller flushes or refills the buffer and tries again.
+ *
+ * A codec is not thread-safe: each thread needs its own (see {@link #copy()}).
+ */
+public class StatementCodec {
+
+	public static final byte VERSION = 1;
+	/** The maximum size of a varint encoding an int */
+	public static final int MAX_VARINT_SIZE = 5;
+
+	private static final byte[] MAGIC = { 'N', 'X', 'S', 'T' };
+
+	private final List<StatementField> fields;
+	private final int bitmapLength;
+
+	/** The values of the statement being encoded and their UTF-8 lengths */
+	private final String[] values;
+	private final int[] valueLengths;
+	private byte[] scratch = new byte[256];
+
+	public StatementCodec(StatementSpecifications specifications) {
+
+		this(specifications.getFields());
+	}
+
+	/**
+	 * @param fields the fields of the statements, in the order of the presence bitmap
+	 */
+	public StatementCodec(Collection<? extends StatementField> fields) {
+
+		if (fields.isEmpty()) {
+			throw new IllegalArgumentException("No field to encode");
+		}
+		this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+		this.bitmapLength = (this.fields.size() + 7) >>> 3;
+		this.values = new String[this.fields.size()];
+		this.valueLengths = new int[this.fields.size()];
+	}
+
+	/** @return a new codec of the same fields */
+	public StatementCodec copy() {
+
+		return new StatementCodec(fields);
+	}
+
+	public List<StatementField> getFields() {
+
+		return fields;
+	}
+
+	/**
+	 * Encodes the stream header
+	 *
+	 * @return false if the buffer is too small (its position is left unchanged)
+	 */
+	public boolean encodeHeader(ByteBuffer buffer) {
+
+		int start = buffer.position();
+
+		try {
+			buffer.put(MAGIC).put(VERSION);
+			putVarint(buffer, fields.size());
+
+			for (StatementField field : fields) {
+
+				byte[] name = field.getName().getBytes(StandardCharsets.UTF_8);
+				putVarint(buffer, name.length);
+				buffer.put(name);
+			}
+			return true;
+		} catch (BufferOverflowException e) {
+			buffer.position(start);
+			return false;
+		}
+	}
+
+	/**
+	 * Decodes and checks the stream header: its fields must be the fields of this codec, in the same order
+	 *
+	 * @return false if the buffer does not contain the whole header yet (its position is left unchanged)
+	 * @throws IOException if the stream is not a statement stream of this version and fields
+	 */
+	public boolean decodeHeader(ByteBuffer buffer) throws IOException {
+
+		int start = buffer.position();
+
+		if (buffer.remaining() < MAGIC.length + 1) {
+			return false;
+		}
+		for (byte b : MAGIC) {
+			if (buffer.get() != b) {
+				throw new IOException("not a binary statement stream");
+			}
+		}
+		byte version = buffer.get();
+
+		if (version != VERSION) {
+			throw new IOException("unsupported binary statement stream version " + version);
+		}
+
+		long fieldCount = getVarint(buffer);
+
+		if (fieldCount < 0) {
+			buffer.position(start);
+			return false;
+		} else if (fieldCount != fields.size()) {
+			throw new IOException("stream of " + fieldCount + " fields, expected " + fields.size());
+		}
+
+		for (StatementField field : fields) {
+
+			String name = getString(buffer);
+
+			if (name == null) {
+				buffer.position(start);
+				return false;
+			} else if (!name.equals(field.getName())) {
+				throw new IOException("unexpected field " + name + " in stream, expected " + field.getName());
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encodes a statement
+	 *
+	 * @return false if the buffer is too small (its position is left unchanged)
+	 */
+	public boolean encode(Statement statement, ByteBuffer buffer) {
+
+		int recordLength = bitmapLength;
+
+		for (int i = 0; i < fields.size(); i++) {
+
+			String value = statement.getValue(fields.get(i));
+
+			values[i] = value;
+
+			if (value == null) {
+				valueLengths[i] = -1;
+			} else {
+				valueLengths[i] = utf8Length(value);
+				recordLength += varintSize(valueLengths[i]) + valueLengths[i];
+			}
+		}
+
+		if (buffer.remaining() < varintSize(recordLength) + recordLength) {
+			Arrays.fill(values, null);
+			return false;
+		}
+		putVarint(buffer, recordLength);
+
+		int bitmapPosition = buffer.position();
+
+		for (int i = 0; i < bitmapLength; i++) {
+			buffer.put((byte) 0);
+		}
+
+		for (int i = 0; i < fields.size(); i++) {
+
+			if (valueLengths[i] >= 0) {
+
+				buffer.put(bitmapPosition + (i >>> 3), (byte) (buffer.get(bitmapPosition + (i >>> 3)) | (1 << (i & 7))));
+				putVarint(buffer, valueLengths[i]);
+				putUtf8(buffer, values[i]);
+			}
+		}
+		// do not retain the values of the statement
+		Arrays.fill(values, null);
+		return true;
+	}
+
+	/**
+	 * Decodes the next statement
+	 *
+	 * @return the statement or null if the buffer does not contain the whole record yet (its position is left unchanged)
+	 */
+	public Statement decode(ByteBuffer buffer) throws IOException {
+
+		int start = buffer.position();
+		long recordLength = getVarint(buffer);
+
+		if (recordLength < 0 || buffer.remaining() < recordLength) {
+			buffer.position(start);
+			return null;
+		}
+
+		int end = buffer.position() + (int) recordLength;
+		int bitmapPosition = buffer.position();
+
+		buffer.position(bitmapPosition + bitmapLength);
+
+		Statement statement = new Statement();
+
+		for (int i = 0; i < fields.size(); i++) {
+
+			if ((buffer.get(bitmapPosition + (i >>> 3)) & (1 << (i & 7))) != 0) {
+				statement.put(fields.get(i), getString(buffer));
+			}
+		}
+
+		if (buffer.position() != end) {
+			throw new IOException("corrupted record at position " + start);
+		}
+		return statement;
+	}
+
+	/**
+	 * @return the length-prefixed string or null if the buffer does not contain it whole
+	 */
+	private String getString(ByteBuffer buffer) throws StreamCorruptedException {
+
+		long length = getVarint(buffer);
+
+		if (length < 0 || buffer.remaining() < length) {
+			return null;
+		}
+
+		int len = (int) length;
+		String value;
+
+		if (buffer.hasArray()) {
+			value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), len, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + len);
+		} else {
+			if (scratch.length < len) {
+				scratch = new byte[Math.max(len, 2 * scratch.length)];
+			}
+			buffer.get(scratch, 0, len);
+			value = new String(scratch, 0, len, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+
+	public static int varintSize(int value) {
+
+		int size = 1;
+
+		while ((value & ~0x7F) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	public static void putVarint(ByteBuffer buffer, int value) {
+
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * @return the unsigned varint or -1 if the buffer does not contain it whole (the position is then undefined)
+	 * @throws StreamCorruptedException if the varint is longer than MAX_VARINT_SIZE bytes
+	 */
+	public static long getVarint(ByteBuffer buffer) throws StreamCorruptedException {
+
+		long value = 0;
+
+		for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("varint longer than " + MAX_VARINT_SIZE + " bytes at position " + (buffer.position() - MAX_VARINT_SIZE));
+	}
+
+	static int utf8Length(String value) {
+
+		int length = 0;
+
+		for (int i = 0; i < value.length(); i++) {
+
+			char c = value.charAt(i);
+
+			if (c < 0x80) {
+				length++;
+			} else if (c < 0x800) {
+				length += 2;
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Encodes the chars of the value in UTF-8 (an unpaired surrogate takes 3 bytes and is decoded as a replacement char)
+	 */
+	private static void putUtf8(ByteBuffer buffer, String value) {
+
+		for (int i = 0; i < value.length(); i++) {
+
+			char c = value.charAt(i);
+
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+}
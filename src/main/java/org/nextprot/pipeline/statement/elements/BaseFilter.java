@@ -16,6 +16,9 @@ public abstract class BaseFilter extends BasePipelineElement<DuplicableElement>
 
 		super(capacity);
 		endOfFlow = ThreadLocal.withInitial(() -> false);
+
+		// the statements before the barrier have been filtered
+		getSinkPipePort().setBarrierHandler(barrier -> getSourcePipePort().write(barrier));
 	}
 
 	@Override
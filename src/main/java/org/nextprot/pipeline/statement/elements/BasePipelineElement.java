@@ -1,13 +1,20 @@
 package org.nextprot.pipeline.statement.elements;
 
+import org.apache.log4j.Logger;
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ExecutionBackend;
 import org.nextprot.pipeline.statement.PipelineElement;
+import org.nextprot.pipeline.statement.PipelineLogging;
+import org.nextprot.pipeline.statement.metrics.ElementMetrics;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
+import org.nextprot.pipeline.statement.metrics.RunningTime;
 import org.nextprot.pipeline.statement.ports.SinkPipePort;
 import org.nextprot.pipeline.statement.ports.SourcePipePort;
 
 import java.io.IOException;
-import java.io.PrintStream;
-import java.util.List;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.Future;
 
 
 public abstract class BasePipelineElement<E extends PipelineElement> implements PipelineElement<E> {
@@ -31,10 +38,14 @@ public abstract class BasePipelineElement<E extends PipelineElement> implements
 	private SinkPipePort sinkPipePort;
 
 	private boolean hasStarted;
+	/** The backend running this element */
+	private ExecutionBackend backend;
 
 	private E nextElement = null;
 
-	private ThreadLocal<PrintStream> logStream;
+	private Logger logger;
+
+	private final RunningTime runningTime = new RunningTime();
 
 	public BasePipelineElement(int capacity) {
 
@@ -46,8 +57,6 @@ public abstract class BasePipelineElement<E extends PipelineElement> implements
 		this.capacity = capacity;
 		this.sinkPipePort = sinkPipePort;
 		this.sourcePipePort = sourcePipePort;
-
-		this.logStream = ThreadLocal.withInitial(this::createLogStream);
 	}
 
 	/**
@@ -85,29 +94,45 @@ public abstract class BasePipelineElement<E extends PipelineElement> implements
 	}
 
 	@Override
-	public void start(List<Thread> collector) {
+	public void start(ExecutionBackend backend, Map<PipelineElement<?>, Future<?>> collector) {
 
 		if (!hasStarted) {
 			hasStarted = true;
-			Thread thread = new Thread(this, getThreadName());
-			thread.start();
-			collector.add(thread);
+			this.backend = backend;
+			collector.put(this, backend.submit(this));
 		}
 
 		if (nextElement != null) {
-			nextElement.start(collector);
+			nextElement.start(backend, collector);
+		}
+	}
+
+	/**
+	 * @return the backend running this element, where its helper tasks run too
+	 * (a thread per task if the element was run without being started)
+	 */
+	protected ExecutionBackend getBackend() {
+
+		if (backend == null) {
+			backend = ExecutionBackend.threadPerElement();
 		}
+		return backend;
 	}
 
 	@Override
-	public final PrintStream getLogStream() {
+	public final Logger getLogger() {
 
-		return logStream.get();
+		// lazily: the thread name of the subclass may not be known at construction
+		if (logger == null) {
+			logger = PipelineLogging.getLogger(getThreadName());
+		}
+		return logger;
 	}
 
 	@Override
 	public void run() {
 
+		runningTime.start();
 		try {
 			printlnTextInLog("opened (capacity=" + capacity + ")");
 			handleFlow();
@@ -121,6 +146,7 @@ public abstract class BasePipelineElement<E extends PipelineElement> implements
 			} catch (IOException e) {
 				System.err.println(Thread.currentThread().getName() + ": could not stop, e=" + e.getMessage());
 			}
+			runningTime.stop();
 		}
 	}
 
@@ -137,5 +163,15 @@ public abstract class BasePipelineElement<E extends PipelineElement> implements
 		printlnTextInLog("closed");
 	}
 
+	@Override
+	public ElementMetrics getMetrics() {
+
+		PortMetrics output = (sourcePipePort != null) ? sourcePipePort.getMetrics() : null;
+
+		return new ElementMetrics(getThreadName(), runningTime.getNanos(),
+				(sinkPipePort != null) ? sinkPipePort.getMetrics() : null,
+				(output != null) ? Collections.singletonList(output) : Collections.emptyList());
+	}
+
 	protected abstract void handleFlow() throws IOException;
 }
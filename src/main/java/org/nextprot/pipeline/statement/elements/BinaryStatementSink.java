@@ -0,0 +1,147 @@
+package org.nextprot.pipeline.statement.elements;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This sink writes statements in a binary statement stream file (see StatementCodec), to be read back
+ * by a BinaryStatementPump.
+ *
+ * Records are encoded in a large reusable buffer written to the file channel when full.
+ * Each sink writes its own file named <code>name-shard.nxst</code>, duplicated sinks behind a demultiplexer included.
+ */
+public class BinaryStatementSink extends Sink {
+
+	private static int COUNT = 0;
+
+	public static final int DEFAULT_CAPACITY = 1000;
+	public static final int BUFFER_SIZE = 1 << 20;
+	public static final String FILE_EXTENSION = ".nxst";
+
+	private final String name;
+	private final Path directory;
+	private final StatementCodec codec;
+	private final int id;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private FileChannel channel;
+	private volatile long writtenCount = 0;
+
+	public BinaryStatementSink(String name, Path directory, StatementCodec codec) {
+
+		this(DEFAULT_CAPACITY, name, directory, codec);
+	}
+
+	public BinaryStatementSink(int capacity, String name, Path directory, StatementCodec codec) {
+
+		super(capacity);
+
+		this.name = name;
+		this.directory = directory;
+		this.codec = codec;
+		id = ++COUNT;
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	/**
+	 * Codecs are not thread-safe: each copy encodes with its own
+	 */
+	@Override
+	public BinaryStatementSink duplicate(int capacity) {
+
+		return new BinaryStatementSink(capacity, name, directory, codec.copy());
+	}
+
+	/** @return the file written by this sink */
+	public Path getFile() {
+
+		return directory.resolve(name + "-" + id + FILE_EXTENSION);
+	}
+
+	public long getWrittenCount() {
+
+		return writtenCount;
+	}
+
+	@Override
+	public void handleFlow() throws IOException {
+
+		Files.createDirectories(directory);
+
+		channel = FileChannel.open(getFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		Statement[] statements = new Statement[getSinkPipePort().capacity()];
+		int n;
+
+		try {
+			if (!codec.encodeHeader(buffer)) {
+				throw new IOException("binary statement stream header larger than " + BUFFER_SIZE + " bytes");
+			}
+
+			read:
+			while ((n = getSinkPipePort().read(statements, 0, statements.length)) != -1) {
+
+				for (int i = 0; i < n; i++) {
+
+					if (statements[i] == END_OF_FLOW_TOKEN) {
+						break read;
+					}
+					write(statements[i]);
+					writtenCount++;
+				}
+			}
+			flushBuffer();
+		} finally {
+			channel.close();
+		}
+		printlnTextInLog(writtenCount + " statements written in " + getFile());
+	}
+
+	/**
+	 * Write the statements encoded so far to the storage device
+	 */
+	@Override
+	protected void checkpoint() throws IOException {
+
+		if (channel != null && channel.isOpen()) {
+			flushBuffer();
+			channel.force(false);
+		}
+	}
+
+	private void write(Statement statement) throws IOException {
+
+		if (codec.encode(statement, buffer)) {
+			return;
+		}
+		flushBuffer();
+
+		// the record is larger than the buffer
+		while (!codec.encode(statement, buffer)) {
+			buffer = ByteBuffer.allocate(2 * buffer.capacity());
+		}
+	}
+
+	private void flushBuffer() throws IOException {
+
+		buffer.flip();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
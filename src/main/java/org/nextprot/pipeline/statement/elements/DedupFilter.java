@@ -0,0 +1,210 @@
+package org.nextprot.pipeline.statement.elements;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * A filter dropping the statements whose key (ie: their unicity key, see StatementKeys) was already seen.
+ *
+ * A 64-bit hash of each key is kept in an off-heap set: two distinct keys sharing a hash (with a probability
+ * of about n^2/2^65 for n keys) would wrongly drop a statement.
+ *
+ * When the filter is duplicated behind a demultiplexer:
+ * - in partitioned mode, every copy owns the set of the keys of its branch. The demultiplexer must then
+ *   route all the statements of a key to the same branch (ie: with a KeyPartitionedDispatchPolicy on the same
+ *   key or on a field of the key like the entry accession).
+ * - otherwise all the copies share a single set, batches being checked under its lock.
+ *
+ * The statements without a key (the key extractor returns null, ie: a missing field) cannot be duplicates
+ * of one another: they are all passed through and never count as dropped.
+ */
+public class DedupFilter extends BaseFilter {
+
+	private static int COUNT = 0;
+
+	private final Function<Statement, String> keyExtractor;
+	private final long expectedKeyCount;
+	private final boolean partitioned;
+	private final Keys keys;
+	private final int id;
+
+	private OffHeapLongHashSet ownSet;
+	private Statement[] buffer;
+	private long[] hashes;
+	private boolean[] keyless;
+
+	private volatile long droppedCount = 0;
+
+	/**
+	 * @param keyExtractor extracts the key of a statement
+	 * @param expectedKeyCount the number of distinct keys expected in the whole flow
+	 * @param partitioned true if each copy of this filter behind a demultiplexer sees all the statements of its keys
+	 */
+	public DedupFilter(int capacity, Function<Statement, String> keyExtractor, long expectedKeyCount, boolean partitioned) {
+
+		this(capacity, keyExtractor, expectedKeyCount, partitioned, new Keys());
+	}
+
+	private DedupFilter(int capacity, Function<Statement, String> keyExtractor, long expectedKeyCount, boolean partitioned, Keys keys) {
+
+		super(capacity);
+
+		this.keyExtractor = keyExtractor;
+		this.expectedKeyCount = expectedKeyCount;
+		this.partitioned = partitioned;
+		this.keys = keys;
+		id = ++COUNT;
+	}
+
+	/**
+	 * The copies share the keys seen (or how many they are to size their own set in partitioned mode)
+	 */
+	@Override
+	public DedupFilter duplicate(int newCapacity) {
+
+		keys.copyCount.incrementAndGet();
+
+		return new DedupFilter(newCapacity, keyExtractor, expectedKeyCount, partitioned, keys);
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	public boolean isPartitioned() {
+
+		return partitioned;
+	}
+
+	/** @return the number of statements dropped as duplicates */
+	public long getDroppedCount() {
+
+		return droppedCount;
+	}
+
+	@Override
+	public boolean filter(SinkPipePort in, SourcePipePort out) throws IOException {
+
+		if (buffer == null) {
+			buffer = new Statement[in.capacity()];
+			hashes = new long[in.capacity()];
+			keyless = new boolean[in.capacity()];
+		}
+
+		int numOfStatements = in.read(buffer, 0, buffer.length);
+
+		// the END_OF_FLOW_TOKEN came first in this batch
+		if (numOfStatements == -1) {
+
+			end(out);
+			return true;
+		}
+
+		int endOfFlowIndex = numOfStatements;
+
+		for (int i = 0; i < numOfStatements; i++) {
+
+			if (buffer[i] == END_OF_FLOW_TOKEN) {
+				endOfFlowIndex = i;
+				break;
+			}
+
+			String key = keyExtractor.apply(buffer[i]);
+
+			keyless[i] = key == null;
+			if (key != null) {
+				hashes[i] = OffHeapLongHashSet.hash(key);
+			}
+		}
+
+		int length = dropSeen(endOfFlowIndex);
+
+		if (length > 0) {
+			out.write(buffer, 0, length);
+		}
+
+		if (endOfFlowIndex < numOfStatements) {
+
+			end(out);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Compacts the statements not seen yet (and the keyless ones) at the beginning of the buffer
+	 *
+	 * @return the number of statements kept
+	 */
+	private int dropSeen(int length) {
+
+		int kept;
+
+		if (partitioned) {
+			kept = dropSeen(ownSet(), length);
+		} else {
+			OffHeapLongHashSet set = keys.sharedSet(expectedKeyCount);
+			synchronized (set) {
+				kept = dropSeen(set, length);
+			}
+		}
+		droppedCount += length - kept;
+
+		return kept;
+	}
+
+	private int dropSeen(OffHeapLongHashSet set, int length) {
+
+		int kept = 0;
+
+		for (int i = 0; i < length; i++) {
+
+			if (keyless[i] || set.add(hashes[i])) {
+				buffer[kept++] = buffer[i];
+			}
+		}
+		return kept;
+	}
+
+	private OffHeapLongHashSet ownSet() {
+
+		if (ownSet == null) {
+			// all the copies exist once the pipeline runs
+			ownSet = new OffHeapLongHashSet(expectedKeyCount / Math.max(1, keys.copyCount.get()));
+		}
+		return ownSet;
+	}
+
+	private void end(SourcePipePort out) throws IOException {
+
+		printlnTextInLog(droppedCount + " duplicated statements dropped");
+		if (ownSet != null) {
+			ownSet.clear();
+		}
+		out.write(END_OF_FLOW_TOKEN);
+	}
+
+	/**
+	 * The keys shared by a filter and its copies
+	 */
+	private static class Keys {
+
+		private final AtomicInteger copyCount = new AtomicInteger(0);
+		private OffHeapLongHashSet sharedSet;
+
+		private synchronized OffHeapLongHashSet sharedSet(long expectedKeyCount) {
+
+			if (sharedSet == null) {
+				sharedSet = new OffHeapLongHashSet(expectedKeyCount);
+			}
+			return sharedSet;
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.nextprot.pipeline.statement.elements;
+
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.StatementTransform;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A filter calling a chain of stateless transforms on each batch of statements.
+ *
+ * Fusing transforms in a single element saves a thread and a pipe per transform:
+ * the statements are not handed off to another thread between each stage.
+ */
+public class FusedFilter extends BaseFilter {
+
+	private static int COUNT = 0;
+
+	private final List<StatementTransform> transforms;
+	private final int id;
+
+	private Statement[] buffer;
+
+	public FusedFilter(int capacity, StatementTransform... transforms) {
+
+		this(capacity, Arrays.asList(transforms));
+	}
+
+	public FusedFilter(int capacity, List<StatementTransform> transforms) {
+
+		super(capacity);
+
+		this.transforms = new ArrayList<>(transforms);
+		id = ++COUNT;
+	}
+
+	/**
+	 * Append a transform to the chain
+	 *
+	 * @return this filter
+	 */
+	public FusedFilter then(StatementTransform transform) {
+
+		transforms.add(transform);
+		return this;
+	}
+
+	public List<StatementTransform> getTransforms() {
+
+		return Collections.unmodifiableList(transforms);
+	}
+
+	/**
+	 * The transforms are stateless: the copy shares them
+	 */
+	@Override
+	public FusedFilter duplicate(int newCapacity) {
+
+		return new FusedFilter(newCapacity, transforms);
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	@Override
+	public boolean filter(SinkPipePort in, SourcePipePort out) throws IOException {
+
+		if (buffer == null) {
+			buffer = new Statement[in.capacity()];
+		}
+
+		int numOfStatements = in.read(buffer, 0, buffer.length);
+
+		// the END_OF_FLOW_TOKEN came first in this batch
+		if (numOfStatements == -1) {
+
+			out.write(END_OF_FLOW_TOKEN);
+			return true;
+		}
+
+		int endOfFlowIndex = numOfStatements;
+
+		for (int i = 0; i < numOfStatements; i++) {
+
+			if (buffer[i] == END_OF_FLOW_TOKEN) {
+				endOfFlowIndex = i;
+				break;
+			}
+		}
+
+		int length = endOfFlowIndex;
+
+		for (int i = 0; i < transforms.size() && length > 0; i++) {
+
+			length = transforms.get(i).transform(buffer, length);
+		}
+
+		if (length > 0) {
+			out.write(buffer, 0, length);
+		}
+
+		if (endOfFlowIndex < numOfStatements) {
+
+			out.write(END_OF_FLOW_TOKEN);
+			return true;
+		}
+		return false;
+	}
+}
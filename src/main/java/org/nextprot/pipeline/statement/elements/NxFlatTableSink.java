@@ -1,13 +1,36 @@
 package org.nextprot.pipeline.statement.elements;
 
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.StatementField;
 
+import javax.sql.DataSource;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
 
+/**
+ * This sink inserts statements in a nextprot flat table through JDBC.
+ *
+ * Statements are inserted with a prepared statement in batches of <code>batchSize</code> and committed
+ * every <code>commitInterval</code> statements, at each checkpoint barrier and at the end of the flow.
+ * Each sink opens its own connection, so duplicated sinks behind a demultiplexer write in parallel.
+ *
+ * A sink created without a data source writes nothing, it only logs the statements.
+ */
 public class NxFlatTableSink extends Sink {
 
 	private static int COUNT = 0;
 
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+	public static final int DEFAULT_COMMIT_INTERVAL = 10000;
+
 	public enum Table {
 		raw_statements,
 		entry_mapped_statements
@@ -16,10 +39,62 @@ public class NxFlatTableSink extends Sink {
 	private final Table table;
 	private final int id;
 
+	private final DataSource dataSource;
+	private final List<StatementField> fields;
+	private final int batchSize;
+	private final int commitInterval;
+
+	private volatile long writtenCount = 0;
+
+	private Connection connection;
+	private PreparedStatement insert;
+	/** The number of statements added to the current batch */
+	private int batched;
+	/** The number of statements inserted since the last commit */
+	private long uncommitted;
+
+	/**
+	 * Create a sink that only logs the statements
+	 */
 	public NxFlatTableSink(Table table) {
 		super(1);
 
 		this.table = table;
+		this.dataSource = null;
+		this.fields = Collections.emptyList();
+		this.batchSize = 1;
+		this.commitInterval = 1;
+		id = ++COUNT;
+	}
+
+	/**
+	 * @param fields the fields of the statements to insert, each in the column of the same name
+	 */
+	public NxFlatTableSink(Table table, DataSource dataSource, Collection<? extends StatementField> fields) {
+
+		this(table, dataSource, fields, DEFAULT_BATCH_SIZE, DEFAULT_COMMIT_INTERVAL);
+	}
+
+	/**
+	 * @param fields the fields of the statements to insert, each in the column of the same name
+	 * @param batchSize the number of inserts sent at once to the database
+	 * @param commitInterval the number of statements inserted between two commits
+	 */
+	public NxFlatTableSink(Table table, DataSource dataSource, Collection<? extends StatementField> fields, int batchSize, int commitInterval) {
+		super(batchSize);
+
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Batch size <= 0");
+		} else if (commitInterval <= 0) {
+			throw new IllegalArgumentException("Commit interval <= 0");
+		} else if (fields.isEmpty()) {
+			throw new IllegalArgumentException("No field to insert");
+		}
+		this.table = table;
+		this.dataSource = dataSource;
+		this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+		this.batchSize = batchSize;
+		this.commitInterval = commitInterval;
 		id = ++COUNT;
 	}
 
@@ -32,19 +107,154 @@ public class NxFlatTableSink extends Sink {
 	@Override
 	public NxFlatTableSink duplicate(int capacity) {
 
-		return new NxFlatTableSink(table);
+		if (dataSource == null) {
+			return new NxFlatTableSink(table);
+		}
+		return new NxFlatTableSink(table, dataSource, fields, batchSize, commitInterval);
+	}
+
+	public Table getTable() {
+
+		return table;
+	}
+
+	/** @return the number of statements inserted so far (committed or not) */
+	public long getWrittenCount() {
+
+		return writtenCount;
 	}
 
 	@Override
 	public void handleFlow() throws IOException {
 
+		if (dataSource == null) {
+			logFlow();
+			return;
+		}
+
+		try (Connection connection = dataSource.getConnection()) {
+
+			connection.setAutoCommit(false);
+
+			try (PreparedStatement insert = connection.prepareStatement(insertSql())) {
+
+				this.connection = connection;
+				this.insert = insert;
+				insertFlow();
+			} catch (SQLException | IOException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				this.connection = null;
+				this.insert = null;
+			}
+		} catch (SQLException e) {
+			throw new IOException("cannot write statements in table " + table, e);
+		}
+		printlnTextInLog(writtenCount + " statements written in table " + table);
+	}
+
+	private void insertFlow() throws IOException, SQLException {
+
+		Statement[] buffer = new Statement[batchSize];
+		int n;
+
+		read:
+		while ((n = getSinkPipePort().read(buffer, 0, buffer.length)) != -1) {
+
+			for (int i = 0; i < n; i++) {
+
+				if (buffer[i] == END_OF_FLOW_TOKEN) {
+					break read;
+				}
+				bind(insert, buffer[i]);
+				insert.addBatch();
+
+				if (++batched == batchSize) {
+
+					executeBatch();
+
+					if (uncommitted >= commitInterval) {
+						commit();
+					}
+				}
+			}
+		}
+		commit();
+	}
+
+	/**
+	 * Commit the statements inserted before the barrier
+	 */
+	@Override
+	protected void checkpoint() throws IOException {
+
+		if (connection == null) {
+			return;
+		}
+		try {
+			commit();
+		} catch (SQLException e) {
+			throw new IOException("cannot commit statements in table " + table, e);
+		}
+	}
+
+	private void commit() throws SQLException {
+
+		if (batched > 0) {
+			executeBatch();
+		}
+		connection.commit();
+		uncommitted = 0;
+	}
+
+	private void bind(PreparedStatement insert, Statement statement) throws SQLException {
+
+		for (int i = 0; i < fields.size(); i++) {
+
+			String value = statement.getValue(fields.get(i));
+
+			if (value == null) {
+				insert.setNull(i + 1, Types.VARCHAR);
+			} else {
+				insert.setString(i + 1, value);
+			}
+		}
+	}
+
+	private void executeBatch() throws SQLException {
+
+		insert.executeBatch();
+		writtenCount += batched;
+		uncommitted += batched;
+
+		if (getLogger().isDebugEnabled()) {
+			getLogger().debug("write " + batched + " statements in table " + table);
+		}
+		batched = 0;
+	}
+
+	String insertSql() {
+
+		return "INSERT INTO " + table + " (" +
+				fields.stream().map(StatementField::getName).collect(Collectors.joining(", ")) +
+				") VALUES (" +
+				fields.stream().map(field -> "?").collect(Collectors.joining(", ")) + ")";
+	}
+
+	private void logFlow() throws IOException {
+
 		Statement statement;
 
 		int i = 0;
+		boolean debug = getLogger().isDebugEnabled();
+
 		while ((statement = getSinkPipePort().read()) != END_OF_FLOW_TOKEN) {
-			printlnTextInLog("write statement " + statement.getStatementId() + " in table " + table);
+			if (debug) {
+				getLogger().debug("write statement " + statement.getStatementId() + " in table " + table);
+			}
 			i++;
 		}
 		printlnTextInLog(i + " statements evacuated");
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,193 @@
+package org.nextprot.pipeline.statement.elements;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * An open-addressing set of 64-bit hashes stored off-heap in direct buffers.
+ *
+ * Slots are probed linearly from the low bits of the hash (hashes are expected to be well mixed),
+ * 0 marks an empty slot. Each slot takes 8 bytes: a set sized for 500 millions hashes takes about 8 GiB
+ * of native memory (see -XX:MaxDirectMemorySize) but none on the heap, so it does not weigh on the GC.
+ *
+ * The slots are spread over segments of at most 1 GiB (a direct buffer is indexed by an int).
+ * The set doubles its capacity when it is 3/4 full.
+ *
+ * This class is not thread-safe.
+ */
+public class OffHeapLongHashSet {
+
+	private static final int MAX_SEGMENT_SHIFT = 27;
+	private static final int MIN_SLOTS = 1 << 4;
+	private static final double MAX_LOAD_FACTOR = 0.75;
+
+	/** Stands for the hash 0 which marks empty slots */
+	private static final long ZERO_HASH = 0x9e3779b97f4a7c15L;
+
+	private ByteBuffer[] segments;
+	private int segmentShift;
+	private long mask;
+	private long size;
+	private long resizeThreshold;
+
+	/**
+	 * @param expectedSize the number of hashes the set can hold before it grows
+	 */
+	public OffHeapLongHashSet(long expectedSize) {
+
+		allocate(slotCountFor(expectedSize));
+	}
+
+	private static long slotCountFor(long expectedSize) {
+
+		long slots = Math.max(MIN_SLOTS, (long) Math.ceil(expectedSize / MAX_LOAD_FACTOR));
+
+		return Long.highestOneBit(slots - 1) << 1;
+	}
+
+	private void allocate(long slotCount) {
+
+		segmentShift = Math.min(MAX_SEGMENT_SHIFT, Long.numberOfTrailingZeros(slotCount));
+
+		int segmentCount = (int) (slotCount >>> segmentShift);
+		segments = new ByteBuffer[segmentCount];
+
+		for (int i = 0; i < segmentCount; i++) {
+			// direct buffers are zeroed
+			segments[i] = ByteBuffer.allocateDirect((1 << segmentShift) * Long.BYTES).order(ByteOrder.nativeOrder());
+		}
+		mask = slotCount - 1;
+		size = 0;
+		resizeThreshold = (long) (slotCount * MAX_LOAD_FACTOR);
+	}
+
+	/**
+	 * Adds a hash to the set
+	 *
+	 * @return true if the hash was not already in the set
+	 */
+	public boolean add(long hash) {
+
+		if (hash == 0) {
+			hash = ZERO_HASH;
+		}
+
+		long slot = hash & mask;
+		long value;
+
+		while ((value = get(slot)) != 0) {
+
+			if (value == hash) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+		put(slot, hash);
+
+		if (++size > resizeThreshold) {
+			grow();
+		}
+		return true;
+	}
+
+	/** @return true if the hash is in the set */
+	public boolean contains(long hash) {
+
+		if (hash == 0) {
+			hash = ZERO_HASH;
+		}
+
+		long slot = hash & mask;
+		long value;
+
+		while ((value = get(slot)) != 0) {
+
+			if (value == hash) {
+				return true;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return false;
+	}
+
+	/** @return the number of hashes in the set */
+	public long size() {
+
+		return size;
+	}
+
+	/** @return the number of slots */
+	public long capacity() {
+
+		return mask + 1;
+	}
+
+	/** @return the native memory taken by the slots in bytes */
+	public long getMemorySize() {
+
+		return capacity() * Long.BYTES;
+	}
+
+	/**
+	 * Releases the slots (the native memory is freed when the buffers are garbage collected)
+	 */
+	public void clear() {
+
+		allocate(MIN_SLOTS);
+	}
+
+	private long get(long slot) {
+
+		return segments[(int) (slot >>> segmentShift)].getLong((int) (slot & ((1 << segmentShift) - 1)) << 3);
+	}
+
+	private void put(long slot, long hash) {
+
+		segments[(int) (slot >>> segmentShift)].putLong((int) (slot & ((1 << segmentShift) - 1)) << 3, hash);
+	}
+
+	private void grow() {
+
+		ByteBuffer[] oldSegments = segments;
+		long oldSize = size;
+
+		allocate(capacity() << 1);
+
+		for (ByteBuffer segment : oldSegments) {
+			for (int offset = 0; offset < segment.capacity(); offset += Long.BYTES) {
+
+				long hash = segment.getLong(offset);
+
+				if (hash != 0) {
+					long slot = hash & mask;
+					while (get(slot) != 0) {
+						slot = (slot + 1) & mask;
+					}
+					put(slot, hash);
+				}
+			}
+		}
+		size = oldSize;
+	}
+
+	/**
+	 * @return a 64-bit hash of the given key (FNV-1a on the chars with a murmur3 finalizer)
+	 */
+	public static long hash(CharSequence key) {
+
+		long h = 0xcbf29ce484222325L;
+
+		for (int i = 0; i < key.length(); i++) {
+			h ^= key.charAt(i);
+			h *= 0x100000001b3L;
+		}
+
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+
+		return h;
+	}
+}
@@ -0,0 +1,216 @@
+package org.nextprot.pipeline.statement.elements;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.checkpoint.Checkpoint;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointCoordinator;
+import org.nextprot.pipeline.statement.source.SplittableStatementSource;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * A source pumping many splits of statements at once (ie: the json files of a release).
+ *
+ * Each of the <code>parallelism</code> pumping tasks takes the next split not yet pumped
+ * until all splits are exhausted, and writes its batches to the source pipe port.
+ * The tasks run on the backend of the pipeline, next to the source thread waiting for them.
+ * Writes are serialized batch by batch so that any type of pipe port sees a single writer at a time
+ * (with a lock rather than a monitor: a virtual thread blocked on a full pipe does not pin its carrier thread).
+ * The source thread stays the writer watched by the reader: a pumping thread done with its splits is not
+ * taken for a dead writer.
+ *
+ * The END_OF_FLOW_TOKEN is written once, by the source thread, after all the splits are exhausted.
+ *
+ * With a checkpoint coordinator, the splits are named after their index: the checkpoints hold the offset of each
+ * split, the splits done by a previous run are not pumped again and the others skip their committed statements.
+ */
+public class ParallelSource extends Source {
+
+	private final List<Pump<Statement>> pumps;
+	private final int parallelism;
+
+	/** The index of the next pump to take */
+	private final AtomicInteger nextPump = new AtomicInteger(0);
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private volatile boolean failed = false;
+
+	/** The number of statements written from each split (guarded by writeLock) */
+	private final Map<String, Long> offsets = new HashMap<>();
+
+	public ParallelSource(List<? extends Pump<Statement>> pumps, int parallelism, int capacity) {
+
+		super(capacity);
+
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism <= 0");
+		}
+		this.pumps = new ArrayList<>(pumps);
+		this.parallelism = Math.max(1, Math.min(parallelism, pumps.size()));
+		printlnTextInLog(pumps.size() + " pumps started");
+	}
+
+	/**
+	 * Create a source pumping the splits of the given source with <code>parallelism</code> threads
+	 */
+	public static ParallelSource valueOf(SplittableStatementSource source, int parallelism, int capacity) throws IOException {
+
+		List<Pump<Statement>> pumps = source.split(capacity)
+				.map(split -> new StatementPump(split, capacity))
+				.collect(Collectors.toList());
+
+		return new ParallelSource(pumps, parallelism, capacity);
+	}
+
+	public int getPumpCount() {
+
+		return pumps.size();
+	}
+
+	public int getParallelism() {
+
+		return parallelism;
+	}
+
+	@Override
+	public void handleFlow() throws IOException {
+
+		CheckpointCoordinator checkpoints = getCheckpointCoordinator();
+
+		if (checkpoints != null && checkpoints.getRestoredCheckpoint() != null) {
+			offsets.putAll(checkpoints.getRestoredCheckpoint().getOffsets());
+		}
+
+		List<Future<Void>> futures = new ArrayList<>(parallelism);
+
+		getSourcePipePort().setWriteSide();
+
+		try {
+			for (int i = 0; i < parallelism; i++) {
+				futures.add(getBackend().submit(getThreadName() + "-pump-" + (i + 1), () -> {
+					pumpSplits();
+					return null;
+				}));
+			}
+			for (Future<Void> future : futures) {
+				awaitPumping(future);
+			}
+		} finally {
+			// interrupt the pumping tasks left if one of them failed
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+		}
+
+		if (checkpoints != null) {
+			getSourcePipePort().write(checkpoints.newBarrier(offsets, true));
+		}
+		getSourcePipePort().write(END_OF_FLOW_TOKEN);
+	}
+
+	/**
+	 * Pump splits until there is none left
+	 */
+	private void pumpSplits() throws IOException {
+
+		List<Statement> collector = new ArrayList<>(getSourcePipePort().capacity());
+		CheckpointCoordinator checkpoints = getCheckpointCoordinator();
+		boolean debug = getLogger().isDebugEnabled();
+		int index;
+
+		while (!failed && (index = nextPump.getAndIncrement()) < pumps.size()) {
+
+			String split = String.valueOf(index);
+
+			if (checkpoints != null && checkpoints.isRestoredDone(split)) {
+				pumps.get(index).close();
+				printlnTextInLog("split " + index + " already pumped by the previous run");
+				continue;
+			}
+
+			long committedOffset = (checkpoints != null) ? checkpoints.getRestoredOffset(split) : 0;
+			long position = 0;
+
+			try (Pump<Statement> pump = pumps.get(index)) {
+
+				int stmtsRead;
+
+				while ((stmtsRead = pump.pump(collector)) != -1) {
+					if (debug) {
+						getLogger().debug("pump " + stmtsRead + " statements from split " + index);
+					}
+
+					// skip the statements committed by a previous run
+					int skipped = (position < committedOffset) ? (int) Math.min(stmtsRead, committedOffset - position) : 0;
+					position += stmtsRead;
+
+					writeLock.lock();
+					try {
+						if (skipped < stmtsRead) {
+							getSourcePipePort().write(collector, skipped, stmtsRead - skipped);
+						}
+						if (checkpoints != null) {
+							offsets.put(split, Math.max(position, committedOffset));
+
+							if (checkpoints.isDue()) {
+								getSourcePipePort().write(checkpoints.newBarrier(offsets, false));
+							}
+						}
+					} finally {
+						writeLock.unlock();
+					}
+					collector.clear();
+				}
+			}
+			if (checkpoints != null) {
+				writeLock.lock();
+				try {
+					offsets.put(split, Checkpoint.DONE);
+				} finally {
+					writeLock.unlock();
+				}
+			}
+			printlnTextInLog("split " + index + " pumped");
+		}
+	}
+
+	/**
+	 * Wait for a pumping thread to complete, the other ones stop at their current split if it failed
+	 */
+	private void awaitPumping(Future<Void> future) throws IOException {
+
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			failed = true;
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			failed = true;
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("pump failed", e.getCause());
+		}
+	}
+
+	@Override
+	public void stop() throws IOException {
+
+		// close the pumps that were never taken
+		for (int i = nextPump.getAndSet(pumps.size()); i < pumps.size(); i++) {
+			pumps.get(i).close();
+		}
+		printlnTextInLog("pumps stopped");
+		super.stop();
+	}
+}
@@ -5,14 +5,29 @@ import org.nextprot.pipeline.statement.muxdemux.DuplicableElement;
 import org.nextprot.pipeline.statement.ports.SinkPipePort;
 import org.nextprot.pipeline.statement.ports.SourcePipePort;
 
+import java.io.IOException;
+
 
 public abstract class Sink extends BasePipelineElement<DuplicableElement> implements DuplicableElement {
 
 	protected Sink(int capacity) {
 
 		super(capacity, new SinkPipePort(capacity), null);
+
+		getSinkPipePort().setBarrierHandler(barrier -> {
+			checkpoint();
+			barrier.acknowledge();
+		});
 	}
 
+	/**
+	 * Make the statements handled so far durable (ie: commit them) before a checkpoint barrier is acknowledged.
+	 * Called by the sink thread between two reads of its sink pipe port.
+	 *
+	 * By default, statements are durable once handled.
+	 */
+	protected void checkpoint() throws IOException { }
+
 	@Override
 	public SourcePipePort getSourcePipePort() {
 
@@ -5,58 +5,240 @@ import org.nextprot.commons.statements.reader.BufferableStatementReader;
 import org.nextprot.commons.statements.reader.BufferedJsonStatementReader;
 import org.nextprot.pipeline.statement.PipelineElement;
 import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.StatementInterner;
+import org.nextprot.pipeline.statement.checkpoint.Checkpoint;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointCoordinator;
+import org.nextprot.pipeline.statement.metrics.ElementMetrics;
 import org.nextprot.pipeline.statement.ports.SinkPipePort;
 import org.nextprot.pipeline.statement.ports.SourcePipePort;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class is a source of data for a pipe of threads.
  * It pumps statements and send them in a connected receiver
  * but cannot serve as a receiver for any other Pipe: it must always be at the beginning,
  * or "source" of the pipe.
+ *
+ * With a checkpoint coordinator, the source writes a checkpoint barrier after a batch each time a checkpoint is due,
+ * and skips the statements committed by a previous run.
  **/
 public class Source extends BasePipelineElement<PipelineElement> {
 
+	/** The name of the single split of the pump in the checkpoints */
+	public static final String SPLIT = "0";
+
 	private Pump<Statement> pump;
+	private final int prefetchDepth;
+	private volatile StatementPrefetcher prefetcher;
+	private Future<?> prefetchTask;
+
+	private CheckpointCoordinator checkpoints;
+	/** The number of statements pumped */
+	private long position;
+	/** The number of statements committed by a previous run */
+	private long committedOffset;
 
 	public Source(Pump<Statement> pump) {
 
+		this(pump, 0);
+	}
+
+	/**
+	 * Create a source that pumps ahead on a separate I/O thread
+	 *
+	 * @param prefetchDepth the maximum number of batches pumped ahead of the source pipe port (0 to pump in the source thread)
+	 */
+	public Source(Pump<Statement> pump, int prefetchDepth) {
+
 		super(pump.capacity(), null, new SourcePipePort(pump.capacity()));
+
+		if (prefetchDepth < 0) {
+			throw new IllegalArgumentException("Prefetch depth < 0");
+		}
 		this.pump = pump;
-		printlnTextInLog("Pump started");
+		this.prefetchDepth = prefetchDepth;
+		printlnTextInLog("Pump started" + ((prefetchDepth > 0) ? " (prefetch depth=" + prefetchDepth + ")" : ""));
+	}
+
+	/**
+	 * Constructor for sources that pump their statements by other means than a single pump
+	 */
+	protected Source(int capacity) {
+
+		super(capacity, null, new SourcePipePort(capacity));
+		this.prefetchDepth = 0;
+	}
+
+	/**
+	 * Write checkpoint barriers and resume from the last committed checkpoint
+	 */
+	public void setCheckpointCoordinator(CheckpointCoordinator checkpoints) {
+
+		this.checkpoints = checkpoints;
+	}
+
+	public CheckpointCoordinator getCheckpointCoordinator() {
+
+		return checkpoints;
 	}
 
 	@Override
 	public void handleFlow() throws IOException {
 
+		if (checkpoints != null) {
+
+			if (checkpoints.isRestoredDone(SPLIT)) {
+				printlnTextInLog("already pumped by the previous run");
+				getSourcePipePort().write(END_OF_FLOW_TOKEN);
+				return;
+			}
+			committedOffset = checkpoints.getRestoredOffset(SPLIT);
+		}
+
+		if (prefetchDepth > 0) {
+			handlePrefetchedFlow();
+			return;
+		}
+
 		List<Statement> collector = new ArrayList<>();
 		int stmtsRead;
+		boolean debug = getLogger().isDebugEnabled();
 
 		while((stmtsRead = pump.pump(collector)) != -1) {
-			printlnTextInLog("pump "+ stmtsRead + " statements");
+			if (debug) {
+				getLogger().debug("pump "+ stmtsRead + " statements");
+			}
 
-			getSourcePipePort().write(collector, 0, stmtsRead);
+			writeBatch(collector, stmtsRead);
 
 			collector.clear();
 		}
 
+		endFlow();
+	}
+
+	/**
+	 * Write a batch, skipping the statements committed by a previous run, then a barrier if a checkpoint is due
+	 */
+	private void writeBatch(List<Statement> batch, int size) throws IOException {
+
+		int skipped = (position < committedOffset) ? (int) Math.min(size, committedOffset - position) : 0;
+
+		position += size;
+
+		if (skipped < size) {
+			getSourcePipePort().write(batch, skipped, size - skipped);
+		}
+
+		if (checkpoints != null && checkpoints.isDue()) {
+			getSourcePipePort().write(checkpoints.newBarrier(Collections.singletonMap(SPLIT, Math.max(position, committedOffset)), false));
+		}
+	}
+
+	private void endFlow() throws IOException {
+
+		if (checkpoints != null) {
+			getSourcePipePort().write(checkpoints.newBarrier(Collections.singletonMap(SPLIT, Checkpoint.DONE), true));
+		}
 		getSourcePipePort().write(END_OF_FLOW_TOKEN);
 	}
 
+	/**
+	 * Write the batches pumped ahead by the I/O task, run on the backend of the pipeline
+	 * (the source waits for the end of the task, so that its future covers the prefetching)
+	 */
+	private void handlePrefetchedFlow() throws IOException {
+
+		prefetcher = new StatementPrefetcher(pump, prefetchDepth);
+		prefetchTask = getBackend().submit(getThreadName() + "-prefetch", Executors.callable(prefetcher));
+
+		List<Statement> batch;
+		boolean debug = getLogger().isDebugEnabled();
+
+		while ((batch = prefetcher.take()) != null) {
+			if (debug) {
+				getLogger().debug("pump " + batch.size() + " statements (" + prefetcher.getBatchesInFlight() + " batches ahead)");
+			}
+
+			writeBatch(batch, batch.size());
+		}
+
+		awaitPrefetching();
+		endFlow();
+	}
+
+	/**
+	 * Wait for the I/O task, done once it has queued the end of the pump
+	 */
+	private void awaitPrefetching() throws IOException {
+
+		try {
+			prefetchTask.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		} catch (ExecutionException e) {
+			throw new IOException("prefetching failed", e.getCause());
+		}
+	}
+
 	@Override
 	public String getThreadName() {
 		return "Source";
 	}
 
+	/** @return the maximum number of batches pumped ahead (0 if the source does not prefetch) */
+	public int getPrefetchDepth() {
+
+		return prefetchDepth;
+	}
+
+	/** @return the number of batches pumped ahead and not yet written */
+	public int getBatchesInFlight() {
+
+		StatementPrefetcher p = prefetcher;
+
+		return (p != null) ? p.getBatchesInFlight() : 0;
+	}
+
+	/**
+	 * The input of a prefetching source is the queue of the batches pumped ahead
+	 */
+	@Override
+	public ElementMetrics getMetrics() {
+
+		ElementMetrics metrics = super.getMetrics();
+		StatementPrefetcher p = prefetcher;
+
+		if (p == null) {
+			return metrics;
+		}
+		return new ElementMetrics(metrics.getName(), metrics.getRunningTimeNanos(), p.getMetrics(), metrics.getOutputs());
+	}
+
 	@Override
 	public void stop() throws IOException {
 
-		printlnTextInLog("pump stopped");
-		pump.close();
+		if (prefetchTask != null && !prefetchTask.isDone()) {
+			// the flow was interrupted before the pump was exhausted
+			prefetchTask.cancel(true);
+		}
+		if (pump instanceof StatementPump && ((StatementPump) pump).getInterner() != null) {
+			printlnTextInLog(((StatementPump) pump).getInterner().getDictionary().toString());
+		}
+		if (pump != null) {
+			printlnTextInLog("pump stopped");
+			pump.close();
+		}
 		super.stop();
 	}
 
@@ -70,6 +252,7 @@ public class Source extends BasePipelineElement<PipelineElement> {
 
 		private final BufferableStatementReader reader;
 		private final int capacity;
+		private StatementInterner interner;
 
 		public StatementPump(Reader reader) throws IOException {
 
@@ -78,14 +261,40 @@ public class Source extends BasePipelineElement<PipelineElement> {
 
 		public StatementPump(Reader reader, int capacity) throws IOException {
 
-			this.reader = new BufferedJsonStatementReader(reader, capacity);
+			this(new BufferedJsonStatementReader(reader, capacity), capacity);
+		}
+
+		/**
+		 * @param reader a reader buffering <code>capacity</code> statements (ie: a split of a SplittableStatementSource)
+		 */
+		public StatementPump(BufferableStatementReader reader, int capacity) {
+
+			this.reader = reader;
 			this.capacity = capacity;
 		}
 
+		/**
+		 * Intern the values of the pumped statements, so that the statements in flight share the values that repeat
+		 *
+		 * @return this pump
+		 */
+		public StatementPump interning(StatementInterner interner) {
+
+			this.interner = interner;
+			return this;
+		}
+
+		public StatementInterner getInterner() {
+
+			return interner;
+		}
+
 		@Override
 		public Statement pump() throws IOException {
 
-			return reader.nextStatement();
+			Statement statement = reader.nextStatement();
+
+			return (interner != null && statement != null) ? interner.intern(statement) : statement;
 		}
 
 		@Override
@@ -97,7 +306,14 @@ public class Source extends BasePipelineElement<PipelineElement> {
 		@Override
 		public int pump(List<Statement> collector) throws IOException {
 
-			return reader.readStatements(collector);
+			int stmtsRead = reader.readStatements(collector);
+
+			if (interner != null) {
+				for (int i = collector.size() - Math.max(stmtsRead, 0); i < collector.size(); i++) {
+					interner.intern(collector.get(i));
+				}
+			}
+			return stmtsRead;
 		}
 
 		@Override
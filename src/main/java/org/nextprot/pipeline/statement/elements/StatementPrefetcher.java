@@ -0,0 +1,145 @@
+package org.nextprot.pipeline.statement.elements;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pumps batches of statements ahead on its own I/O task and keeps up to <code>depth</code> of them
+ * in a bounded queue, so that reading and parsing overlap with writing the batches downstream.
+ *
+ * The queue is seen as the input pipe of the source: its metrics count statements, its capacity is
+ * <code>depth</code> batches of the pump capacity.
+ */
+class StatementPrefetcher implements Runnable {
+
+	/** Marks the end of the pump in the queue */
+	private static final List<Statement> END_OF_PUMP = Collections.emptyList();
+
+	private final Pump<Statement> pump;
+	private final int depth;
+	private final BlockingQueue<List<Statement>> batches;
+
+	private volatile IOException error;
+	/** True once the end of the pump is queued (it then stays the last batch of the queue) */
+	private volatile boolean ended = false;
+
+	/** Statements pumped (only written by the I/O thread) */
+	private final AtomicLong prefetchedCount = new AtomicLong(0);
+	/** Statements taken (only written by the source thread) */
+	private final AtomicLong takenCount = new AtomicLong(0);
+	/** Time the I/O thread waited for a free slot in the queue */
+	private volatile long pumpWaitTimeNanos;
+	/** Time the source thread waited for a prefetched batch */
+	private volatile long takeWaitTimeNanos;
+
+	StatementPrefetcher(Pump<Statement> pump, int depth) {
+
+		if (depth <= 0) {
+			throw new IllegalArgumentException("Prefetch depth <= 0");
+		}
+		this.pump = pump;
+		this.depth = depth;
+		this.batches = new ArrayBlockingQueue<>(depth);
+	}
+
+	@Override
+	public void run() {
+
+		try {
+			List<Statement> batch = new ArrayList<>(pump.capacity());
+			int stmtsRead;
+
+			while ((stmtsRead = pump.pump(batch)) != -1) {
+
+				if (stmtsRead > 0) {
+					put(batch);
+					prefetchedCount.lazySet(prefetchedCount.get() + stmtsRead);
+					batch = new ArrayList<>(pump.capacity());
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+		} catch (InterruptedException e) {
+			// the source has stopped
+			return;
+		}
+
+		try {
+			put(END_OF_PUMP);
+			ended = true;
+		} catch (InterruptedException e) {
+			// the source has stopped
+		}
+	}
+
+	private void put(List<Statement> batch) throws InterruptedException {
+
+		if (!batches.offer(batch)) {
+
+			long start = System.nanoTime();
+			batches.put(batch);
+			pumpWaitTimeNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Takes the next prefetched batch, waiting for the I/O thread if none is ready
+	 *
+	 * @return the next batch or null if the pump is exhausted
+	 * @throws IOException if the pump has failed
+	 */
+	List<Statement> take() throws IOException {
+
+		List<Statement> batch = batches.poll();
+
+		if (batch == null) {
+
+			long start = System.nanoTime();
+			try {
+				batch = batches.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			takeWaitTimeNanos += System.nanoTime() - start;
+		}
+
+		if (batch == END_OF_PUMP) {
+			// leave the marker for any further call
+			batches.offer(END_OF_PUMP);
+			if (error != null) {
+				throw error;
+			}
+			return null;
+		}
+		takenCount.lazySet(takenCount.get() + batch.size());
+
+		return batch;
+	}
+
+	/** @return the number of prefetched batches waiting in the queue */
+	int getBatchesInFlight() {
+
+		int size = batches.size();
+
+		return (ended) ? Math.max(0, size - 1) : size;
+	}
+
+	PortMetrics getMetrics() {
+
+		long taken = takenCount.get();
+
+		return new PortMetrics(depth * pump.capacity(), prefetchedCount.get(), taken,
+				(int) (prefetchedCount.get() - taken), takeWaitTimeNanos, pumpWaitTimeNanos);
+	}
+}
@@ -0,0 +1,407 @@
+package org.nextprot.pipeline.statement.elements;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.StatementField;
+import org.nextprot.commons.statements.specs.StatementSpecifications;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This sink writes statements in files ready to be bulk-loaded in a nextprot flat table
+ * (ie: with the postgres <code>COPY table (columns) FROM file</code> command in text format).
+ *
+ * Each line is a statement, its fields separated by tabs in the column order given by the specifications,
+ * null values written as <code>\N</code> and backslashes, tabs and line breaks escaped.
+ *
+ * Rows are encoded in a large buffer written to the file channel at once, optionally gzipped.
+ * A new file is started when the current one exceeds the maximum file size, so that the files can be loaded
+ * in parallel. Each sink writes its own shard of files named <code>table-shard-part.tsv[.gz]</code>,
+ * duplicated sinks behind a demultiplexer included. The files are created new: the parts already in the directory
+ * (ie: the files committed by a previous run that is resumed) are skipped, never overwritten.
+ *
+ * A part is written under a temporary name (<code>table-shard-part.tsv[.gz].inprogress</code>) and only renamed
+ * to its final name once committed: at each checkpoint barrier the current file is closed and forced to disk,
+ * then the parts written since the previous barrier are atomically renamed (the next rows start a new file).
+ * Without checkpointing, the parts are committed at the end of the flow. Once the sink has seen a barrier,
+ * the rows after the last one are left in progress: they are replayed by the resumed run.
+ * The parts left in progress by a previous run of the table are deleted when the sink starts,
+ * so that the directory only holds the rows of the committed checkpoints.
+ */
+public class TsvBulkLoadSink extends Sink {
+
+	private static int COUNT = 0;
+
+	public static final int DEFAULT_CAPACITY = 1000;
+	public static final int BUFFER_SIZE = 1 << 20;
+	/** No file rotation */
+	public static final long UNLIMITED_FILE_SIZE = Long.MAX_VALUE;
+
+	private static final String NULL_VALUE = "\\N";
+	private static final String IN_PROGRESS_SUFFIX = ".inprogress";
+	/** The temporary files being written by the sinks of this jvm, never deleted as leftovers of a previous run */
+	private static final Set<Path> IN_PROGRESS = ConcurrentHashMap.newKeySet();
+
+	private final NxFlatTableSink.Table table;
+	private final Path directory;
+	private final List<StatementField> fields;
+	private final boolean compressed;
+	private final long maxFileSize;
+	private final int id;
+
+	private final List<Path> files = new ArrayList<>();
+	/** The final names of the parts written since the last commit */
+	private final List<Path> uncommitted = new ArrayList<>();
+	/** True once a checkpoint barrier has reached the sink */
+	private boolean checkpointed = false;
+	/** The part number of the next file */
+	private int nextPart = 0;
+	private volatile long writtenCount = 0;
+
+	private WritableByteChannel channel;
+	/** The channel of the current file, under the gzip stream if the file is compressed */
+	private FileChannel fileChannel;
+	private GZIPOutputStream gzip;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+	private final StringBuilder row = new StringBuilder();
+	/** The number of uncompressed bytes written in the current file */
+	private long fileSize;
+
+	/**
+	 * Create a sink writing the fields of the specifications (core and extra fields) in a single uncompressed file
+	 */
+	public TsvBulkLoadSink(NxFlatTableSink.Table table, Path directory, StatementSpecifications specifications) {
+
+		this(table, directory, specifications.getFields(), false, UNLIMITED_FILE_SIZE);
+	}
+
+	/**
+	 * @param fields the fields of the statements in the column order of the table
+	 * @param compressed true to gzip the files
+	 * @param maxFileSize the number of (uncompressed) bytes after which a new file is started
+	 */
+	public TsvBulkLoadSink(NxFlatTableSink.Table table, Path directory, Collection<? extends StatementField> fields,
+	                       boolean compressed, long maxFileSize) {
+
+		super(DEFAULT_CAPACITY);
+
+		if (fields.isEmpty()) {
+			throw new IllegalArgumentException("No field to write");
+		} else if (maxFileSize <= 0) {
+			throw new IllegalArgumentException("Max file size <= 0");
+		}
+		this.table = table;
+		this.directory = directory;
+		this.fields = Collections.unmodifiableList(new ArrayList<>(fields));
+		this.compressed = compressed;
+		this.maxFileSize = maxFileSize;
+		id = ++COUNT;
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	@Override
+	public TsvBulkLoadSink duplicate(int capacity) {
+
+		return new TsvBulkLoadSink(table, directory, fields, compressed, maxFileSize);
+	}
+
+	/** @return the columns of the table, in the order of the fields in each line */
+	public List<String> getColumnNames() {
+
+		List<String> names = new ArrayList<>(fields.size());
+
+		for (StatementField field : fields) {
+			names.add(field.getName());
+		}
+		return names;
+	}
+
+	/** @return the files committed so far */
+	public List<Path> getFiles() {
+
+		synchronized (files) {
+			return new ArrayList<>(files);
+		}
+	}
+
+	public long getWrittenCount() {
+
+		return writtenCount;
+	}
+
+	@Override
+	public void handleFlow() throws IOException {
+
+		Files.createDirectories(directory);
+		deleteLeftoverFiles();
+
+		Statement[] statements = new Statement[getSinkPipePort().capacity()];
+		int n;
+
+		try {
+			read:
+			while ((n = getSinkPipePort().read(statements, 0, statements.length)) != -1) {
+
+				for (int i = 0; i < n; i++) {
+
+					if (statements[i] == END_OF_FLOW_TOKEN) {
+						break read;
+					}
+					writeRow(statements[i]);
+					writtenCount++;
+				}
+			}
+
+			closeFile();
+
+			if (!checkpointed) {
+				commitFiles();
+			} else if (!uncommitted.isEmpty()) {
+				printlnTextInLog(uncommitted.size() + " files after the last checkpoint left in progress");
+			}
+		} finally {
+			closeFile();
+			releaseUncommittedFiles();
+		}
+		printlnTextInLog(writtenCount + " statements written in " + files.size() + " files for table " + table);
+	}
+
+	@Override
+	protected void checkpoint() throws IOException {
+
+		checkpointed = true;
+		closeFile();
+		commitFiles();
+	}
+
+	private void writeRow(Statement statement) throws IOException {
+
+		if (channel == null) {
+			openNextFile();
+		}
+
+		row.setLength(0);
+
+		for (int i = 0; i < fields.size(); i++) {
+
+			if (i > 0) {
+				row.append('\t');
+			}
+			appendValue(statement.getValue(fields.get(i)));
+		}
+		row.append('\n');
+
+		encode(CharBuffer.wrap(row));
+
+		if (fileSize + buffer.position() >= maxFileSize) {
+			closeFile();
+		}
+	}
+
+	private void appendValue(String value) {
+
+		if (value == null) {
+			row.append(NULL_VALUE);
+			return;
+		}
+
+		for (int i = 0; i < value.length(); i++) {
+
+			char c = value.charAt(i);
+
+			switch (c) {
+				case '\\':
+					row.append("\\\\");
+					break;
+				case '\t':
+					row.append("\\t");
+					break;
+				case '\n':
+					row.append("\\n");
+					break;
+				case '\r':
+					row.append("\\r");
+					break;
+				default:
+					row.append(c);
+			}
+		}
+	}
+
+	private void encode(CharBuffer chars) throws IOException {
+
+		while (true) {
+
+			CoderResult result = encoder.encode(chars, buffer, true);
+
+			if (result.isOverflow()) {
+				flushBuffer();
+			} else if (result.isError()) {
+				result.throwException();
+			} else {
+				break;
+			}
+		}
+		encoder.reset();
+	}
+
+	private void flushBuffer() throws IOException {
+
+		buffer.flip();
+		fileSize += buffer.remaining();
+
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Delete the parts of the table left in progress by a previous run (ie: not written by a running sink)
+	 */
+	private void deleteLeftoverFiles() throws IOException {
+
+		String prefix = table + "-";
+
+		try (Stream<Path> paths = Files.list(directory)) {
+
+			for (Path path : (Iterable<Path>) paths::iterator) {
+
+				String name = path.getFileName().toString();
+
+				if (name.startsWith(prefix) && name.endsWith(IN_PROGRESS_SUFFIX)
+						&& !IN_PROGRESS.contains(path.toAbsolutePath().normalize())) {
+
+					Files.deleteIfExists(path);
+					printlnTextInLog("delete the uncommitted file " + name);
+				}
+			}
+		}
+	}
+
+	private static Path inProgress(Path file) {
+
+		return file.resolveSibling(file.getFileName() + IN_PROGRESS_SUFFIX);
+	}
+
+	/**
+	 * Create the temporary file of the next part that does not exist yet
+	 */
+	private void openNextFile() throws IOException {
+
+		Path file;
+
+		while (true) {
+
+			file = directory.resolve(table + "-" + id + "-" + nextPart++ + (compressed ? ".tsv.gz" : ".tsv"));
+
+			if (Files.exists(file)) {
+				printlnTextInLog("skip the existing file " + file.getFileName());
+				continue;
+			}
+
+			Path temporary = inProgress(file).toAbsolutePath().normalize();
+
+			// registered before its creation, so that a sink starting concurrently does not delete it
+			if (!IN_PROGRESS.add(temporary)) {
+				continue;
+			}
+
+			try {
+				fileChannel = FileChannel.open(temporary, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+				break;
+			} catch (FileAlreadyExistsException e) {
+				IN_PROGRESS.remove(temporary);
+				printlnTextInLog("skip the existing file " + temporary.getFileName());
+			}
+		}
+
+		uncommitted.add(file);
+
+		if (compressed) {
+			gzip = new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE);
+			channel = Channels.newChannel(gzip);
+		} else {
+			channel = fileChannel;
+		}
+		fileSize = 0;
+	}
+
+	/**
+	 * Write the rows left and force the file to disk before closing it
+	 */
+	private void closeFile() throws IOException {
+
+		if (channel != null) {
+
+			try {
+				flushBuffer();
+
+				if (gzip != null) {
+					gzip.finish();
+				}
+				fileChannel.force(true);
+			} finally {
+				channel.close();
+				channel = null;
+				fileChannel = null;
+				gzip = null;
+			}
+		}
+	}
+
+	/**
+	 * Let the next run delete the parts left in progress
+	 */
+	private void releaseUncommittedFiles() {
+
+		for (Path file : uncommitted) {
+			IN_PROGRESS.remove(inProgress(file).toAbsolutePath().normalize());
+		}
+	}
+
+	/**
+	 * Atomically rename the closed parts written since the last commit to their final names
+	 */
+	private void commitFiles() throws IOException {
+
+		for (Path file : uncommitted) {
+
+			Path temporary = inProgress(file);
+
+			Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+			IN_PROGRESS.remove(temporary.toAbsolutePath().normalize());
+
+			synchronized (files) {
+				files.add(file);
+			}
+		}
+		uncommitted.clear();
+	}
+}
@@ -0,0 +1,79 @@
+package org.nextprot.pipeline.statement.metrics;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of the metrics of a pipeline element.
+ *
+ * The idle time of an element is the time spent waiting on its pipes: its input pipe being empty
+ * or its output pipes being full. It is busy the rest of its running time.
+ */
+public class ElementMetrics {
+
+	private final String name;
+	private final long runningTimeNanos;
+	private final PortMetrics input;
+	private final List<PortMetrics> outputs;
+
+	/**
+	 * @param name the name of the element
+	 * @param runningTimeNanos the time since the element has started (until it stops)
+	 * @param input the metrics of the input pipe or null for a source
+	 * @param outputs the metrics of the output pipes (empty for a sink)
+	 */
+	public ElementMetrics(String name, long runningTimeNanos, PortMetrics input, List<PortMetrics> outputs) {
+
+		this.name = name;
+		this.runningTimeNanos = runningTimeNanos;
+		this.input = input;
+		this.outputs = Collections.unmodifiableList(outputs);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getRunningTimeNanos() {
+		return runningTimeNanos;
+	}
+
+	/** @return the time waiting for statements to read or for free slots to write */
+	public long getIdleTimeNanos() {
+
+		long idle = (input != null) ? input.getReaderWaitTimeNanos() : 0;
+
+		for (PortMetrics output : outputs) {
+			idle += output.getWriterWaitTimeNanos();
+		}
+		return Math.min(idle, runningTimeNanos);
+	}
+
+	public long getBusyTimeNanos() {
+
+		return runningTimeNanos - getIdleTimeNanos();
+	}
+
+	/** @return the fraction of the running time the element was busy (0 if not started) */
+	public double getBusyRatio() {
+
+		return (runningTimeNanos == 0) ? 0 : (double) getBusyTimeNanos() / runningTimeNanos;
+	}
+
+	/** @return the metrics of the input pipe or null for a source */
+	public PortMetrics getInput() {
+		return input;
+	}
+
+	public List<PortMetrics> getOutputs() {
+		return outputs;
+	}
+
+	@Override
+	public String toString() {
+
+		return name + ": busy=" + String.format("%.0f%%", getBusyRatio() * 100) + " of " + runningTimeNanos / 1000000 + " ms" +
+				((input != null) ? ", input [" + input + "]" : "") +
+				(outputs.isEmpty() ? "" : ", outputs " + outputs);
+	}
+}
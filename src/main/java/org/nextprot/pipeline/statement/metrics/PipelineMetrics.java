@@ -0,0 +1,51 @@
+package org.nextprot.pipeline.statement.metrics;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * A snapshot of the metrics of all the elements of a pipeline
+ */
+public class PipelineMetrics {
+
+	private final long timestampMillis;
+	private final List<ElementMetrics> elements;
+
+	public PipelineMetrics(long timestampMillis, List<ElementMetrics> elements) {
+
+		this.timestampMillis = timestampMillis;
+		this.elements = Collections.unmodifiableList(elements);
+	}
+
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	public List<ElementMetrics> getElements() {
+		return elements;
+	}
+
+	public Optional<ElementMetrics> getElement(String name) {
+
+		return elements.stream().filter(element -> element.getName().equals(name)).findFirst();
+	}
+
+	/** @return the busiest element, the likely bottleneck of the pipeline */
+	public Optional<ElementMetrics> getBusiestElement() {
+
+		return elements.stream().max(Comparator.comparingDouble(ElementMetrics::getBusyRatio));
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder();
+
+		for (ElementMetrics element : elements) {
+			sb.append(element).append(System.lineSeparator());
+		}
+		return sb.toString();
+	}
+}
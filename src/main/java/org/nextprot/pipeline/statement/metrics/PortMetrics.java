@@ -0,0 +1,77 @@
+package org.nextprot.pipeline.statement.metrics;
+
+/**
+ * A snapshot of the metrics of the pipe behind a sink pipe port
+ */
+public class PortMetrics {
+
+	private final int capacity;
+	private final long receivedCount;
+	private final long readCount;
+	private final int size;
+	private final long readerWaitTimeNanos;
+	private final long writerWaitTimeNanos;
+	private final SpillMetrics spillMetrics;
+
+	public PortMetrics(int capacity, long receivedCount, long readCount, int size, long readerWaitTimeNanos, long writerWaitTimeNanos) {
+
+		this(capacity, receivedCount, readCount, size, readerWaitTimeNanos, writerWaitTimeNanos, null);
+	}
+
+	/**
+	 * @param spillMetrics the metrics of the spill file of the pipe or null if the pipe does not overflow to disk
+	 */
+	public PortMetrics(int capacity, long receivedCount, long readCount, int size, long readerWaitTimeNanos, long writerWaitTimeNanos,
+	                   SpillMetrics spillMetrics) {
+
+		this.capacity = capacity;
+		this.receivedCount = receivedCount;
+		this.readCount = readCount;
+		this.size = size;
+		this.readerWaitTimeNanos = readerWaitTimeNanos;
+		this.writerWaitTimeNanos = writerWaitTimeNanos;
+		this.spillMetrics = spillMetrics;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/** @return the number of statements written in the pipe */
+	public long getReceivedCount() {
+		return receivedCount;
+	}
+
+	/** @return the number of statements read from the pipe */
+	public long getReadCount() {
+		return readCount;
+	}
+
+	/** @return the number of statements in the pipe */
+	public int getSize() {
+		return size;
+	}
+
+	/** @return the time the reader was blocked on an empty pipe */
+	public long getReaderWaitTimeNanos() {
+		return readerWaitTimeNanos;
+	}
+
+	/** @return the time the writer was blocked on a full pipe */
+	public long getWriterWaitTimeNanos() {
+		return writerWaitTimeNanos;
+	}
+
+	/** @return the metrics of the spill file of the pipe or null if the pipe does not overflow to disk */
+	public SpillMetrics getSpillMetrics() {
+		return spillMetrics;
+	}
+
+	@Override
+	public String toString() {
+
+		return "in=" + receivedCount + ", out=" + readCount + ", size=" + size + "/" + capacity +
+				", empty wait=" + readerWaitTimeNanos / 1000000 + " ms, full wait=" + writerWaitTimeNanos / 1000000 + " ms" +
+				((spillMetrics != null) ? ", " + spillMetrics : "");
+	}
+}
@@ -0,0 +1,35 @@
+package org.nextprot.pipeline.statement.metrics;
+
+/**
+ * Measure the running time of a pipeline element
+ */
+public class RunningTime {
+
+	private volatile long startNanos;
+	private volatile long stopNanos;
+
+	/** Called by the element thread when it starts running */
+	public void start() {
+
+		startNanos = System.nanoTime();
+	}
+
+	/** Called by the element thread when it stops running */
+	public void stop() {
+
+		stopNanos = System.nanoTime();
+	}
+
+	/** @return the running time until now or until the stop, 0 if not started */
+	public long getNanos() {
+
+		long start = startNanos;
+
+		if (start == 0) {
+			return 0;
+		}
+		long stop = stopNanos;
+
+		return ((stop != 0) ? stop : System.nanoTime()) - start;
+	}
+}
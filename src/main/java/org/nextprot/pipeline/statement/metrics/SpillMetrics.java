@@ -0,0 +1,71 @@
+package org.nextprot.pipeline.statement.metrics;
+
+/**
+ * A snapshot of the metrics of the spill file of a sink pipe port overflowing to disk
+ */
+public class SpillMetrics {
+
+	private final long spilledCount;
+	private final long replayedCount;
+	private final long spilledBytes;
+	private final long fileSize;
+	private final long spillingNanos;
+	private final long replayingNanos;
+
+	/**
+	 * @param spillingNanos the time elapsed since the first statement was spilled
+	 * @param replayingNanos the time elapsed since the first statement was replayed
+	 */
+	public SpillMetrics(long spilledCount, long replayedCount, long spilledBytes, long fileSize, long spillingNanos, long replayingNanos) {
+
+		this.spilledCount = spilledCount;
+		this.replayedCount = replayedCount;
+		this.spilledBytes = spilledBytes;
+		this.fileSize = fileSize;
+		this.spillingNanos = spillingNanos;
+		this.replayingNanos = replayingNanos;
+	}
+
+	/** @return the number of statements written in the spill file */
+	public long getSpilledCount() {
+		return spilledCount;
+	}
+
+	/** @return the number of spilled statements read back from the spill file */
+	public long getReplayedCount() {
+		return replayedCount;
+	}
+
+	/** @return the number of bytes written in the spill file */
+	public long getSpilledBytes() {
+		return spilledBytes;
+	}
+
+	/** @return the current size of the spill file in bytes (including the bytes not flushed yet) */
+	public long getFileSize() {
+		return fileSize;
+	}
+
+	/** @return the number of statements spilled per second since the first one */
+	public double getSpillRate() {
+		return rate(spilledCount, spillingNanos);
+	}
+
+	/** @return the number of statements replayed per second since the first one */
+	public double getReplayRate() {
+		return rate(replayedCount, replayingNanos);
+	}
+
+	private static double rate(long count, long nanos) {
+
+		return (nanos > 0) ? count * 1e9 / nanos : 0;
+	}
+
+	@Override
+	public String toString() {
+
+		return "spilled=" + spilledCount + " (" + spilledBytes / 1024 + " KiB, " + (long) getSpillRate() + "/s)" +
+				", replayed=" + replayedCount + " (" + (long) getReplayRate() + "/s)" +
+				", spill file=" + fileSize / 1024 + " KiB";
+	}
+}
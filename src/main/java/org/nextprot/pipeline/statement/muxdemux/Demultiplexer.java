@@ -1,16 +1,24 @@
 package org.nextprot.pipeline.statement.muxdemux;
 
 
+import org.apache.log4j.Logger;
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ExecutionBackend;
 import org.nextprot.pipeline.statement.PipelineElement;
+import org.nextprot.pipeline.statement.PipelineLogging;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.nextprot.pipeline.statement.metrics.ElementMetrics;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
+import org.nextprot.pipeline.statement.metrics.RunningTime;
 import org.nextprot.pipeline.statement.elements.Sink;
 import org.nextprot.pipeline.statement.ports.SinkPipePort;
 import org.nextprot.pipeline.statement.ports.SourcePipePort;
 
 import java.io.IOException;
-import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
@@ -22,8 +30,7 @@ import static org.nextprot.pipeline.statement.elements.BasePipelineElement.END_O
  */
 public class Demultiplexer implements PipelineElement<DuplicableElement> {
 
-	private final ThreadLocal<Boolean> endOfFlow;
-	private final PrintStream logStream;
+	private Logger logger;
 
 	private boolean hasStarted;
 
@@ -31,11 +38,24 @@ public class Demultiplexer implements PipelineElement<DuplicableElement> {
 	private final CircularList<SourcePipePort> sourcePipePorts;
 	private final List<DuplicableElement> nextElements;
 
+	private final DispatchPolicy dispatchPolicy;
+
+	private final RunningTime runningTime = new RunningTime();
+
 	private AtomicInteger incrementer = new AtomicInteger (0);
 
 	public Demultiplexer(SinkPipePort sinkPipePort, int sourcePipePortCount) {
 
+		this(sinkPipePort, sourcePipePortCount, new RoundRobinDispatchPolicy());
+	}
+
+	/**
+	 * @param dispatchPolicy the policy distributing the statements over the source pipe ports
+	 */
+	public Demultiplexer(SinkPipePort sinkPipePort, int sourcePipePortCount, DispatchPolicy dispatchPolicy) {
+
 		this.sinkPipePort = sinkPipePort;
+		this.dispatchPolicy = dispatchPolicy;
 		this.nextElements = new ArrayList<>();
 		this.sourcePipePorts = createSourcePipePorts(sinkPipePort.capacity(), sourcePipePortCount);
 
@@ -43,15 +63,27 @@ public class Demultiplexer implements PipelineElement<DuplicableElement> {
 
 			throw new IllegalArgumentException(getThreadName()+": cannot create src ports");
 		}
-		this.endOfFlow = ThreadLocal.withInitial(() -> false);
-		this.logStream = createLogStream();
+		sinkPipePort.setBarrierHandler(this::broadcast);
+	}
+
+	/**
+	 * Every branch has to acknowledge the checkpoint barriers
+	 */
+	private void broadcast(CheckpointBarrier barrier) throws IOException {
+
+		barrier.fork(sourcePipePorts.size());
+
+		for (SourcePipePort sourcePipePort : sourcePipePorts) {
+
+			sourcePipePort.write(barrier);
+		}
 	}
 
 	private CircularList<SourcePipePort> createSourcePipePorts(int capacity, int sourcePipePortCount) {
 
 		CircularList<SourcePipePort> spp = new CircularList<>();
 
-		int newCapacity = capacity / sourcePipePortCount;
+		int newCapacity = Math.max(1, capacity / sourcePipePortCount);
 
 		for (int i=0 ; i<sourcePipePortCount ; i++) {
 
@@ -78,31 +110,66 @@ public class Demultiplexer implements PipelineElement<DuplicableElement> {
 			}
 		}
 
-		// 1. duplicate the whole chain from this element to sink
+		// 1. duplicate the whole chain from this element to sink (or to the multiplexer joining the chains)
 		List<DuplicableElement> duplicablePipeline = getPipelineDuplicableElementsFrom(element);
 
+		DuplicableElement last = duplicablePipeline.get(duplicablePipeline.size()-1);
+		Multiplexer multiplexer = (last.nextElement() instanceof Multiplexer) ? (Multiplexer) last.nextElement() : null;
+
+		if (multiplexer == null && !(last instanceof Sink)) {
+
+			throw new IllegalArgumentException(getThreadName()+": cannot demux from element "+element.getThreadName() + ", the last element should be a Sink or be piped to a Multiplexer");
+		}
+
+		// the original chain is replaced by its copies
+		if (multiplexer != null) {
+
+			last.getSourcePipePort().disconnectSink();
+		}
+
 		for (int i = 0; i < sourcePipePorts.size(); i++) {
 
 			SourcePipePort port = sourcePipePorts.get(i);
 
 			// copy elements until sink
 			List<DuplicableElement> copiedElements = duplicablePipeline.stream()
-					.map(elt -> elt.duplicate(port.capacity()))
+					.map(elt -> duplicate(elt, port.capacity()))
 					.collect(Collectors.toList());
 
-			if (! (copiedElements.get(copiedElements.size()-1) instanceof Sink) ) {
-
-				throw new IllegalArgumentException(getThreadName()+": cannot demux from element "+element.getThreadName() + ", the last element should be a Sink");
-			}
-
 			// ... -> F0(src)    (snk)F1 -> F2 -> .... -> SINK
 			DuplicableElement first = pipe(copiedElements);
 
-			// ... -> F0(src) -> (snk)F1 -> F2 -> .... -> SINK
-			port.connect(first.getSinkPipePort());
+			// ... -> F0(src)    (snk)F1 -> F2 -> .... -> MUX
+			if (multiplexer != null) {
+
+				copiedElements.get(copiedElements.size()-1).pipe(multiplexer);
+			}
 
 			nextElements.add(first);
 		}
+
+		dispatchPolicy.prepareBranches(nextElements.stream()
+				.map(DuplicableElement::getSinkPipePort)
+				.collect(Collectors.toList()));
+
+		// ... -> F0(src) -> (snk)F1 -> F2 -> .... -> SINK (or MUX)
+		for (int i = 0; i < sourcePipePorts.size(); i++) {
+
+			sourcePipePorts.get(i).connect(nextElements.get(i).getSinkPipePort());
+		}
+	}
+
+	/**
+	 * Duplicate the given element keeping the type, the wait strategy and the spillover of its sink pipe port
+	 */
+	private static DuplicableElement duplicate(DuplicableElement element, int capacity) {
+
+		DuplicableElement copy = element.duplicate(capacity);
+		copy.getSinkPipePort().setType(element.getSinkPipePort().getType());
+		copy.getSinkPipePort().setWaitStrategy(element.getSinkPipePort().getWaitStrategy());
+		copy.getSinkPipePort().setSpillover(element.getSinkPipePort().getSpillDirectory(), element.getSinkPipePort().getSpillCodec());
+
+		return copy;
 	}
 
 	/**
@@ -128,7 +195,8 @@ public class Demultiplexer implements PipelineElement<DuplicableElement> {
 
 		pipelineElementList.add(element);
 
-		while ((element = element.nextElement()) != null) {
+		// a multiplexer is shared by the duplicated chains
+		while ((element = element.nextElement()) != null && !(element instanceof Multiplexer)) {
 
 			pipelineElementList.add(element);
 		}
@@ -137,30 +205,32 @@ public class Demultiplexer implements PipelineElement<DuplicableElement> {
 	}
 
 	@Override
-	public void start(List<Thread> collector) {
+	public void start(ExecutionBackend backend, Map<PipelineElement<?>, Future<?>> collector) {
 
 		if (!hasStarted) {
 			hasStarted = true;
-			Thread thread = new Thread(this, getThreadName());
-			thread.start();
-			collector.add(thread);
+			collector.put(this, backend.submit(this));
 		}
 
 		// start the next elements into their own thread
 		for (PipelineElement pipelineElement : nextElements) {
-			pipelineElement.start(collector);
+			pipelineElement.start(backend, collector);
 		}
 	}
 
 	@Override
-	public PrintStream getLogStream() {
+	public Logger getLogger() {
 
-		return logStream;
+		if (logger == null) {
+			logger = PipelineLogging.getLogger(getThreadName());
+		}
+		return logger;
 	}
 
 	@Override
 	public void run() {
 
+		runningTime.start();
 		try {
 			printlnTextInLog("opened");
 			handleFlow();
@@ -174,7 +244,23 @@ public class Demultiplexer implements PipelineElement<DuplicableElement> {
 			} catch (IOException e) {
 				System.err.println(Thread.currentThread().getName() + ": could not close the pipe, e=" + e.getMessage());
 			}
+			runningTime.stop();
+		}
+	}
+
+	@Override
+	public ElementMetrics getMetrics() {
+
+		List<PortMetrics> outputs = new ArrayList<>();
+
+		for (SourcePipePort sourcePipePort : sourcePipePorts) {
+
+			PortMetrics output = sourcePipePort.getMetrics();
+			if (output != null) {
+				outputs.add(output);
+			}
 		}
+		return new ElementMetrics(getThreadName(), runningTime.getNanos(), sinkPipePort.getMetrics(), outputs);
 	}
 
 	@Override
@@ -184,44 +270,69 @@ public class Demultiplexer implements PipelineElement<DuplicableElement> {
 
 		printlnTextInLog("sink pipe port closed");
 
-		for (PipelineElement outputPipelineElement : nextElements) {
-
-			outputPipelineElement.getSinkPipePort().close();
-			printlnTextInLog("closing sink pipe port of "+outputPipelineElement.getThreadName());
+		for (SourcePipePort sourcePipePort : sourcePipePorts) {
 
-			outputPipelineElement.getSourcePipePort().close();
-			printlnTextInLog("closing source pipe port of "+outputPipelineElement.getThreadName());
+			sourcePipePort.close();
 		}
+		printlnTextInLog("source pipe ports closed");
 		printlnTextInLog("closed");
 	}
 
 	private void handleFlow() throws IOException {
 
-		while (!endOfFlow.get()) {
+		Statement[] buffer = new Statement[sinkPipePort.capacity()];
+		int numOfStatements;
 
-			// 1. get input
-			Statement[] buffer = new Statement[sinkPipePort.capacity()];
+		// 1. get input
+		while ((numOfStatements = sinkPipePort.read(buffer, 0, buffer.length)) != -1) {
 
-			int numOfStatements = sinkPipePort.read(buffer, 0, sinkPipePort.capacity());
+			int endOfFlowIndex = indexOfEndOfFlowToken(buffer, numOfStatements);
 
-			printlnTextInLog("distributing " + numOfStatements + " statements...");
+			if (getLogger().isDebugEnabled()) {
+				getLogger().debug("distributing " + endOfFlowIndex + " statements...");
+			}
 
-			int j = 0;
-			for (int i = 0; i < numOfStatements; i++) {
+			// 2. split in n output batch
+			// 3. distribute to all output
+			if (endOfFlowIndex > 0) {
+				dispatchPolicy.distribute(buffer, endOfFlowIndex, sourcePipePorts);
+			}
 
-				// 2. split in n output batch
-				// 3. distribute to all output
-				sourcePipePorts.get(j++).write(buffer[i]);
+			if (endOfFlowIndex < numOfStatements) {
+				break;
 			}
+		}
+
+		// 4. every branch has to reach the end of flow
+		for (SourcePipePort sourcePipePort : sourcePipePorts) {
 
-			endOfFlow.set(buffer[numOfStatements-1] == END_OF_FLOW_TOKEN);
+			sourcePipePort.write(END_OF_FLOW_TOKEN);
 		}
 	}
 
+	/**
+	 * @return the index of the END_OF_FLOW_TOKEN or numOfStatements if not found
+	 */
+	private static int indexOfEndOfFlowToken(Statement[] buffer, int numOfStatements) {
+
+		for (int i = 0; i < numOfStatements; i++) {
+
+			if (buffer[i] == END_OF_FLOW_TOKEN) {
+				return i;
+			}
+		}
+		return numOfStatements;
+	}
+
 	public String getThreadName() {
 		return "Demux";
 	}
 
+	public DispatchPolicy getDispatchPolicy() {
+
+		return dispatchPolicy;
+	}
+
 	@Override
 	public SinkPipePort getSinkPipePort() {
 		return sinkPipePort;
@@ -0,0 +1,31 @@
+package org.nextprot.pipeline.statement.muxdemux;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The way a Demultiplexer distributes batches of statements over its source pipe ports
+ */
+public interface DispatchPolicy {
+
+	/**
+	 * Distribute a batch of statements over the given ports
+	 *
+	 * @param batch the statements to distribute (without END_OF_FLOW_TOKEN)
+	 * @param length the number of statements in the batch
+	 * @param sourcePipePorts the ports of all the branches
+	 * @throws IOException if a port cannot be written
+	 */
+	void distribute(Statement[] batch, int length, List<SourcePipePort> sourcePipePorts) throws IOException;
+
+	/**
+	 * Called by the Demultiplexer once the branches are duplicated, before their sink pipe ports are connected
+	 *
+	 * @param sinkPipePorts the sink pipe ports of the first element of each branch
+	 */
+	default void prepareBranches(List<SinkPipePort> sinkPipePorts) { }
+}
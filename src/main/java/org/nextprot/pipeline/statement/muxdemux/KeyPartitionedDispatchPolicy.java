@@ -0,0 +1,85 @@
+package org.nextprot.pipeline.statement.muxdemux;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Route each statement to the branch owning its key, so that all statements sharing a key
+ * (an entry accession, a unicity key...) are handled by the same branch.
+ *
+ * The partition of a key is given by a mixed hash of the key reduced to the number of ports.
+ * Each batch is split in one sub-batch per port, each written in bulk.
+ */
+public class KeyPartitionedDispatchPolicy implements DispatchPolicy {
+
+	private final Function<Statement, String> keyExtractor;
+
+	/** Reused sub-batches, one per port */
+	private Statement[][] partitions = new Statement[0][];
+	private int[] partitionLengths = new int[0];
+
+	/**
+	 * @param keyExtractor extracts the key of a statement (see StatementKeys)
+	 */
+	public KeyPartitionedDispatchPolicy(Function<Statement, String> keyExtractor) {
+
+		this.keyExtractor = keyExtractor;
+	}
+
+	@Override
+	public void distribute(Statement[] batch, int length, List<SourcePipePort> sourcePipePorts) throws IOException {
+
+		int portCount = sourcePipePorts.size();
+
+		ensurePartitionCapacity(portCount, length);
+		Arrays.fill(partitionLengths, 0);
+
+		for (int i = 0; i < length; i++) {
+
+			int partition = partition(keyExtractor.apply(batch[i]), portCount);
+			partitions[partition][partitionLengths[partition]++] = batch[i];
+		}
+
+		for (int partition = 0; partition < portCount; partition++) {
+
+			if (partitionLengths[partition] > 0) {
+				sourcePipePorts.get(partition).write(partitions[partition], 0, partitionLengths[partition]);
+			}
+		}
+	}
+
+	/**
+	 * @return the partition of the given key in [0, partitionCount)
+	 */
+	static int partition(String key, int partitionCount) {
+
+		if (key == null) {
+			return 0;
+		}
+
+		// murmur3 finalizer: spread the bits of String.hashCode (which is cached)
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+
+		// map the 32-bit hash to [0, partitionCount) without division
+		return (int) (((h & 0xffffffffL) * partitionCount) >>> 32);
+	}
+
+	private void ensurePartitionCapacity(int portCount, int length) {
+
+		if (partitions.length != portCount || (portCount > 0 && partitions[0].length < length)) {
+
+			partitions = new Statement[portCount][length];
+			partitionLengths = new int[portCount];
+		}
+	}
+}
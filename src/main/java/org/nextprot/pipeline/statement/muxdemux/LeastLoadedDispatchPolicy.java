@@ -0,0 +1,250 @@
+package org.nextprot.pipeline.statement.muxdemux;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+import org.nextprot.pipeline.statement.ports.WorkStealingPipe;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Route each chunk of a batch to the branch with the fewest statements pending in its pipe,
+ * so that a slow branch does not stall the others.
+ *
+ * A batch is only bound to a branch when a chunk is written, chunk by chunk: when all the pipes
+ * are full the demultiplexer does not block on a given branch but waits for the first branch
+ * that drains its pipe.
+ *
+ * With work stealing (the default), the branches of the demultiplexer share a {@link WorkStealingPipe}:
+ * an idle branch takes over the statements pending in the pipe of a busy one, as a statement costing more
+ * than the others holds back the ones written after it (the type, wait strategy and spillover of the branch
+ * pipes are then ignored).
+ * Without work stealing, statements already written to a pipe stay in their branch. A pipe spilling over to disk
+ * never blocks the writer: it is written to even when full, but only if no other branch has free slots.
+ *
+ * Per-branch counters tell how skewed the load is.
+ */
+public class LeastLoadedDispatchPolicy implements DispatchPolicy {
+
+	private static final int SPIN_TRIES = 100;
+	private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private final boolean workStealing;
+
+	/** The branch first visited when looking for the least loaded one (rotates to break ties) */
+	private int firstBranch = 0;
+
+	/** The pipes of the branches of the demultiplexer, null without work stealing */
+	private volatile WorkStealingPipe workStealingPipe;
+
+	private volatile AtomicLongArray dispatchedStatementCounts = new AtomicLongArray(0);
+	private volatile AtomicLongArray dispatchedChunkCounts = new AtomicLongArray(0);
+	private volatile AtomicLongArray fullPipeCounts = new AtomicLongArray(0);
+
+	public LeastLoadedDispatchPolicy() {
+
+		this(true);
+	}
+
+	/**
+	 * @param workStealing true to let the idle branches steal the statements pending in the pipes of the busy ones
+	 */
+	public LeastLoadedDispatchPolicy(boolean workStealing) {
+
+		this.workStealing = workStealing;
+	}
+
+	public boolean isWorkStealing() {
+
+		return workStealing;
+	}
+
+	@Override
+	public void prepareBranches(List<SinkPipePort> sinkPipePorts) {
+
+		if (workStealing) {
+			workStealingPipe = new WorkStealingPipe(sinkPipePorts);
+		}
+	}
+
+	@Override
+	public void distribute(Statement[] batch, int length, List<SourcePipePort> sourcePipePorts) throws IOException {
+
+		int portCount = sourcePipePorts.size();
+
+		ensureCounters(portCount);
+
+		// no branch gets more than its share of the batch at once
+		int maxChunkLength = (length + portCount - 1) / portCount;
+		int offset = 0;
+
+		while (offset < length) {
+
+			int branch = awaitLeastLoadedBranch(sourcePipePorts);
+			SourcePipePort port = sourcePipePorts.get(branch);
+
+			int freeSlots = freeSlots(port);
+			int chunkLength = Math.min(maxChunkLength, length - offset);
+
+			if (freeSlots > 0) {
+				chunkLength = Math.min(chunkLength, freeSlots);
+			}
+
+			port.write(batch, offset, chunkLength);
+			offset += chunkLength;
+
+			dispatchedStatementCounts.addAndGet(branch, chunkLength);
+			dispatchedChunkCounts.incrementAndGet(branch);
+		}
+	}
+
+	/**
+	 * Waits until a pipe can be written without blocking
+	 *
+	 * @return the index of the least loaded branch
+	 */
+	private int awaitLeastLoadedBranch(List<SourcePipePort> sourcePipePorts) throws InterruptedIOException {
+
+		int tries = 0;
+		int branch;
+
+		// the full pipes are only counted once per chunk, not at each poll
+		while ((branch = leastLoadedBranch(sourcePipePorts, tries == 0)) < 0) {
+
+			if (tries++ < SPIN_TRIES) {
+				Thread.yield();
+			} else {
+				// back off up to MAX_PARK_NANOS: the branches do not signal the demultiplexer
+				LockSupport.parkNanos(this, Math.min(MAX_PARK_NANOS, 1000L << Math.min(tries - SPIN_TRIES, 10)));
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException();
+			}
+		}
+		return branch;
+	}
+
+	/**
+	 * @param countFullPipes true to count the branches found with a full pipe
+	 * @return the index of the branch with the most free slots (or the spilling branch with the smallest backlog
+	 * if all pipes are full), -1 if all pipes are full and none spills over
+	 */
+	private int leastLoadedBranch(List<SourcePipePort> sourcePipePorts, boolean countFullPipes) {
+
+		int portCount = sourcePipePorts.size();
+		int leastLoaded = -1;
+		int maxFreeSlots = Integer.MIN_VALUE;
+
+		for (int i = 0; i < portCount; i++) {
+
+			int branch = (firstBranch + i) % portCount;
+			SourcePipePort port = sourcePipePorts.get(branch);
+			int freeSlots = freeSlots(port);
+
+			if (freeSlots <= 0 && countFullPipes) {
+				fullPipeCounts.incrementAndGet(branch);
+			}
+			if ((freeSlots > 0 || port.isSpillingOver()) && freeSlots > maxFreeSlots) {
+				maxFreeSlots = freeSlots;
+				leastLoaded = branch;
+			}
+		}
+		firstBranch = (firstBranch + 1) % portCount;
+
+		return leastLoaded;
+	}
+
+	/**
+	 * @return the free slots of the pipe, negative for the backlog of a pipe spilling over
+	 */
+	private static int freeSlots(SourcePipePort port) {
+
+		return port.capacity() - port.size();
+	}
+
+	private void ensureCounters(int portCount) {
+
+		if (dispatchedStatementCounts.length() != portCount) {
+
+			dispatchedStatementCounts = new AtomicLongArray(portCount);
+			dispatchedChunkCounts = new AtomicLongArray(portCount);
+			fullPipeCounts = new AtomicLongArray(portCount);
+		}
+	}
+
+	/** @return the number of branches seen by this policy */
+	public int getBranchCount() {
+
+		return dispatchedStatementCounts.length();
+	}
+
+	/** @return the number of statements dispatched to the given branch */
+	public long getDispatchedStatementCount(int branch) {
+
+		return dispatchedStatementCounts.get(branch);
+	}
+
+	/** @return the number of chunks written to the given branch */
+	public long getDispatchedChunkCount(int branch) {
+
+		return dispatchedChunkCounts.get(branch);
+	}
+
+	/** @return the number of chunks dispatched while the pipe of the given branch was full */
+	public long getFullPipeCount(int branch) {
+
+		return fullPipeCounts.get(branch);
+	}
+
+	/** @return the number of statements the given branch stole from the pipes of the other branches */
+	public long getStolenStatementCount(int branch) {
+
+		WorkStealingPipe pipe = workStealingPipe;
+
+		return (pipe != null) ? pipe.getStolenCount(branch) : 0;
+	}
+
+	/**
+	 * @return the ratio of the number of statements dispatched to the busiest branch
+	 * to the mean number of statements per branch (1 for a perfectly balanced load)
+	 */
+	public double getLoadSkew() {
+
+		AtomicLongArray counts = dispatchedStatementCounts;
+
+		long total = 0;
+		long max = 0;
+
+		for (int i = 0; i < counts.length(); i++) {
+
+			long count = counts.get(i);
+			total += count;
+			max = Math.max(max, count);
+		}
+		return (total == 0) ? 1 : (double) max * counts.length() / total;
+	}
+
+	@Override
+	public String toString() {
+
+		StringBuilder sb = new StringBuilder("least loaded dispatch [");
+
+		for (int i = 0; i < getBranchCount(); i++) {
+
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append("branch ").append(i).append(": ")
+					.append(getDispatchedStatementCount(i)).append(" statements/")
+					.append(getDispatchedChunkCount(i)).append(" chunks/")
+					.append(getFullPipeCount(i)).append(" full/")
+					.append(getStolenStatementCount(i)).append(" stolen");
+		}
+		return sb.append("], skew=").append(String.format("%.2f", getLoadSkew())).toString();
+	}
+}
@@ -1,11 +1,184 @@
 package org.nextprot.pipeline.statement.muxdemux;
 
 
+import org.apache.log4j.Logger;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ExecutionBackend;
+import org.nextprot.pipeline.statement.PipelineElement;
+import org.nextprot.pipeline.statement.PipelineLogging;
+import org.nextprot.pipeline.statement.metrics.ElementMetrics;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
+import org.nextprot.pipeline.statement.metrics.RunningTime;
+import org.nextprot.pipeline.statement.ports.FanInPipe;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import static org.nextprot.pipeline.statement.elements.BasePipelineElement.END_OF_FLOW_TOKEN;
+
 /**
  * Multiplexer receive statements from multiple input channels and send
  * them to a single channel.
+ *
+ * Each input channel connects to its own sink pipe port of a lock-free multi-producer/single-consumer
+ * fan-in pipe. The END_OF_FLOW_TOKEN is sent only when all input channels are finished.
+ *
+ * A multiplexer joins the chains duplicated by a Demultiplexer: it is shared, not duplicated.
+ *
+ * The checkpoint barriers read from the fan-in pipe are passed downstream as they come: a barrier forked
+ * by the demultiplexer arrives once per chain, and each copy is acknowledged by the next sinks after the statements
+ * of its chain, so that the checkpoint commits after the statements of all the chains.
  */
-public class Multiplexer {
+public class Multiplexer implements DuplicableElement {
+
+	private final FanInPipe fanInPipe;
+	private final SourcePipePort sourcePipePort;
+
+	private final RunningTime runningTime = new RunningTime();
+	private Logger logger;
+
+	private boolean hasStarted;
+	private DuplicableElement nextElement;
+
+	public Multiplexer(int capacity, int sinkPipePortCount) {
+
+		this.fanInPipe = new FanInPipe(capacity, sinkPipePortCount);
+		this.sourcePipePort = new SourcePipePort(capacity);
+	}
+
+	@Override
+	public void pipe(DuplicableElement nextElement) throws IOException {
+
+		this.nextElement = nextElement;
+		sourcePipePort.connect(nextElement.getSinkPipePort());
+	}
+
+	/**
+	 * @return the first sink pipe port that is not connected yet
+	 * @throws IllegalStateException if all sink pipe ports are connected
+	 */
+	@Override
+	public SinkPipePort getSinkPipePort() {
+
+		return fanInPipe.getSinkPipePorts().stream()
+				.filter(port -> !port.isConnected())
+				.findFirst()
+				.orElseThrow(() -> new IllegalStateException(getThreadName() + ": all sink pipe ports are connected"));
+	}
+
+	/** @return the sink pipe ports, one per input channel */
+	public List<SinkPipePort> getSinkPipePorts() {
+
+		return fanInPipe.getSinkPipePorts();
+	}
+
+	@Override
+	public SourcePipePort getSourcePipePort() {
+
+		return sourcePipePort;
+	}
+
+	@Override
+	public DuplicableElement nextElement() {
+
+		return nextElement;
+	}
+
+	/**
+	 * @return this multiplexer as it is shared by all the duplicated chains
+	 */
+	@Override
+	public DuplicableElement duplicate(int newCapacity) {
+
+		return this;
+	}
+
+	@Override
+	public void start(ExecutionBackend backend, Map<PipelineElement<?>, Future<?>> collector) {
+
+		if (!hasStarted) {
+			hasStarted = true;
+			collector.put(this, backend.submit(this));
+		}
+
+		if (nextElement != null) {
+			nextElement.start(backend, collector);
+		}
+	}
+
+	@Override
+	public Logger getLogger() {
+
+		if (logger == null) {
+			logger = PipelineLogging.getLogger(getThreadName());
+		}
+		return logger;
+	}
+
+	@Override
+	public void run() {
+
+		runningTime.start();
+		try {
+			printlnTextInLog("opened");
+			handleFlow();
+			printlnTextInLog("end of flow");
+		} catch (IOException e) {
+			System.err.println(Thread.currentThread().getName() + ": " + e.getMessage());
+		}
+		finally {
+			try {
+				stop();
+			} catch (IOException e) {
+				System.err.println(Thread.currentThread().getName() + ": could not close the pipe, e=" + e.getMessage());
+			}
+			runningTime.stop();
+		}
+	}
+
+	@Override
+	public ElementMetrics getMetrics() {
+
+		PortMetrics output = sourcePipePort.getMetrics();
+
+		return new ElementMetrics(getThreadName(), runningTime.getNanos(), fanInPipe.getMetrics(),
+				(output != null) ? Collections.singletonList(output) : Collections.emptyList());
+	}
+
+	@Override
+	public void stop() throws IOException {
+
+		fanInPipe.close();
+		printlnTextInLog("sink pipe ports closed");
+
+		sourcePipePort.close();
+		printlnTextInLog("source pipe port closed");
+
+		printlnTextInLog("closed");
+	}
+
+	private void handleFlow() throws IOException {
+
+		Statement[] buffer = new Statement[fanInPipe.capacity()];
+		int numOfStatements;
+
+		// the barriers among the statements are written as they are, in order
+		while ((numOfStatements = fanInPipe.read(buffer, 0, buffer.length)) != -1) {
+
+			sourcePipePort.write(buffer, 0, numOfStatements);
+		}
 
+		printlnTextInLog("all " + fanInPipe.getSinkPipePorts().size() + " input channels finished");
+		sourcePipePort.write(END_OF_FLOW_TOKEN);
+	}
 
+	@Override
+	public String getThreadName() {
+		return "Mux";
+	}
 }
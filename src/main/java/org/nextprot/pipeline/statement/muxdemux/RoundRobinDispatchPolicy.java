@@ -0,0 +1,38 @@
+package org.nextprot.pipeline.statement.muxdemux;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Split each batch in contiguous slices of (almost) equal size and write each slice in bulk to its source pipe port.
+ *
+ * The first slice goes to the port following the last port that got an extra statement, so that
+ * small batches are spread round-robin over all the ports.
+ */
+public class RoundRobinDispatchPolicy implements DispatchPolicy {
+
+	/** The source pipe port receiving the first slice of the next batch */
+	private int nextSourcePipePort = 0;
+
+	@Override
+	public void distribute(Statement[] batch, int length, List<SourcePipePort> sourcePipePorts) throws IOException {
+
+		int portCount = sourcePipePorts.size();
+		int sliceLength = length / portCount;
+		int remaining = length % portCount;
+
+		int offset = 0;
+
+		for (int i = 0; i < portCount && offset < length; i++) {
+
+			int sliceLengthWithExtra = (i < remaining) ? sliceLength + 1 : sliceLength;
+
+			sourcePipePorts.get((nextSourcePipePort + i) % portCount).write(batch, offset, sliceLengthWithExtra);
+			offset += sliceLengthWithExtra;
+		}
+		nextSourcePipePort = (nextSourcePipePort + remaining) % portCount;
+	}
+}
@@ -0,0 +1,24 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+
+import java.io.IOException;
+
+/**
+ * Handles the checkpoint barriers read by a sink pipe port on behalf of its element
+ * (ie: forwards them downstream or acknowledges them)
+ */
+@FunctionalInterface
+public interface BarrierHandler {
+
+	/**
+	 * Drops the barriers read by an element unaware of checkpoints: the checkpoints then never commit,
+	 * rather than the barriers being read as statements
+	 */
+	BarrierHandler DROP = barrier -> { };
+
+	/**
+	 * Called by the reader thread once it has handled all the statements read before the barrier
+	 */
+	void onBarrier(CheckpointBarrier barrier) throws IOException;
+}
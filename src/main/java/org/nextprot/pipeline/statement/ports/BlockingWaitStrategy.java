@@ -0,0 +1,69 @@
+package org.nextprot.pipeline.statement.ports;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Blocks on a lock condition until the peer signals.
+ * It costs no CPU while waiting and suits idle stages.
+ */
+public class BlockingWaitStrategy implements WaitStrategy {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition signalled = lock.newCondition();
+
+	/* True while a thread is waiting: the peer only takes the lock in this case */
+	private volatile boolean waiting;
+	private volatile long waitTimeNanos;
+
+	@Override
+	public void waitFor(BooleanSupplier condition) throws InterruptedIOException {
+
+		if (condition.getAsBoolean()) {
+			return;
+		}
+
+		long start = System.nanoTime();
+
+		lock.lock();
+		try {
+			waiting = true;
+			while (!condition.getAsBoolean()) {
+				signalled.await();
+			}
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException();
+		} finally {
+			waiting = false;
+			lock.unlock();
+			waitTimeNanos += System.nanoTime() - start;
+		}
+	}
+
+	@Override
+	public void signal() {
+
+		if (waiting) {
+			lock.lock();
+			try {
+				signalled.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+
+	@Override
+	public long getWaitTimeNanos() {
+
+		return waitTimeNanos;
+	}
+
+	@Override
+	public BlockingWaitStrategy copy() {
+
+		return new BlockingWaitStrategy();
+	}
+}
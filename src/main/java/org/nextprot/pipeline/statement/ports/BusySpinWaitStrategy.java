@@ -0,0 +1,42 @@
+package org.nextprot.pipeline.statement.ports;
+
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins until the condition holds. It has the lowest latency but burns a whole core:
+ * use it only for hot stages on hosts with more cores than running elements.
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+	private volatile long waitTimeNanos;
+
+	@Override
+	public void waitFor(BooleanSupplier condition) throws InterruptedIOException {
+
+		long start = System.nanoTime();
+
+		while (!condition.getAsBoolean()) {
+
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException();
+			}
+		}
+		waitTimeNanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void signal() { }
+
+	@Override
+	public long getWaitTimeNanos() {
+
+		return waitTimeNanos;
+	}
+
+	@Override
+	public BusySpinWaitStrategy copy() {
+
+		return new BusySpinWaitStrategy();
+	}
+}
@@ -0,0 +1,398 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A pipe merging statements written by multiple writers into a single reader.
+ *
+ * Each writer connects to its own sink pipe port but all ports share a bounded lock-free
+ * multi-producer/single-consumer ring: writers claim slots by CAS on the tail sequence and
+ * the reader consumes them in claim order.
+ *
+ * The END_OF_FLOW_TOKEN of a writer is not transferred: it finishes the writer's port, as closing it does.
+ * The reader reaches the end of the stream only when all the ports are finished.
+ *
+ * The checkpoint barriers are transferred as they are, one per writer: the reader has to check for them
+ * (ie: a Multiplexer passes them downstream).
+ */
+public class FanInPipe {
+
+	private final AtomicReferenceArray<Statement> slots;
+	private final int mask;
+	private final int capacity;
+
+	/** The sequence of the next slot to read (only written by the reader) */
+	private final Sequence head = new Sequence();
+	/** The sequence of the next slot to claim (CASed by the writers) */
+	private final Sequence tail = new Sequence();
+
+	private final List<SinkPipePort> sinkPipePorts;
+	private final List<Branch> branches;
+	private final AtomicInteger finishedBranchCount = new AtomicInteger(0);
+
+	private final WaitStrategy readerWaitStrategy;
+	private volatile boolean closedByReader = false;
+
+	/** The number of statements read (only written by the reader) */
+	private final Sequence readCount = new Sequence();
+	/** The buffer of the single statement reads (only used by the reader) */
+	private final Statement[] single = new Statement[1];
+
+	public FanInPipe(int capacity, int sinkPipePortCount) {
+
+		this(capacity, sinkPipePortCount, new ParkingWaitStrategy());
+	}
+
+	public FanInPipe(int capacity, int sinkPipePortCount, WaitStrategy waitStrategy) {
+
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Pipe size <= 0");
+		} else if (sinkPipePortCount <= 0) {
+			throw new IllegalArgumentException("Sink pipe port count <= 0");
+		}
+		this.capacity = capacity;
+		this.slots = new AtomicReferenceArray<>(1 << (32 - Integer.numberOfLeadingZeros(capacity - 1)));
+		this.mask = slots.length() - 1;
+		this.readerWaitStrategy = waitStrategy.copy();
+
+		List<SinkPipePort> ports = new ArrayList<>(sinkPipePortCount);
+		branches = new ArrayList<>(sinkPipePortCount);
+
+		for (int i = 0; i < sinkPipePortCount; i++) {
+
+			Branch branch = new Branch(waitStrategy.copy());
+			branches.add(branch);
+			ports.add(new SinkPipePort(capacity, branch));
+		}
+		sinkPipePorts = Collections.unmodifiableList(ports);
+	}
+
+	public int capacity() {
+
+		return capacity;
+	}
+
+	/** @return the sink pipe ports, one per writer */
+	public List<SinkPipePort> getSinkPipePorts() {
+
+		return sinkPipePorts;
+	}
+
+	/**
+	 * Reads the next statement.
+	 * This method blocks until a statement is available or all the ports are finished.
+	 *
+	 * @return the next statement, or <code>null</code> if the end of the stream is reached
+	 */
+	public Statement read() throws IOException {
+
+		if (read(single, 0, 1) == -1) {
+			return null;
+		}
+		Statement statement = single[0];
+		single[0] = null;
+
+		return statement;
+	}
+
+	/**
+	 * Reads up to <code>len</code> statements. This method blocks until at least one statement
+	 * is available.
+	 *
+	 * @return the number of statements read, or <code>-1</code> if all the ports are finished
+	 */
+	public int read(Statement[] sbuf, int off, int len) throws IOException {
+
+		if ((off < 0) || (len < 0) || ((off + len) > sbuf.length)) {
+			throw new IndexOutOfBoundsException();
+		} else if (len == 0) {
+			return 0;
+		}
+
+		long h = head.get();
+
+		if (!awaitStatement(h)) {
+			return -1;
+		}
+
+		int rlen = 0;
+		Statement statement;
+
+		// a claimed slot stays null until its writer has filled it
+		while (rlen < len && (statement = slots.get((int) h & mask)) != null) {
+
+			slots.lazySet((int) h & mask, null);
+			sbuf[off + rlen++] = statement;
+			h++;
+		}
+		head.set(h);
+		readCount.setOrdered(readCount.get() + rlen);
+
+		for (Branch branch : branches) {
+			branch.writerWaitStrategy.signal();
+		}
+		return rlen;
+	}
+
+	/** @return a snapshot of the metrics of the pipe merging all the ports */
+	public PortMetrics getMetrics() {
+
+		long receivedCount = 0;
+		long writerWaitTimeNanos = 0;
+
+		for (SinkPipePort port : sinkPipePorts) {
+
+			receivedCount += port.getReceivedCount();
+			writerWaitTimeNanos += port.getWriterWaitTimeNanos();
+		}
+		return new PortMetrics(capacity, receivedCount, readCount.get(), size(),
+				readerWaitStrategy.getWaitTimeNanos(), writerWaitTimeNanos);
+	}
+
+	/** @return the number of statements claimed by the writers and not yet read */
+	public int size() {
+
+		long h = head.get();
+
+		return (int) (tail.get() - h);
+	}
+
+	/**
+	 * Closes the pipe on the reader side: writers will fail to write.
+	 */
+	public void close() {
+
+		closedByReader = true;
+		for (Branch branch : branches) {
+			branch.writerWaitStrategy.signal();
+		}
+	}
+
+	/**
+	 * Waits until the slot at sequence <code>h</code> is filled
+	 *
+	 * @return false if all ports are finished and there is nothing left to read
+	 */
+	private boolean awaitStatement(long h) throws IOException {
+
+		int index = (int) h & mask;
+
+		while (slots.get(index) == null) {
+
+			if (closedByReader) {
+				throw new IOException("Pipe closed");
+			}
+			if (isFinished()) {
+				// the writers filled their slots before finishing: the slot is either visible now or never claimed
+				return slots.get(index) != null;
+			}
+			readerWaitStrategy.waitFor(() -> slots.get(index) != null || isFinished() || closedByReader);
+		}
+		return true;
+	}
+
+	private boolean isFinished() {
+
+		return finishedBranchCount.get() == branches.size();
+	}
+
+	/**
+	 * Claims free slots for a writer
+	 *
+	 * @return the sequence of the first claimed slot
+	 */
+	private long claim(int count, WaitStrategy waitStrategy) throws IOException {
+
+		while (true) {
+
+			long t = tail.get();
+
+			if (closedByReader) {
+				throw new IOException("Pipe broken");
+			} else if (t + count - head.get() > capacity) {
+				waitStrategy.waitFor(() -> tail.get() + count - head.get() <= capacity || closedByReader);
+			} else if (tail.compareAndSet(t, t + count)) {
+				return t;
+			}
+		}
+	}
+
+	/**
+	 * Fills claimed slots and wakes up the reader.
+	 * The last slot is set with a volatile write so that the reader is either woken up or sees the statements.
+	 */
+	private void publish(long t, Statement[] statements, int off, int n) {
+
+		for (int i = 0; i < n - 1; i++) {
+			slots.lazySet((int) (t + i) & mask, statements[off + i]);
+		}
+		slots.set((int) (t + n - 1) & mask, statements[off + n - 1]);
+
+		readerWaitStrategy.signal();
+	}
+
+	private void publish(long t, List<Statement> statements, int off, int n) {
+
+		for (int i = 0; i < n - 1; i++) {
+			slots.lazySet((int) (t + i) & mask, statements.get(off + i));
+		}
+		slots.set((int) (t + n - 1) & mask, statements.get(off + n - 1));
+
+		readerWaitStrategy.signal();
+	}
+
+	/**
+	 * The buffer behind the sink pipe port of one writer
+	 */
+	private class Branch implements PipeBuffer {
+
+		private final WaitStrategy writerWaitStrategy;
+		private final AtomicBoolean finished = new AtomicBoolean(false);
+		/** The buffer of the single statement writes (only used by the writer of the branch) */
+		private final Statement[] single = new Statement[1];
+
+		private Branch(WaitStrategy writerWaitStrategy) {
+
+			this.writerWaitStrategy = writerWaitStrategy;
+		}
+
+		@Override
+		public int capacity() {
+
+			return capacity;
+		}
+
+		@Override
+		public void put(Statement statement) throws IOException {
+
+			single[0] = statement;
+			try {
+				put(single, 0, 1);
+			} finally {
+				single[0] = null;
+			}
+		}
+
+		@Override
+		public void put(List<Statement> statements, int off, int len) throws IOException {
+
+			if (finished.get()) {
+				throw new IOException("Pipe closed");
+			}
+
+			int end = off + len;
+
+			while (off < end) {
+
+				if (statements.get(off) == null) {
+					// END_OF_FLOW_TOKEN
+					closeByWriter();
+					return;
+				}
+				int n = 1;
+				while (n < capacity && off + n < end && statements.get(off + n) != null) {
+					n++;
+				}
+				publish(claim(n, writerWaitStrategy), statements, off, n);
+				off += n;
+			}
+		}
+
+		@Override
+		public void put(Statement[] statements, int off, int len) throws IOException {
+
+			if (finished.get()) {
+				throw new IOException("Pipe closed");
+			}
+
+			int end = off + len;
+
+			while (off < end) {
+
+				if (statements[off] == null) {
+					// END_OF_FLOW_TOKEN
+					closeByWriter();
+					return;
+				}
+				int n = 1;
+				while (n < capacity && off + n < end && statements[off + n] != null) {
+					n++;
+				}
+				publish(claim(n, writerWaitStrategy), statements, off, n);
+				off += n;
+			}
+		}
+
+		@Override
+		public Statement take() throws IOException {
+
+			return read();
+		}
+
+		@Override
+		public int take(Statement[] sbuf, int off, int len) throws IOException {
+
+			return read(sbuf, off, len);
+		}
+
+		@Override
+		public boolean isEmpty() {
+
+			return slots.get((int) head.get() & mask) == null;
+		}
+
+		@Override
+		public int size() {
+
+			return FanInPipe.this.size();
+		}
+
+		@Override
+		public void flush() {
+
+			readerWaitStrategy.signal();
+		}
+
+		@Override
+		public void closeByWriter() {
+
+			if (finished.compareAndSet(false, true)) {
+				finishedBranchCount.incrementAndGet();
+				readerWaitStrategy.signal();
+			}
+		}
+
+		@Override
+		public void closeByReader() {
+
+			close();
+		}
+
+		@Override
+		public boolean isClosedByReader() {
+
+			return closedByReader;
+		}
+
+		@Override
+		public long getReaderWaitTimeNanos() {
+
+			return readerWaitStrategy.getWaitTimeNanos();
+		}
+
+		@Override
+		public long getWriterWaitTimeNanos() {
+
+			return writerWaitStrategy.getWaitTimeNanos();
+		}
+	}
+}
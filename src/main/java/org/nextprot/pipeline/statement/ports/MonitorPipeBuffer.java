@@ -0,0 +1,366 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.nextprot.commons.statements.Statement;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A circular buffer guarded by a lock.
+ * Threads always block on the lock conditions, whatever the {@link WaitStrategy} of the port.
+ *
+ * A ReentrantLock is used instead of the object monitor so that a virtual thread blocked on the pipe
+ * releases its carrier thread (it would be pinned while waiting in a synchronized block).
+ *
+ * Note: this class is a variation of PipedReader, it collect Statements instead of chars
+ */
+class MonitorPipeBuffer implements PipeBuffer {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	/* The reader waits for statements, the writer waits for free slots */
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	private boolean closedByWriter = false;
+	private volatile boolean closedByReader = false;
+
+	/* Communicating threads (pipeline element connected to the sink and source ports) */
+	private Thread readSide;
+	private Thread writeSide;
+	/** True if the writer was given, the threads putting statements are then not watched */
+	private boolean writeSideFixed = false;
+
+	/**
+	 * The circular buffer into which incoming data is placed.
+	 */
+	private final Statement[] buffer;
+
+	/**
+	 * The index of the position in the circular buffer at which the
+	 * next character of data will be stored when received from the connected
+	 * piped writer. <code>in&lt;0</code> implies the buffer is empty,
+	 * <code>in==out</code> implies the buffer is full
+	 */
+	private int in = -1;
+
+	/**
+	 * The index of the position in the circular buffer at which the next
+	 * character of data will be read by this piped reader.
+	 */
+	private int out = 0;
+
+	private volatile long readerWaitTimeNanos;
+	private volatile long writerWaitTimeNanos;
+
+	MonitorPipeBuffer(int capacity) {
+
+		buffer = new Statement[capacity];
+	}
+
+	@Override
+	public int capacity() {
+
+		return buffer.length;
+	}
+
+	@Override
+	public void put(Statement statement) throws IOException {
+
+		lock.lock();
+		try {
+			checkWritable();
+
+			setWriteSide();
+			awaitFreeSlots(1);
+
+			buffer[in++] = statement;
+			if (in >= buffer.length) {
+				in = 0;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(List<Statement> statements, int off, int len) throws IOException {
+
+		lock.lock();
+		try {
+			checkWritable();
+
+			setWriteSide();
+			while (len > 0) {
+				int n = awaitFreeSlots(len);
+				for (int i = 0; i < n; i++) {
+					buffer[in + i] = statements.get(off + i);
+				}
+				advanceIn(n);
+				off += n;
+				len -= n;
+			}
+			/* kick any waiting readers once per batch */
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Statement[] statements, int off, int len) throws IOException {
+
+		lock.lock();
+		try {
+			checkWritable();
+
+			setWriteSide();
+			while (len > 0) {
+				int n = awaitFreeSlots(len);
+				System.arraycopy(statements, off, buffer, in, n);
+				advanceIn(n);
+				off += n;
+				len -= n;
+			}
+			/* kick any waiting readers once per batch */
+			notEmpty.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void setWriteSide() {
+
+		if (!writeSideFixed) {
+			writeSide = Thread.currentThread();
+		}
+	}
+
+	private void checkWritable() throws IOException {
+
+		if (closedByWriter || closedByReader) {
+			throw new IOException("Pipe closed");
+		} else if (readSide != null && !readSide.isAlive()) {
+			throw new IOException("Read end dead");
+		}
+	}
+
+	/**
+	 * Waits until the buffer is not full
+	 *
+	 * @param len the number of statements to put
+	 * @return the number of contiguous free slots from <code>in</code>, up to <code>len</code>
+	 */
+	private int awaitFreeSlots(int len) throws IOException {
+
+		while (in == out) {
+			if ((readSide != null) && !readSide.isAlive()) {
+				throw new IOException("Pipe broken");
+			}
+			/* full: kick any waiting readers */
+			notEmpty.signalAll();
+			long start = System.nanoTime();
+			try {
+				notFull.await(1, TimeUnit.SECONDS);
+			} catch (InterruptedException ex) {
+				throw new InterruptedIOException();
+			} finally {
+				writerWaitTimeNanos += System.nanoTime() - start;
+			}
+		}
+		if (in < 0) {
+			in = 0;
+			out = 0;
+		}
+		int free = ((in < out) ? out : buffer.length) - in;
+
+		return (len < free) ? len : free;
+	}
+
+	private void advanceIn(int n) {
+
+		in += n;
+		if (in >= buffer.length) {
+			in = 0;
+		}
+	}
+
+	@Override
+	public Statement take() throws IOException {
+
+		lock.lock();
+		try {
+			checkPipes();
+
+			readSide = Thread.currentThread();
+			int trials = 2;
+			while (in < 0) {
+				if (closedByWriter) {
+					/* closed by writer, return EOF */
+					return null;
+				}
+				if ((writeSide != null) && (!writeSide.isAlive()) && (--trials < 0)) {
+					throw new IOException("Pipe broken");
+				}
+				/* might be a writer waiting */
+				notFull.signalAll();
+				long start = System.nanoTime();
+				try {
+					notEmpty.await(1, TimeUnit.SECONDS);
+				} catch (InterruptedException ex) {
+					throw new InterruptedIOException();
+				} finally {
+					readerWaitTimeNanos += System.nanoTime() - start;
+				}
+			}
+			Statement ret = buffer[out++];
+			if (out >= buffer.length) {
+				out = 0;
+			}
+			if (in == out) {
+				/* now empty */
+				in = -1;
+			}
+			return ret;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int take(Statement[] sbuf, int off, int len) throws IOException {
+
+		lock.lock();
+		try {
+			/* possibly wait on the first statement */
+			Statement statement = take();
+			if (statement == null) {
+				return -1;
+			}
+			sbuf[off] = statement;
+			int rlen = 1;
+			/* drain the contiguous segments */
+			while ((in >= 0) && (rlen < len)) {
+				int available = ((in > out) ? in : buffer.length) - out;
+				int n = (len - rlen < available) ? len - rlen : available;
+				System.arraycopy(buffer, out, sbuf, off + rlen, n);
+				rlen += n;
+				out += n;
+				if (out >= buffer.length) {
+					out = 0;
+				}
+				if (in == out) {
+					/* now empty */
+					in = -1;
+				}
+			}
+			/* kick any waiting writers once per batch */
+			notFull.signalAll();
+			return rlen;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isEmpty() throws IOException {
+
+		lock.lock();
+		try {
+			checkPipes();
+
+			return in < 0;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+
+		lock.lock();
+		try {
+			if (in < 0) {
+				return 0;
+			}
+			return (in > out) ? in - out : buffer.length - out + in;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void flush() {
+
+		lock.lock();
+		try {
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void closeByWriter() {
+
+		lock.lock();
+		try {
+			closedByWriter = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void closeByReader() {
+
+		in = -1;
+		closedByReader = true;
+	}
+
+	@Override
+	public void setWriteSide(Thread writer) {
+
+		lock.lock();
+		try {
+			writeSide = writer;
+			writeSideFixed = true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isClosedByReader() {
+
+		return closedByReader;
+	}
+
+	@Override
+	public long getReaderWaitTimeNanos() {
+
+		return readerWaitTimeNanos;
+	}
+
+	@Override
+	public long getWriterWaitTimeNanos() {
+
+		return writerWaitTimeNanos;
+	}
+
+	private void checkPipes() throws IOException {
+
+		if (closedByReader) {
+			throw new IOException("Pipe closed");
+		} else if (writeSide != null && !writeSide.isAlive()
+				&& !closedByWriter && (in < 0)) {
+			throw new IOException("Write end dead");
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.nextprot.pipeline.statement.ports;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Backs off progressively: spins, then yields, then parks until the peer signals.
+ *
+ * This is the default strategy of the lock-free ring: a busy pipe never parks,
+ * an idle one costs no CPU.
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+	private final int spinTries;
+	private final int yieldTries;
+
+	/* The thread currently parked */
+	private volatile Thread parked;
+	private volatile long waitTimeNanos;
+
+	public ParkingWaitStrategy() {
+
+		this(100, 10);
+	}
+
+	public ParkingWaitStrategy(int spinTries, int yieldTries) {
+
+		this.spinTries = spinTries;
+		this.yieldTries = yieldTries;
+	}
+
+	@Override
+	public void waitFor(BooleanSupplier condition) throws InterruptedIOException {
+
+		long start = System.nanoTime();
+		int counter = spinTries + yieldTries;
+
+		while (!condition.getAsBoolean()) {
+
+			if (counter > yieldTries) {
+				counter--;
+			} else if (counter > 0) {
+				counter--;
+				Thread.yield();
+			} else {
+				parked = Thread.currentThread();
+				// re-check after publishing the parked thread: the peer may have signalled in between
+				if (!condition.getAsBoolean()) {
+					LockSupport.park(this);
+				}
+				parked = null;
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException();
+			}
+		}
+		waitTimeNanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void signal() {
+
+		Thread thread = parked;
+
+		if (thread != null) {
+			LockSupport.unpark(thread);
+		}
+	}
+
+	@Override
+	public long getWaitTimeNanos() {
+
+		return waitTimeNanos;
+	}
+
+	@Override
+	public ParkingWaitStrategy copy() {
+
+		return new ParkingWaitStrategy(spinTries, yieldTries);
+	}
+}
@@ -0,0 +1,81 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.nextprot.commons.statements.Statement;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The buffer that transfers statements from the writer thread of a
+ * SourcePipePort to the reader thread of the connected SinkPipePort.
+ */
+interface PipeBuffer {
+
+	/** @return the maximum number of statements held by this buffer */
+	int capacity();
+
+	/**
+	 * Puts a statement in the buffer. This method will block if the buffer is full.
+	 */
+	void put(Statement statement) throws IOException;
+
+	/**
+	 * Puts <code>len</code> statements in the buffer. This method will block until all
+	 * statements are accepted.
+	 */
+	void put(List<Statement> statements, int off, int len) throws IOException;
+
+	/**
+	 * Puts <code>len</code> statements in the buffer. This method will block until all
+	 * statements are accepted.
+	 */
+	void put(Statement[] statements, int off, int len) throws IOException;
+
+	/**
+	 * Takes the next statement.
+	 * This method blocks until a statement is available or the writer has closed the buffer.
+	 *
+	 * @return the next statement or <code>null</code> if the end of the stream is reached
+	 */
+	Statement take() throws IOException;
+
+	/**
+	 * Takes up to <code>len</code> statements. This method blocks until at least one statement
+	 * is available.
+	 *
+	 * @return the number of statements taken or <code>-1</code> if the end of the stream is reached
+	 */
+	int take(Statement[] sbuf, int off, int len) throws IOException;
+
+	/** @return true if there is no statement to take */
+	boolean isEmpty() throws IOException;
+
+	/**
+	 * @return the number of statements waiting to be taken
+	 * (a snapshot that may be stale as soon as it is returned)
+	 */
+	int size();
+
+	/** Wakes up the reader waiting for statements */
+	void flush();
+
+	/** Notifies the reader that the writer will not put statements anymore */
+	void closeByWriter();
+
+	/** Notifies the writer that the reader will not take statements anymore */
+	void closeByReader();
+
+	boolean isClosedByReader();
+
+	/**
+	 * Watch the liveness of the given thread instead of the thread of the last put: other threads put statements
+	 * on its behalf (only the buffers breaking the pipe once their writer is dead care)
+	 */
+	default void setWriteSide(Thread writer) { }
+
+	/** @return the time the reader spent waiting for statements in nanoseconds */
+	long getReaderWaitTimeNanos();
+
+	/** @return the time the writer spent waiting for free slots in nanoseconds */
+	long getWriterWaitTimeNanos();
+}
@@ -0,0 +1,24 @@
+package org.nextprot.pipeline.statement.ports;
+
+/**
+ * The types of buffer behind a SinkPipePort
+ */
+public enum PipePortType {
+
+	/** A circular buffer guarded by a monitor (variation of PipedReader), it ignores the wait strategy */
+	MONITOR {
+		@Override
+		PipeBuffer newBuffer(int capacity, WaitStrategy waitStrategy) {
+			return new MonitorPipeBuffer(capacity);
+		}
+	},
+	/** A lock-free single-producer/single-consumer ring, each side waits with its own copy of the wait strategy */
+	SPSC_RING {
+		@Override
+		PipeBuffer newBuffer(int capacity, WaitStrategy waitStrategy) {
+			return new RingPipeBuffer(capacity, waitStrategy);
+		}
+	};
+
+	abstract PipeBuffer newBuffer(int capacity, WaitStrategy waitStrategy);
+}
@@ -0,0 +1,284 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.nextprot.commons.statements.Statement;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * A lock-free single-producer/single-consumer ring of statements.
+ *
+ * The producer only writes the tail sequence and the consumer only writes the head sequence,
+ * both padded against false sharing. A side that cannot progress waits with its own {@link WaitStrategy}
+ * until the other side signals it: after a transfer or when it closes its end of the pipe.
+ *
+ * Every pipeline element closes its ports when it terminates (normally or not), so a dead peer is
+ * detected as soon as it closes the pipe, without any timed-wait polling.
+ *
+ * Note: statements are stored in slots indexed by sequence, so the <code>null</code>
+ * END_OF_FLOW_TOKEN can be transferred like any other statement.
+ */
+class RingPipeBuffer implements PipeBuffer {
+
+	private final Statement[] buffer;
+	private final int mask;
+	private final int capacity;
+
+	/** The sequence of the next slot to read (only written by the consumer) */
+	private final Sequence head = new Sequence();
+	/** The sequence of the next slot to write (only written by the producer) */
+	private final Sequence tail = new Sequence();
+
+	/** The last head seen by the producer */
+	private long headCache;
+	/** The last tail seen by the consumer */
+	private long tailCache;
+
+	private volatile boolean closedByWriter = false;
+	private volatile boolean closedByReader = false;
+
+	/* The reader waits for statements, the writer waits for free slots */
+	private final WaitStrategy readerWaitStrategy;
+	private final WaitStrategy writerWaitStrategy;
+
+	RingPipeBuffer(int capacity, WaitStrategy waitStrategy) {
+
+		this.capacity = capacity;
+		this.buffer = new Statement[ceilingPowerOfTwo(capacity)];
+		this.mask = buffer.length - 1;
+		this.readerWaitStrategy = waitStrategy.copy();
+		this.writerWaitStrategy = waitStrategy.copy();
+	}
+
+	private static int ceilingPowerOfTwo(int capacity) {
+
+		return 1 << (32 - Integer.numberOfLeadingZeros(capacity - 1));
+	}
+
+	@Override
+	public int capacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public void put(Statement statement) throws IOException {
+
+		if (closedByWriter || closedByReader) {
+			throw new IOException("Pipe closed");
+		}
+
+		long t = tail.get();
+
+		if (t - headCache >= capacity) {
+			awaitFreeSlots(t, 1);
+		}
+		buffer[(int) t & mask] = statement;
+		tail.set(t + 1);
+
+		readerWaitStrategy.signal();
+	}
+
+	@Override
+	public void put(List<Statement> statements, int off, int len) throws IOException {
+
+		if (closedByWriter || closedByReader) {
+			throw new IOException("Pipe closed");
+		}
+
+		long t = tail.get();
+
+		while (len > 0) {
+			int n = awaitFreeSlots(t, len);
+			for (int i = 0; i < n; i++) {
+				buffer[(int) (t + i) & mask] = statements.get(off + i);
+			}
+			t += n;
+			off += n;
+			len -= n;
+			tail.set(t);
+
+			readerWaitStrategy.signal();
+		}
+	}
+
+	@Override
+	public void put(Statement[] statements, int off, int len) throws IOException {
+
+		if (closedByWriter || closedByReader) {
+			throw new IOException("Pipe closed");
+		}
+
+		long t = tail.get();
+
+		while (len > 0) {
+			int n = awaitFreeSlots(t, len);
+			int index = (int) t & mask;
+			// copy in one or two segments
+			int first = Math.min(n, buffer.length - index);
+			System.arraycopy(statements, off, buffer, index, first);
+			if (n > first) {
+				System.arraycopy(statements, off + first, buffer, 0, n - first);
+			}
+			t += n;
+			off += n;
+			len -= n;
+			tail.set(t);
+
+			readerWaitStrategy.signal();
+		}
+	}
+
+	@Override
+	public Statement take() throws IOException {
+
+		checkPipes();
+
+		long h = head.get();
+
+		if (h >= tailCache && !awaitStatements(h)) {
+			/* closed by writer, return EOF */
+			return null;
+		}
+		Statement ret = buffer[(int) h & mask];
+		head.set(h + 1);
+
+		writerWaitStrategy.signal();
+
+		return ret;
+	}
+
+	@Override
+	public int take(Statement[] sbuf, int off, int len) throws IOException {
+
+		/* possibly wait on the first statement */
+		Statement statement = take();
+		if (statement == null) {
+			return -1;
+		}
+		sbuf[off] = statement;
+
+		long h = head.get();
+		tailCache = tail.get();
+
+		int n = (int) Math.min(len - 1, tailCache - h);
+		if (n > 0) {
+			int index = (int) h & mask;
+			// copy out one or two segments
+			int first = Math.min(n, buffer.length - index);
+			System.arraycopy(buffer, index, sbuf, off + 1, first);
+			if (n > first) {
+				System.arraycopy(buffer, 0, sbuf, off + 1 + first, n - first);
+			}
+			head.set(h + n);
+
+			writerWaitStrategy.signal();
+		}
+		return n + 1;
+	}
+
+	@Override
+	public boolean isEmpty() throws IOException {
+
+		checkPipes();
+
+		return head.get() >= tail.get();
+	}
+
+	@Override
+	public int size() {
+
+		// read the head first so that the size is never negative
+		long h = head.get();
+
+		return (int) (tail.get() - h);
+	}
+
+	@Override
+	public void flush() {
+
+		readerWaitStrategy.signal();
+	}
+
+	@Override
+	public void closeByWriter() {
+
+		closedByWriter = true;
+		readerWaitStrategy.signal();
+		writerWaitStrategy.signal();
+	}
+
+	@Override
+	public void closeByReader() {
+
+		closedByReader = true;
+		readerWaitStrategy.signal();
+		writerWaitStrategy.signal();
+	}
+
+	@Override
+	public boolean isClosedByReader() {
+
+		return closedByReader;
+	}
+
+	/**
+	 * Waits until the ring is not full
+	 *
+	 * @param t the sequence of the next slot to write
+	 * @param len the number of statements to put
+	 * @return the number of free slots from <code>t</code>, up to <code>len</code>
+	 */
+	private int awaitFreeSlots(long t, int len) throws IOException {
+
+		while (t - (headCache = head.get()) >= capacity) {
+
+			if (closedByReader) {
+				throw new IOException("Pipe broken");
+			}
+			writerWaitStrategy.waitFor(() -> t - head.get() < capacity || closedByReader);
+		}
+		return (int) Math.min(len, capacity - (t - headCache));
+	}
+
+	/**
+	 * Waits until a statement is available at sequence <code>h</code>
+	 *
+	 * @return false if the writer has closed the pipe and there is nothing left to read
+	 */
+	private boolean awaitStatements(long h) throws IOException {
+
+		while (h >= (tailCache = tail.get())) {
+
+			if (closedByWriter) {
+				// the writer may have put statements just before closing
+				return h < (tailCache = tail.get());
+			}
+			if (closedByReader) {
+				throw new IOException("Pipe closed");
+			}
+			readerWaitStrategy.waitFor(() -> h < tail.get() || closedByWriter || closedByReader);
+		}
+		return true;
+	}
+
+	@Override
+	public long getReaderWaitTimeNanos() {
+
+		return readerWaitStrategy.getWaitTimeNanos();
+	}
+
+	@Override
+	public long getWriterWaitTimeNanos() {
+
+		return writerWaitStrategy.getWaitTimeNanos();
+	}
+
+	private void checkPipes() throws IOException {
+
+		if (closedByReader) {
+			throw new IOException("Pipe closed");
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package org.nextprot.pipeline.statement.ports;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+class LhsPadding {
+
+	protected long p1, p2, p3, p4, p5, p6, p7;
+}
+
+class Value extends LhsPadding {
+
+	protected volatile long value;
+}
+
+class RhsPadding extends Value {
+
+	protected long p9, p10, p11, p12, p13, p14, p15;
+}
+
+/**
+ * A monotonic counter padded on both sides so that it sits alone on its cache line.
+ * The head and tail sequences of a ring are written by different threads and
+ * would otherwise invalidate each other's cache line on every update (false sharing).
+ */
+class Sequence extends RhsPadding {
+
+	private static final AtomicLongFieldUpdater<Value> UPDATER = AtomicLongFieldUpdater.newUpdater(Value.class, "value");
+
+	/** @return the current value with volatile read semantics */
+	long get() {
+
+		return value;
+	}
+
+	/** Sets the value with volatile write semantics (full fence) */
+	void set(long newValue) {
+
+		value = newValue;
+	}
+
+	/** Sets the value with ordered write semantics (no store-load fence) */
+	void setOrdered(long newValue) {
+
+		UPDATER.lazySet(this, newValue);
+	}
+
+	/** Atomically sets the value if it is the expected one */
+	boolean compareAndSet(long expectedValue, long newValue) {
+
+		return UPDATER.compareAndSet(this, expectedValue, newValue);
+	}
+
+	@Override
+	public String toString() {
+
+		return Long.toString(value);
+	}
+}
@@ -1,111 +1,259 @@
 package org.nextprot.pipeline.statement.ports;
 
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
+import org.nextprot.pipeline.statement.metrics.SpillMetrics;
 
 import java.io.IOException;
-import java.io.InterruptedIOException;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /**
  * Piped statement-input streams.
  *
- * Note: this class is a variation of PipedReader, it collect Statements instead of chars
+ * Note: this class is a variation of PipedReader, it collect Statements instead of chars.
+ * The statements are held by a buffer of the given {@link PipePortType} and
+ * the reader and writer wait for each other with the given {@link WaitStrategy}.
+ *
+ * Optionally, the port overflows to a spill file in a given directory once its buffer is full,
+ * instead of blocking the writer (see {@link #setSpillover(Path, StatementCodec)}).
+ *
+ * The checkpoint barriers flowing with the statements are never returned to the reader: they are handed to the
+ * {@link BarrierHandler} of the port on the next read, once the reader has handled the statements read before
+ * (they are dropped if the element did not set any handler).
  */
 public class SinkPipePort {
 
-	private boolean closedByWriter = false;
-	private boolean closedByReader = false;
-	private boolean connected = false;
+	private static final AtomicLongFieldUpdater<SinkPipePort> RECEIVED_COUNT = AtomicLongFieldUpdater.newUpdater(SinkPipePort.class, "receivedCount");
+	private static final AtomicLongFieldUpdater<SinkPipePort> READ_COUNT = AtomicLongFieldUpdater.newUpdater(SinkPipePort.class, "readCount");
 
-	/* Communicating threads (pipeline element connected to the sink and source ports) */
-	private Thread readSide;
-	private Thread writeSide;
+	private final int capacity;
+	private boolean connected = false;
 
-	/**
-	 * The circular buffer into which incoming data is placed.
+	/*
+	 * Each counter is only updated by one thread (the writer or the reader): an ordered write is enough
+	 * and the hot path does not contend on an atomic instruction
 	 */
-	private Statement[] buffer;
+	private volatile long receivedCount;
+	private volatile long readCount;
 
-	/**
-	 * The index of the position in the circular buffer at which the
-	 * next character of data will be stored when received from the connected
-	 * piped writer. <code>in&lt;0</code> implies the buffer is empty,
-	 * <code>in==out</code> implies the buffer is full
-	 */
-	private int in = -1;
+	private PipePortType type;
+	private WaitStrategy waitStrategy;
+	private Path spillDirectory;
+	private StatementCodec spillCodec;
+
+	private BarrierHandler barrierHandler = BarrierHandler.DROP;
+	/** The statements taken after a barrier, returned before the ones of the buffer */
+	private Statement[] leftover;
+	private int leftoverOffset;
+	private int leftoverLength;
 
 	/**
-	 * The index of the position in the circular buffer at which the next
-	 * character of data will be read by this piped reader.
+	 * The buffer into which incoming data is placed.
 	 */
-	private int out = 0;
+	private PipeBuffer buffer;
 
 	public SinkPipePort(int capacity) {
-		init(capacity);
+
+		this(capacity, PipePortType.MONITOR);
 	}
 
-	private void init(int capacity) {
+	public SinkPipePort(int capacity, PipePortType type) {
+
+		this(capacity, type, new ParkingWaitStrategy());
+	}
+
+	public SinkPipePort(int capacity, PipePortType type, WaitStrategy waitStrategy) {
+
 		if (capacity <= 0) {
 			throw new IllegalArgumentException("Pipe size <= 0");
 		}
-		buffer = new Statement[capacity];
+		this.capacity = capacity;
+		this.type = type;
+		this.waitStrategy = waitStrategy;
+		this.buffer = newBuffer();
+	}
+
+	/**
+	 * Create a port on a buffer shared with other ports (fan-in)
+	 */
+	SinkPipePort(int capacity, PipeBuffer buffer) {
+
+		this.capacity = capacity;
+		this.buffer = buffer;
 	}
 
 	public int capacity() {
 
-		return buffer.length;
+		return capacity;
+	}
+
+	/** @return the type of buffer behind this port or null if the buffer is shared by a fan-in or a work-stealing pipe */
+	public PipePortType getType() {
+
+		return type;
+	}
+
+	/**
+	 * Set the type of buffer behind this port
+	 *
+	 * @throws IllegalStateException if the port is already connected
+	 */
+	public void setType(PipePortType type) {
+
+		checkReplaceableBuffer();
+		this.type = type;
+		this.buffer = newBuffer();
+	}
+
+	public WaitStrategy getWaitStrategy() {
+
+		return waitStrategy;
+	}
+
+	/**
+	 * Set the way the reader and the writer wait for each other
+	 *
+	 * @throws IllegalStateException if the port is already connected
+	 */
+	public void setWaitStrategy(WaitStrategy waitStrategy) {
+
+		checkReplaceableBuffer();
+		this.waitStrategy = waitStrategy;
+		this.buffer = newBuffer();
+	}
+
+	/** @return the directory of the spill file or null if the port does not overflow to disk */
+	public Path getSpillDirectory() {
+
+		return spillDirectory;
+	}
+
+	public StatementCodec getSpillCodec() {
+
+		return spillCodec;
+	}
+
+	/**
+	 * Let the writer spill the statements to a file once the buffer is full rather than wait for the reader.
+	 * The statements are replayed from the file in order once the reader has taken the statements of the buffer.
+	 *
+	 * @param directory the directory of the spill file or null to block the writer on a full buffer
+	 * @param codec encodes the spilled statements (only the fields of the codec are kept)
+	 * @throws IllegalStateException if the port is already connected
+	 */
+	public void setSpillover(Path directory, StatementCodec codec) {
+
+		checkReplaceableBuffer();
+		this.spillDirectory = directory;
+		this.spillCodec = codec;
+		this.buffer = newBuffer();
+	}
+
+	/**
+	 * Replace the buffer of this port by one shared with other ports (work stealing)
+	 */
+	void setSharedBuffer(PipeBuffer buffer) {
+
+		checkReplaceableBuffer();
+		this.type = null;
+		this.spillDirectory = null;
+		this.spillCodec = null;
+		this.buffer = buffer;
+	}
+
+	private PipeBuffer newBuffer() {
+
+		PipeBuffer memory = type.newBuffer(capacity, waitStrategy);
+
+		return (spillDirectory != null) ? new SpillingPipeBuffer(memory, spillDirectory, spillCodec.copy()) : memory;
+	}
+
+	/**
+	 * Set the handler of the checkpoint barriers read from this port (null to drop them)
+	 */
+	public void setBarrierHandler(BarrierHandler barrierHandler) {
+
+		this.barrierHandler = (barrierHandler != null) ? barrierHandler : BarrierHandler.DROP;
+	}
+
+	public BarrierHandler getBarrierHandler() {
+
+		return barrierHandler;
+	}
+
+	/** @return the time the reader spent waiting on an empty pipe in nanoseconds */
+	public long getReaderWaitTimeNanos() {
+
+		return buffer.getReaderWaitTimeNanos();
+	}
+
+	/** @return the time the writer spent waiting on a full pipe in nanoseconds */
+	public long getWriterWaitTimeNanos() {
+
+		return buffer.getWriterWaitTimeNanos();
 	}
 
 	/**
 	 * Receives a statement. This method will block if no input is
 	 * available.
 	 */
-	synchronized void receive(Statement statement) throws IOException {
+	void receive(Statement statement) throws IOException {
 
 		if (!connected) {
 			throw new IOException("Pipe not connected");
-		} else if (closedByWriter || closedByReader) {
-			throw new IOException("Pipe closed");
-		} else if (readSide != null && !readSide.isAlive()) {
-			throw new IOException("Read end dead");
 		}
+		buffer.put(statement);
+		RECEIVED_COUNT.lazySet(this, receivedCount + 1);
+	}
 
-		writeSide = Thread.currentThread();
-		while (in == out) {
-			if ((readSide != null) && !readSide.isAlive()) {
-				throw new IOException("Pipe broken");
-			}
-			/* full: kick any waiting readers */
-			notifyAll();
-			try {
-				wait(1000);
-			} catch (InterruptedException ex) {
-				throw new InterruptedIOException();
-			}
-		}
-		if (in < 0) {
-			in = 0;
-			out = 0;
-		}
-		buffer[in++] = statement;
-		if (in >= buffer.length) {
-			in = 0;
+	void receive(List<Statement> statements, int off, int len)  throws IOException {
+
+		if (!connected) {
+			throw new IOException("Pipe not connected");
 		}
+		buffer.put(statements, off, len);
+		RECEIVED_COUNT.lazySet(this, receivedCount + len);
 	}
 
-	synchronized void receive(List<Statement> statements, int off, int len)  throws IOException {
-		while (--len >= 0) {
-			receive(statements.get(off++));
+	void receive(Statement[] statements, int off, int len)  throws IOException {
+
+		if (!connected) {
+			throw new IOException("Pipe not connected");
 		}
+		buffer.put(statements, off, len);
+		RECEIVED_COUNT.lazySet(this, receivedCount + len);
 	}
 
 	/**
 	 * Notifies all waiting threads that the last statement has been
 	 * received.
 	 */
-	synchronized void receivedLast() {
-		closedByWriter = true;
-		notifyAll();
+	void receivedLast() {
+		buffer.closeByWriter();
+	}
+
+	void setWriteSide(Thread writer) {
+		buffer.setWriteSide(writer);
+	}
+
+	/**
+	 * Wakes up the thread waiting for statements.
+	 */
+	void flush() {
+		buffer.flush();
+	}
+
+	/**
+	 * Clears this port before connection.
+	 */
+	void reset() {
+		if (!isShared()) {
+			buffer = newBuffer();
+		}
 	}
 
 	/**
@@ -120,37 +268,28 @@ public class SinkPipePort {
 	 * @exception  IOException  if the pipe is
 	 *          <code>broken</code></a>, PipedOutputPort unconnected}, closed or an I/O error occurs.
 	 */
-	public synchronized Statement read() throws IOException {
+	public Statement read() throws IOException {
 
-		checkPipes();
+		checkConnection();
 
-		readSide = Thread.currentThread();
-		int trials = 2;
-		while (in < 0) {
-			if (closedByWriter) {
-				/* closed by writer, return EOF */
-				return null;
-			}
-			if ((writeSide != null) && (!writeSide.isAlive()) && (--trials < 0)) {
-				throw new IOException("Pipe broken");
+		Statement statement;
+
+		do {
+			if (leftoverLength > 0) {
+				statement = leftover[leftoverOffset++];
+				leftoverLength--;
+			} else {
+				statement = buffer.take();
+				if (statement != null) {
+					READ_COUNT.lazySet(this, readCount + 1);
+				}
 			}
-			/* might be a writer waiting */
-			notifyAll();
-			try {
-				wait(1000);
-			} catch (InterruptedException ex) {
-				throw new InterruptedIOException();
+			if (statement instanceof CheckpointBarrier) {
+				barrierHandler.onBarrier((CheckpointBarrier) statement);
+			} else {
+				return statement;
 			}
-		}
-		Statement ret = buffer[out++];
-		if (out >= buffer.length) {
-			out = 0;
-		}
-		if (in == out) {
-			/* now empty */
-			in = -1;
-		}
-		return ret;
+		} while (true);
 	}
 
 	/**
@@ -170,11 +309,11 @@ public class SinkPipePort {
 	 *                  <a href=PipedInputStream.html#BROKEN> <code>broken</code></a>,
 	 *                  PipedOutputPort unconnected}, closed, or an I/O error occurs.
 	 */
-	public synchronized int read(Statement[] sbuf, int off, int len)  throws IOException {
+	public int read(Statement[] sbuf, int off, int len)  throws IOException {
 
-		int length = (len < buffer.length) ? len : buffer.length;
+		int length = (len < capacity) ? len : capacity;
 
-		checkPipes();
+		checkConnection();
 
 		if ((off < 0) || (off > sbuf.length) || (length < 0) ||
 				((off + length) > sbuf.length) || ((off + length) < 0)) {
@@ -183,25 +322,77 @@ public class SinkPipePort {
 			return 0;
 		}
 
-		/* possibly wait on the first statement */
-		Statement statement = read();
-		if (statement == null) {
-			return -1;
+		return readUpToNextBarrier(sbuf, off, length);
+	}
+
+	private int take(Statement[] sbuf, int off, int len) throws IOException {
+
+		int n = buffer.take(sbuf, off, len);
+		if (n > 0) {
+			READ_COUNT.lazySet(this, readCount + n);
 		}
-		sbuf[off] =  statement;
-		int rlen = 1;
-		while ((in >= 0) && (--length > 0)) {
-			sbuf[off + rlen] = buffer[out++];
-			rlen++;
-			if (out >= buffer.length) {
-				out = 0;
+		return n;
+	}
+
+	/**
+	 * Reads the statements up to the next barrier: the barriers at the head of the batch are handled first
+	 * (the reader is done with the previous batch), the statements from a barrier in the batch are kept for the next read
+	 */
+	private int readUpToNextBarrier(Statement[] sbuf, int off, int len) throws IOException {
+
+		while (true) {
+
+			int n;
+
+			if (leftoverLength > 0) {
+				n = Math.min(len, leftoverLength);
+				System.arraycopy(leftover, leftoverOffset, sbuf, off, n);
+				leftoverOffset += n;
+				leftoverLength -= n;
+			} else if ((n = take(sbuf, off, len)) == -1) {
+				return -1;
 			}
-			if (in == out) {
-				/* now empty */
-				in = -1;
+
+			int head = 0;
+
+			while (head < n && sbuf[off + head] instanceof CheckpointBarrier) {
+				barrierHandler.onBarrier((CheckpointBarrier) sbuf[off + head]);
+				head++;
 			}
+
+			if (head == n) {
+				continue;
+			} else if (head > 0) {
+				n -= head;
+				System.arraycopy(sbuf, off + head, sbuf, off, n);
+			}
+
+			if (sbuf[off] == null) {
+				// the END_OF_FLOW_TOKEN follows the barriers
+				return -1;
+			}
+
+			for (int i = 1; i < n; i++) {
+
+				if (sbuf[off + i] instanceof CheckpointBarrier) {
+					keepLeftover(sbuf, off + i, n - i);
+					return i;
+				}
+			}
+			return n;
+		}
+	}
+
+	private void keepLeftover(Statement[] sbuf, int off, int len) {
+
+		if (leftover == null) {
+			leftover = new Statement[capacity];
 		}
-		return rlen;
+		// the remaining leftover statements follow the ones kept
+		System.arraycopy(leftover, leftoverOffset, leftover, len, leftoverLength);
+		System.arraycopy(sbuf, off, leftover, 0, len);
+		leftoverOffset = 0;
+		leftoverLength += len;
 	}
 
 	/**
@@ -212,15 +403,46 @@ public class SinkPipePort {
 	 *                  <a href=PipedInputStream.html#BROKEN> <code>broken</code></a>,
 	 *                  PipedOutputPort unconnected}, or closed.
 	 */
-	public synchronized boolean ready() throws IOException {
+	public boolean ready() throws IOException {
 
-		checkPipes();
+		checkConnection();
 
-		if (in < 0) {
-			return false;
-		} else {
-			return true;
-		}
+		return leftoverLength > 0 || !buffer.isEmpty();
+	}
+
+	/** @return the number of statements received */
+	public long getReceivedCount() {
+
+		return receivedCount;
+	}
+
+	/** @return the number of statements read */
+	public long getReadCount() {
+
+		return readCount;
+	}
+
+	/** @return a snapshot of the metrics of this port */
+	public PortMetrics getMetrics() {
+
+		return new PortMetrics(capacity, receivedCount, readCount, size(), getReaderWaitTimeNanos(), getWriterWaitTimeNanos(),
+				getSpillMetrics());
+	}
+
+	/** @return a snapshot of the metrics of the spill file or null if the port does not overflow to disk */
+	public SpillMetrics getSpillMetrics() {
+
+		PipeBuffer buf = buffer;
+
+		return (buf instanceof SpillingPipeBuffer) ? ((SpillingPipeBuffer) buf).getMetrics() : null;
+	}
+
+	/**
+	 * @return the number of statements received and not yet read
+	 */
+	public int size() {
+
+		return leftoverLength + buffer.size();
 	}
 
 	/**
@@ -230,8 +452,7 @@ public class SinkPipePort {
 	 * @exception  IOException  if an I/O error occurs.
 	 */
 	public void close()  throws IOException {
-		in = -1;
-		closedByReader = true;
+		buffer.closeByReader();
 	}
 
 	public boolean isConnected() {
@@ -239,30 +460,31 @@ public class SinkPipePort {
 	}
 
 	public boolean isClosedByReader() {
-		return closedByReader;
+		return buffer.isClosedByReader();
 	}
 
-	public void setIn(int in) {
-		this.in = in;
+	public void setConnected(boolean connected) {
+		this.connected = connected;
 	}
 
-	public void setOut(int out) {
-		this.out = out;
+	private boolean isShared() {
+
+		return type == null;
 	}
 
-	public void setConnected(boolean connected) {
-		this.connected = connected;
+	private void checkReplaceableBuffer() {
+
+		if (connected) {
+			throw new IllegalStateException("Cannot change the buffer of a connected pipe");
+		} else if (isShared()) {
+			throw new IllegalStateException("Cannot change the buffer shared by a fan-in or a work-stealing pipe");
+		}
 	}
 
-	private void checkPipes() throws IOException {
+	private void checkConnection() throws IOException {
 
 		if (!connected) {
 			throw new IOException("Pipe not connected");
-		} else if (closedByReader) {
-			throw new IOException("Pipe closed");
-		} else if (writeSide != null && !writeSide.isAlive()
-				&& !closedByWriter && (in < 0)) {
-			throw new IOException("Write end dead");
 		}
 	}
 }
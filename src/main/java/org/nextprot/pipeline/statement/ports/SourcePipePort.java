@@ -1,6 +1,7 @@
 package org.nextprot.pipeline.statement.ports;
 
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
 
 import java.io.IOException;
 import java.util.List;
@@ -13,7 +14,7 @@ import java.util.List;
 public class SourcePipePort {
 
 	private final int capacity;
-	private SinkPipePort sink;
+	private volatile SinkPipePort sink;
 
 	private boolean closed = false;
 
@@ -33,8 +34,7 @@ public class SourcePipePort {
 		}
 
 		sink = snk;
-		snk.setIn(-1);
-		snk.setOut(0);
+		snk.reset();
 		snk.setConnected(true);
 	}
 
@@ -69,17 +69,17 @@ public class SourcePipePort {
 	}
 
 	/**
-	 * Writes <code>len</code> statements from the specified statement array
+	 * Writes <code>len</code> statements from the specified statement list
 	 * starting at offset <code>off</code> to this piped output stream.
-	 * This method blocks until all the characters are written to the output
-	 * stream.
+	 * This method blocks until all the statements are written to the output
+	 * stream. Statements are copied in bulk to the connected sink pipe port.
 	 * If a thread was reading data statements from the connected piped input
 	 * stream, but the thread is no longer alive, then an
 	 * <code>IOException</code> is thrown.
 	 *
 	 * @param      buffer the data.
 	 * @param      offset the start offset in the data.
-	 * @param      len   the number of statements to write (with a maximum capacity)
+	 * @param      len   the number of statements to write
 	 * @exception  IOException  if the pipe is
 	 *          <a href=PipedOutputStream.html#BROKEN> <code>broken</code></a>,
 	 *          {@link #connect(SinkPipePort) unconnected}, closed
@@ -87,14 +87,50 @@ public class SourcePipePort {
 	 */
 	public void write(List<Statement> buffer, int offset, int len) throws IOException {
 
-		int length = (len < capacity) ? len : capacity;
+		if (sink == null) {
+			throw new IOException("Pipe not connected");
+		} else if ((offset | len | (offset + len) | (buffer.size() - (offset + len))) < 0) {
+			throw new IndexOutOfBoundsException();
+		}
+		sink.receive(buffer, offset, len);
+	}
+
+	/**
+	 * Writes <code>len</code> statements from the specified statement array
+	 * starting at offset <code>off</code> to this piped output stream.
+	 * This method blocks until all the statements are written to the output
+	 * stream. Statements are copied in bulk to the connected sink pipe port.
+	 *
+	 * @param      buffer the data.
+	 * @param      offset the start offset in the data.
+	 * @param      len   the number of statements to write
+	 * @exception  IOException  if the pipe is
+	 *          <a href=PipedOutputStream.html#BROKEN> <code>broken</code></a>,
+	 *          {@link #connect(SinkPipePort) unconnected}, closed
+	 *          or an I/O error occurs.
+	 */
+	public void write(Statement[] buffer, int offset, int len) throws IOException {
 
 		if (sink == null) {
 			throw new IOException("Pipe not connected");
-		} else if ((offset | length | (offset + length) | (buffer.size() - (offset + length))) < 0) {
+		} else if ((offset | len | (offset + len) | (buffer.length - (offset + len))) < 0) {
 			throw new IndexOutOfBoundsException();
 		}
-		sink.receive(buffer, offset, length);
+		sink.receive(buffer, offset, len);
+	}
+
+	/**
+	 * Make the current thread the writer of this port while other threads write on its behalf
+	 * (ie: the pumping tasks of a parallel source): the pipe is broken once this thread is dead,
+	 * not once one of them is
+	 *
+	 * @exception  IOException  if the pipe is unconnected
+	 */
+	public void setWriteSide() throws IOException {
+		if (sink == null) {
+			throw new IOException("Pipe not connected");
+		}
+		sink.setWriteSide(Thread.currentThread());
 	}
 
 	/**
@@ -109,9 +145,7 @@ public class SourcePipePort {
 			if (sink.isClosedByReader() || closed) {
 				throw new IOException("Pipe closed");
 			}
-			synchronized (sink) {
-				sink.notifyAll();
-			}
+			sink.flush();
 		}
 	}
 
@@ -137,4 +171,45 @@ public class SourcePipePort {
 	public int capacity() {
 		return capacity;
 	}
+
+	/**
+	 * @return the metrics of the pipe connected to this port, null if the pipe is not connected
+	 */
+	public PortMetrics getMetrics() {
+
+		SinkPipePort snk = sink;
+
+		return (snk != null) ? snk.getMetrics() : null;
+	}
+
+	/**
+	 * @return the time spent writing in a full pipe in nanoseconds, 0 if the pipe is not connected
+	 */
+	public long getWriterWaitTimeNanos() {
+
+		SinkPipePort snk = sink;
+
+		return (snk != null) ? snk.getWriterWaitTimeNanos() : 0;
+	}
+
+	/**
+	 * @return true if the pipe overflows to a spill file instead of blocking the writer once full
+	 */
+	public boolean isSpillingOver() {
+
+		SinkPipePort snk = sink;
+
+		return snk != null && snk.getSpillDirectory() != null;
+	}
+
+	/**
+	 * @return the number of statements written and not yet read on the other side of the pipe,
+	 * 0 if the pipe is not connected
+	 */
+	public int size() {
+
+		SinkPipePort snk = sink;
+
+		return (snk != null) ? snk.size() : 0;
+	}
 }
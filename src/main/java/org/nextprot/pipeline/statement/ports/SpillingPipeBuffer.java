@@ -0,0 +1,427 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.metrics.SpillMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-memory buffer that overflows to a spill file instead of blocking the writer.
+ *
+ * Once the in-memory buffer is full, the writer appends the next statements to the spill file
+ * (in the binary format of StatementCodec, so spilled statements only keep the fields of the codec).
+ * It keeps spilling until the reader has replayed the whole spill file, so that statements are taken in
+ * the order they were put: the reader takes the in-memory statements first, then replays the spilled ones
+ * from the file. The file is truncated each time it has been fully replayed and deleted when the buffer is closed.
+ * Checkpoint barriers put while spilling are kept in memory with their position among the spilled statements.
+ *
+ * The memory used is bounded by the in-memory buffer and the two I/O buffers of the spill file,
+ * the disk space by the backlog of the reader.
+ */
+class SpillingPipeBuffer implements PipeBuffer {
+
+	private static final int IO_BUFFER_SIZE = 1 << 16;
+
+	private final PipeBuffer memory;
+	private final Path directory;
+	private final StatementCodec codec;
+
+	/* Guards the spill file, both the writer and the reader access it */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private FileChannel channel;
+	private Path file;
+	/** The encoded statements not written in the file yet */
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(IO_BUFFER_SIZE);
+	/** The bytes read from the file and not replayed yet (in read mode) */
+	private ByteBuffer readBuffer = (ByteBuffer) ByteBuffer.allocate(IO_BUFFER_SIZE).flip();
+	private long fileSize;
+	private long readPosition;
+
+	/** The number of statements in the spill file */
+	private volatile int spilledCount;
+	/** The barriers put while spilling, in order */
+	private final Deque<SpilledBarrier> barriers = new ArrayDeque<>();
+	/** The number of spilled statements replayed */
+	private long replayPosition;
+	/** True if the END_OF_FLOW_TOKEN was put after the spilled statements */
+	private boolean endSpilled;
+	private boolean endReplayed;
+
+	/** The buffer of the single statement takes (only used by the reader) */
+	private final Statement[] single = new Statement[1];
+
+	private long spilledTotalCount;
+	private long replayedTotalCount;
+	private long spilledBytes;
+	private long firstSpillNanos;
+	private long firstReplayNanos;
+
+	SpillingPipeBuffer(PipeBuffer memory, Path directory, StatementCodec codec) {
+
+		this.memory = memory;
+		this.directory = directory;
+		this.codec = codec;
+	}
+
+	@Override
+	public int capacity() {
+
+		return memory.capacity();
+	}
+
+	@Override
+	public void put(Statement statement) throws IOException {
+
+		lock.lock();
+		try {
+			if (!isSpilling() && memory.size() < memory.capacity()) {
+				memory.put(statement);
+			} else {
+				spill(statement);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(List<Statement> statements, int off, int len) throws IOException {
+
+		lock.lock();
+		try {
+			int n = freeSlots(len);
+
+			if (n > 0) {
+				memory.put(statements, off, n);
+			}
+			for (int i = n; i < len; i++) {
+				spill(statements.get(off + i));
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public void put(Statement[] statements, int off, int len) throws IOException {
+
+		lock.lock();
+		try {
+			int n = freeSlots(len);
+
+			if (n > 0) {
+				memory.put(statements, off, n);
+			}
+			for (int i = n; i < len; i++) {
+				spill(statements[off + i]);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the number of statements that can be put in memory without blocking, up to <code>len</code>
+	 * (the size is only decreased by the reader: a stale size underestimates the free slots)
+	 */
+	private int freeSlots(int len) {
+
+		return (isSpilling()) ? 0 : Math.min(len, memory.capacity() - memory.size());
+	}
+
+	private boolean isSpilling() {
+
+		return spilledCount > 0 || !barriers.isEmpty() || endSpilled;
+	}
+
+	private void spill(Statement statement) throws IOException {
+
+		if (memory.isClosedByReader()) {
+			throw new IOException("Pipe closed");
+		}
+		if (statement == null) {
+			endSpilled = true;
+			return;
+		} else if (statement instanceof CheckpointBarrier) {
+			barriers.add(new SpilledBarrier(spilledTotalCount, (CheckpointBarrier) statement));
+			return;
+		}
+		if (channel == null) {
+			openFile();
+		}
+		if (firstSpillNanos == 0) {
+			firstSpillNanos = System.nanoTime();
+		}
+
+		int start = writeBuffer.position();
+
+		if (!codec.encode(statement, writeBuffer)) {
+
+			flushWriteBuffer();
+			start = 0;
+
+			// the statement is larger than the buffer
+			while (!codec.encode(statement, writeBuffer)) {
+				writeBuffer = ByteBuffer.allocate(2 * writeBuffer.capacity());
+			}
+		}
+		spilledBytes += writeBuffer.position() - start;
+		spilledTotalCount++;
+		spilledCount++;
+	}
+
+	@Override
+	public Statement take() throws IOException {
+
+		Statement statement = (take(single, 0, 1) == -1) ? null : single[0];
+
+		single[0] = null;
+		return statement;
+	}
+
+	@Override
+	public int take(Statement[] sbuf, int off, int len) throws IOException {
+
+		// the statements in memory were put before the spilled ones
+		if (!memory.isEmpty()) {
+			return memory.take(sbuf, off, len);
+		}
+
+		lock.lock();
+		try {
+			// the writer may have filled the memory then spilled since the check above
+			if (!memory.isEmpty()) {
+				return memory.take(sbuf, off, len);
+			} else if (endReplayed) {
+				return -1;
+			} else if (isSpilling()) {
+				return replay(sbuf, off, len);
+			}
+		} finally {
+			lock.unlock();
+		}
+		// nothing spilled: the writer puts the next statements in memory
+		return memory.take(sbuf, off, len);
+	}
+
+	private int replay(Statement[] sbuf, int off, int len) throws IOException {
+
+		if (firstReplayNanos == 0) {
+			firstReplayNanos = System.nanoTime();
+		}
+
+		int n = 0;
+
+		while (n < len) {
+
+			if (!barriers.isEmpty() && barriers.peek().position == replayPosition) {
+				sbuf[off + n++] = barriers.poll().barrier;
+				continue;
+			} else if (spilledCount == 0) {
+				break;
+			}
+
+			Statement statement = codec.decode(readBuffer);
+
+			if (statement == null) {
+				readFile();
+			} else {
+				sbuf[off + n++] = statement;
+				spilledCount--;
+				replayPosition++;
+				replayedTotalCount++;
+			}
+		}
+
+		if (spilledCount == 0 && barriers.isEmpty()) {
+
+			if (endSpilled) {
+				if (n < len) {
+					endReplayed = true;
+					deleteFile();
+
+					if (n == 0) {
+						return -1;
+					}
+					sbuf[off + n++] = null;
+				}
+			} else if (channel != null) {
+				truncateFile();
+			}
+		}
+		return n;
+	}
+
+	@Override
+	public boolean isEmpty() throws IOException {
+
+		lock.lock();
+		try {
+			return memory.isEmpty() && !isSpilling();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public int size() {
+
+		return memory.size() + spilledCount;
+	}
+
+	@Override
+	public void flush() {
+
+		memory.flush();
+	}
+
+	@Override
+	public void closeByWriter() {
+
+		memory.closeByWriter();
+	}
+
+	@Override
+	public void closeByReader() {
+
+		memory.closeByReader();
+
+		lock.lock();
+		try {
+			deleteFile();
+		} catch (IOException e) {
+			// the temp file is left behind
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	public boolean isClosedByReader() {
+
+		return memory.isClosedByReader();
+	}
+
+	@Override
+	public void setWriteSide(Thread writer) {
+
+		memory.setWriteSide(writer);
+	}
+
+	@Override
+	public long getReaderWaitTimeNanos() {
+
+		return memory.getReaderWaitTimeNanos();
+	}
+
+	@Override
+	public long getWriterWaitTimeNanos() {
+
+		return memory.getWriterWaitTimeNanos();
+	}
+
+	/** @return a snapshot of the spill metrics */
+	SpillMetrics getMetrics() {
+
+		long now = System.nanoTime();
+
+		lock.lock();
+		try {
+			return new SpillMetrics(spilledTotalCount, replayedTotalCount, spilledBytes, fileSize + writeBuffer.position(),
+					(firstSpillNanos == 0) ? 0 : now - firstSpillNanos,
+					(firstReplayNanos == 0) ? 0 : now - firstReplayNanos);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static class SpilledBarrier {
+
+		/** The number of statements spilled before the barrier */
+		private final long position;
+		private final CheckpointBarrier barrier;
+
+		private SpilledBarrier(long position, CheckpointBarrier barrier) {
+
+			this.position = position;
+			this.barrier = barrier;
+		}
+	}
+
+	private void openFile() throws IOException {
+
+		Files.createDirectories(directory);
+		file = Files.createTempFile(directory, "spill-", ".nxst");
+		channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+	}
+
+	private void flushWriteBuffer() throws IOException {
+
+		writeBuffer.flip();
+
+		while (writeBuffer.hasRemaining()) {
+			fileSize += channel.write(writeBuffer, fileSize);
+		}
+		writeBuffer.clear();
+	}
+
+	/**
+	 * Reads more bytes of the file, growing the buffer if a statement does not fit in it
+	 */
+	private void readFile() throws IOException {
+
+		// the next statements are still in memory
+		if (readPosition == fileSize) {
+			flushWriteBuffer();
+		}
+
+		if (readBuffer.position() == 0 && readBuffer.limit() == readBuffer.capacity()) {
+
+			ByteBuffer larger = ByteBuffer.allocate(2 * readBuffer.capacity());
+			larger.put(readBuffer);
+			readBuffer = larger;
+		} else {
+			readBuffer.compact();
+		}
+
+		int n = channel.read(readBuffer, readPosition);
+		readBuffer.flip();
+
+		if (n <= 0) {
+			throw new IOException("Truncated spill file " + file);
+		}
+		readPosition += n;
+	}
+
+	/**
+	 * Reclaims the disk space once all the spilled statements have been replayed
+	 */
+	private void truncateFile() throws IOException {
+
+		channel.truncate(0);
+		fileSize = 0;
+		readPosition = 0;
+		readBuffer.clear().flip();
+	}
+
+	private void deleteFile() throws IOException {
+
+		if (channel != null) {
+			// deletes the file
+			channel.close();
+			channel = null;
+		}
+	}
+}
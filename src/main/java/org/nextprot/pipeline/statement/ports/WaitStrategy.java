@@ -0,0 +1,33 @@
+package org.nextprot.pipeline.statement.ports;
+
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The way a thread waits for the other side of a pipe: for statements when the pipe is empty,
+ * or for free slots when the pipe is full.
+ *
+ * An instance is used by a single thread to wait and by its peer to signal, and
+ * it measures the time spent waiting.
+ */
+public interface WaitStrategy {
+
+	/**
+	 * Waits until the given condition holds
+	 *
+	 * @param condition the condition to wait for (it has to include the closing of the pipe)
+	 * @throws InterruptedIOException if the waiting thread was interrupted
+	 */
+	void waitFor(BooleanSupplier condition) throws InterruptedIOException;
+
+	/**
+	 * Wakes up the thread waiting with this strategy, if any
+	 */
+	void signal();
+
+	/** @return the total time spent waiting in nanoseconds */
+	long getWaitTimeNanos();
+
+	/** @return a new instance of this strategy with the same settings and a reset wait time */
+	WaitStrategy copy();
+}
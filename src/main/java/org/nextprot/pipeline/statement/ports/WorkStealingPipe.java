@@ -0,0 +1,406 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The pipes of the branches of a demultiplexer, letting an idle branch steal the statements pending
+ * in the pipe of a busy one.
+ *
+ * Each sink pipe port keeps its own bounded deque: the demultiplexer appends to its tail and the reader
+ * of the port takes from its head. A reader finding its deque empty takes up to half of the statements
+ * at the tail of the fullest deque, so that a branch slowed down by costly statements does not hold back
+ * the statements the other branches could handle.
+ *
+ * The checkpoint barriers and the END_OF_FLOW_TOKEN are never stolen, nor are the statements before a barrier:
+ * a thief has already acknowledged the barriers pending in the other deques (its own deque is empty),
+ * it only takes the statements written after the last one.
+ *
+ * All the deques share a single lock, the writer and the readers exchange whole batches under it.
+ */
+public class WorkStealingPipe {
+
+	private final ReentrantLock lock = new ReentrantLock();
+	/* The readers wait for statements in any deque, the writer waits for free slots in a deque */
+	private final Condition notEmpty = lock.newCondition();
+	private final Condition notFull = lock.newCondition();
+
+	private final List<Branch> branches;
+
+	/**
+	 * Replace the buffers of the given ports (not connected yet) by the deques of this pipe
+	 */
+	public WorkStealingPipe(List<SinkPipePort> sinkPipePorts) {
+
+		if (sinkPipePorts.isEmpty()) {
+			throw new IllegalArgumentException("Sink pipe port count <= 0");
+		}
+		branches = new ArrayList<>(sinkPipePorts.size());
+
+		for (SinkPipePort port : sinkPipePorts) {
+
+			Branch branch = new Branch(port.capacity());
+			port.setSharedBuffer(branch);
+			branches.add(branch);
+		}
+	}
+
+	public int getBranchCount() {
+
+		return branches.size();
+	}
+
+	/** @return the number of statements the reader of the given branch took from the other branches */
+	public long getStolenCount(int branch) {
+
+		return branches.get(branch).stolenCount;
+	}
+
+	/**
+	 * @return the branch with the most statements to steal or null if none can be stolen
+	 */
+	private Branch findVictim(Branch thief) {
+
+		Branch victim = null;
+		int maxStealable = 0;
+
+		for (Branch branch : branches) {
+
+			if (branch != thief && !branch.closedByReader) {
+
+				int stealable = branch.stealableCount();
+
+				if (stealable > maxStealable) {
+					maxStealable = stealable;
+					victim = branch;
+				}
+			}
+		}
+		return victim;
+	}
+
+	/**
+	 * The deque behind the sink pipe port of one branch (guarded by the lock of the pipe)
+	 */
+	private class Branch implements PipeBuffer {
+
+		private final Statement[] slots;
+		/** The index of the next statement to take */
+		private int head = 0;
+		private int count = 0;
+
+		private boolean closedByWriter = false;
+		private volatile boolean closedByReader = false;
+
+		private volatile long stolenCount;
+		private volatile long readerWaitTimeNanos;
+		private volatile long writerWaitTimeNanos;
+
+		/** The buffer of the single statement takes (only used by the reader) */
+		private final Statement[] single = new Statement[1];
+
+		private Branch(int capacity) {
+
+			slots = new Statement[capacity];
+		}
+
+		private Statement get(int i) {
+
+			return slots[(head + i) % slots.length];
+		}
+
+		private void set(int i, Statement statement) {
+
+			slots[(head + i) % slots.length] = statement;
+		}
+
+		@Override
+		public int capacity() {
+
+			return slots.length;
+		}
+
+		@Override
+		public void put(Statement statement) throws IOException {
+
+			lock.lock();
+			try {
+				checkWritable();
+				awaitFreeSlots();
+				set(count++, statement);
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void put(List<Statement> statements, int off, int len) throws IOException {
+
+			lock.lock();
+			try {
+				checkWritable();
+
+				while (len > 0) {
+					int n = Math.min(len, awaitFreeSlots());
+					for (int i = 0; i < n; i++) {
+						set(count++, statements.get(off + i));
+					}
+					off += n;
+					len -= n;
+					notEmpty.signalAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void put(Statement[] statements, int off, int len) throws IOException {
+
+			lock.lock();
+			try {
+				checkWritable();
+
+				while (len > 0) {
+					int n = Math.min(len, awaitFreeSlots());
+					for (int i = 0; i < n; i++) {
+						set(count++, statements[off + i]);
+					}
+					off += n;
+					len -= n;
+					notEmpty.signalAll();
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void checkWritable() throws IOException {
+
+			if (closedByWriter || closedByReader) {
+				throw new IOException("Pipe closed");
+			}
+		}
+
+		/**
+		 * Waits until the deque is not full
+		 *
+		 * @return the number of free slots
+		 */
+		private int awaitFreeSlots() throws IOException {
+
+			while (count == slots.length) {
+
+				if (closedByReader) {
+					throw new IOException("Pipe closed");
+				}
+				long start = System.nanoTime();
+				try {
+					notFull.await(1, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				} finally {
+					writerWaitTimeNanos += System.nanoTime() - start;
+				}
+			}
+			return slots.length - count;
+		}
+
+		@Override
+		public Statement take() throws IOException {
+
+			if (take(single, 0, 1) == -1) {
+				return null;
+			}
+			Statement statement = single[0];
+			single[0] = null;
+
+			return statement;
+		}
+
+		/**
+		 * Takes the statements of this deque, or steals some from another deque once it is empty
+		 */
+		@Override
+		public int take(Statement[] sbuf, int off, int len) throws IOException {
+
+			lock.lock();
+			try {
+				while (true) {
+
+					if (closedByReader) {
+						throw new IOException("Pipe closed");
+					} else if (count > 0) {
+						return takeHead(sbuf, off, len);
+					} else if (closedByWriter) {
+						return -1;
+					}
+
+					Branch victim = findVictim(this);
+
+					if (victim != null) {
+						int n = victim.takeStealable(sbuf, off, len);
+						stolenCount += n;
+						return n;
+					}
+
+					long start = System.nanoTime();
+					try {
+						notEmpty.await(1, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						throw new InterruptedIOException();
+					} finally {
+						readerWaitTimeNanos += System.nanoTime() - start;
+					}
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private int takeHead(Statement[] sbuf, int off, int len) {
+
+			int n = Math.min(len, count);
+
+			for (int i = 0; i < n; i++) {
+				sbuf[off + i] = get(i);
+				set(i, null);
+			}
+			head = (head + n) % slots.length;
+			count -= n;
+			notFull.signalAll();
+
+			return n;
+		}
+
+		/**
+		 * @return the index following the last statement that can be stolen (ie: before the END_OF_FLOW_TOKEN)
+		 */
+		private int stealableEnd() {
+
+			return (count > 0 && get(count - 1) == null) ? count - 1 : count;
+		}
+
+		/**
+		 * @return the number of statements after the last barrier, before the END_OF_FLOW_TOKEN
+		 */
+		private int stealableCount() {
+
+			int end = stealableEnd();
+			int start = end;
+
+			while (start > 0 && !(get(start - 1) instanceof CheckpointBarrier)) {
+				start--;
+			}
+			return end - start;
+		}
+
+		/**
+		 * Takes up to half of the statements that can be stolen, from the tail
+		 * (the END_OF_FLOW_TOKEN, a null slot, stays at the tail)
+		 */
+		private int takeStealable(Statement[] sbuf, int off, int len) {
+
+			int end = stealableEnd();
+			int n = Math.min(len, Math.max(1, stealableCount() / 2));
+
+			for (int i = 0; i < n; i++) {
+				sbuf[off + i] = get(end - n + i);
+				set(end - n + i, null);
+			}
+			count -= n;
+			notFull.signalAll();
+
+			return n;
+		}
+
+		@Override
+		public boolean isEmpty() throws IOException {
+
+			lock.lock();
+			try {
+				if (closedByReader) {
+					throw new IOException("Pipe closed");
+				}
+				return count == 0;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public int size() {
+
+			lock.lock();
+			try {
+				return count;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void flush() {
+
+			lock.lock();
+			try {
+				notEmpty.signalAll();
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void closeByWriter() {
+
+			lock.lock();
+			try {
+				closedByWriter = true;
+				notEmpty.signalAll();
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void closeByReader() {
+
+			lock.lock();
+			try {
+				closedByReader = true;
+				notFull.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public boolean isClosedByReader() {
+
+			return closedByReader;
+		}
+
+		@Override
+		public long getReaderWaitTimeNanos() {
+
+			return readerWaitTimeNanos;
+		}
+
+		@Override
+		public long getWriterWaitTimeNanos() {
+
+			return writerWaitTimeNanos;
+		}
+	}
+}
@@ -0,0 +1,59 @@
+package org.nextprot.pipeline.statement.ports;
+
+import java.io.InterruptedIOException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Spins a little then yields the processor until the condition holds.
+ * It keeps a low latency while letting other threads run on a busy host.
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+	private final int spinTries;
+	private volatile long waitTimeNanos;
+
+	public YieldingWaitStrategy() {
+
+		this(100);
+	}
+
+	public YieldingWaitStrategy(int spinTries) {
+
+		this.spinTries = spinTries;
+	}
+
+	@Override
+	public void waitFor(BooleanSupplier condition) throws InterruptedIOException {
+
+		long start = System.nanoTime();
+		int counter = spinTries;
+
+		while (!condition.getAsBoolean()) {
+
+			if (counter > 0) {
+				counter--;
+			} else {
+				Thread.yield();
+			}
+			if (Thread.interrupted()) {
+				throw new InterruptedIOException();
+			}
+		}
+		waitTimeNanos += System.nanoTime() - start;
+	}
+
+	@Override
+	public void signal() { }
+
+	@Override
+	public long getWaitTimeNanos() {
+
+		return waitTimeNanos;
+	}
+
+	@Override
+	public YieldingWaitStrategy copy() {
+
+		return new YieldingWaitStrategy(spinTries);
+	}
+}
@@ -0,0 +1,224 @@
+package org.nextprot.pipeline.statement.reactive;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A pump of the statements of a publisher (ie: to feed a pipeline Source from a reactive service).
+ *
+ * The pump subscribes on its first pump and requests a batch of its capacity, then requests
+ * the statements handed over by each pump: the demand is the free room of the batch buffer,
+ * so the publisher never emits more than the source has room for.
+ * The source thread waits for the publisher when the buffer is empty.
+ */
+public class PublisherPump implements Pump<Statement> {
+
+	private final Publisher<? extends Statement> publisher;
+	private final int capacity;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+	private final Deque<Statement> buffer;
+	private boolean subscribed = false;
+	private volatile Subscription subscription;
+	private boolean completed = false;
+	private Throwable error;
+
+	public PublisherPump(Publisher<? extends Statement> publisher, int capacity) {
+
+		if (capacity < 1) {
+			throw new IllegalArgumentException("Capacity < 1");
+		}
+		this.publisher = publisher;
+		this.capacity = capacity;
+		buffer = new ArrayDeque<>(capacity);
+	}
+
+	@Override
+	public Statement pump() throws IOException {
+
+		List<Statement> collector = new ArrayList<>(1);
+
+		return (pump(collector, 1) == -1) ? null : collector.get(0);
+	}
+
+	@Override
+	public int capacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public int pump(List<Statement> collector) throws IOException {
+
+		return pump(collector, capacity);
+	}
+
+	private int pump(List<Statement> collector, int max) throws IOException {
+
+		subscribe();
+
+		int count = 0;
+
+		lock.lock();
+		try {
+			while (buffer.isEmpty() && !completed && error == null) {
+				notEmpty.await();
+			}
+			while (count < max && !buffer.isEmpty()) {
+				collector.add(buffer.poll());
+				count++;
+			}
+			if (count == 0) {
+				if (error != null) {
+					throw new IOException("publisher failed: " + error.getMessage(), error);
+				}
+				return -1;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the publisher");
+		} finally {
+			lock.unlock();
+		}
+
+		// outside the lock: the publisher may emit in the requesting thread
+		subscription.request(count);
+
+		return count;
+	}
+
+	@Override
+	public boolean isEmpty() throws IOException {
+
+		lock.lock();
+		try {
+			return buffer.isEmpty() && (completed || error != null);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Cancel the subscription if the publisher has not completed
+	 */
+	@Override
+	public void close() throws IOException {
+
+		lock.lock();
+		try {
+			completed = true;
+			buffer.clear();
+		} finally {
+			lock.unlock();
+		}
+
+		if (subscription != null) {
+			subscription.cancel();
+		}
+	}
+
+	private void subscribe() {
+
+		lock.lock();
+		try {
+			if (subscribed) {
+				return;
+			}
+			subscribed = true;
+		} finally {
+			lock.unlock();
+		}
+		publisher.subscribe(new BufferingSubscriber());
+
+		// onSubscribe may be signalled asynchronously
+		lock.lock();
+		try {
+			while (subscription == null && !completed && error == null) {
+				notEmpty.awaitUninterruptibly();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private class BufferingSubscriber implements Subscriber<Statement> {
+
+		@Override
+		public void onSubscribe(Subscription s) {
+
+			lock.lock();
+			try {
+				if (subscription != null) {
+					// rule 2.5: a single subscription at a time
+					s.cancel();
+					return;
+				}
+				subscription = s;
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			s.request(capacity);
+		}
+
+		@Override
+		public void onNext(Statement statement) {
+
+			boolean overflow = false;
+
+			lock.lock();
+			try {
+				if (buffer.size() == capacity) {
+					overflow = true;
+					error = new IllegalStateException("the publisher emitted more statements than requested (rule 1.1)");
+				} else if (!completed) {
+					buffer.add(statement);
+				}
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+
+			if (overflow) {
+				subscription.cancel();
+			}
+		}
+
+		@Override
+		public void onError(Throwable t) {
+
+			lock.lock();
+			try {
+				error = t;
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		@Override
+		public void onComplete() {
+
+			lock.lock();
+			try {
+				completed = true;
+				notEmpty.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,223 @@
+package org.nextprot.pipeline.statement.reactive;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.elements.Sink;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This sink publishes the statements of the pipeline to a single subscriber (ie: a reactive ingestion service).
+ *
+ * The sink thread only reads from its pipe the statements requested by the subscriber, up to the pipe capacity
+ * at a time, and emits them itself: without demand, the pipe fills up and holds the pipeline back
+ * as any stalled sink would. Once the subscription is cancelled, the remaining statements are drained
+ * and dropped so that the pipeline terminates.
+ *
+ * A checkpoint barrier is acknowledged once the statements before it have been published: the barriers
+ * following a cancellation are not, since the statements dropped have to be published again by the next run.
+ *
+ * The sink cannot be duplicated: the chains of a demultiplexer have to be merged by a mux step before it.
+ */
+public class PublisherSink extends Sink implements Publisher<Statement> {
+
+	private static int COUNT = 0;
+
+	private final int id;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition signalled = lock.newCondition();
+	private Subscriber<? super Statement> subscriber;
+	/** True once the subscriber has been given its subscription */
+	private volatile boolean subscribed = false;
+	private long demand = 0;
+	/** The first invalid request, if any */
+	private Long invalidRequest;
+	private boolean cancelled = false;
+	private volatile long publishedCount = 0;
+
+	public PublisherSink(int capacity) {
+
+		super(capacity);
+		id = ++COUNT;
+
+		getSinkPipePort().setBarrierHandler(barrier -> {
+			if (!isCancelled()) {
+				barrier.acknowledge();
+			}
+		});
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	@Override
+	public PublisherSink duplicate(int newCapacity) {
+
+		throw new UnsupportedOperationException("a publisher sink has a single subscriber, merge the demultiplexed chains with a mux step");
+	}
+
+	public long getPublishedCount() {
+
+		return publishedCount;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Statement> subscriber) {
+
+		Objects.requireNonNull(subscriber);
+
+		lock.lock();
+		try {
+			if (this.subscriber != null) {
+				Reactive.reject(subscriber, "a publisher sink has a single subscriber");
+				return;
+			}
+			this.subscriber = subscriber;
+		} finally {
+			lock.unlock();
+		}
+
+		subscriber.onSubscribe(new Subscription() {
+
+			@Override
+			public void request(long n) {
+
+				lock.lock();
+				try {
+					if (n <= 0) {
+						invalidRequest = (invalidRequest == null) ? n : invalidRequest;
+					} else {
+						demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+					}
+					signalled.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+
+			@Override
+			public void cancel() {
+
+				lock.lock();
+				try {
+					cancelled = true;
+					signalled.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		});
+
+		// the sink thread may signal the subscriber from now on
+		lock.lock();
+		try {
+			subscribed = true;
+			signalled.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@Override
+	protected void handleFlow() throws IOException {
+
+		Statement[] statements = new Statement[getSinkPipePort().capacity()];
+		boolean ended = false;
+
+		try {
+			while (!ended) {
+
+				long requested = awaitDemand();
+				// a cancelled subscription reads the pipe without demand
+				int len = (requested < 0) ? statements.length : (int) Math.min(requested, statements.length);
+				int n = getSinkPipePort().read(statements, 0, len);
+
+				if (n == -1) {
+					break;
+				}
+
+				int count = 0;
+
+				while (count < n && statements[count] != END_OF_FLOW_TOKEN) {
+					count++;
+				}
+				ended = count < n;
+
+				if (requested >= 0) {
+					publish(statements, count);
+				}
+			}
+		} catch (IOException e) {
+			if (subscribed && !isCancelled()) {
+				subscriber.onError(e);
+			}
+			throw e;
+		}
+
+		if (!isCancelled()) {
+			subscriber.onComplete();
+		}
+		printlnTextInLog(publishedCount + " statements published");
+	}
+
+	/**
+	 * @return the demand or -1 if the subscription has been cancelled
+	 */
+	private long awaitDemand() throws IOException {
+
+		lock.lock();
+		try {
+			while (!cancelled && (!subscribed || (demand == 0 && invalidRequest == null))) {
+				signalled.await();
+			}
+			if (invalidRequest != null && !cancelled) {
+				// rule 3.9: the subscription is cancelled with an error
+				cancelled = true;
+				subscriber.onError(new IllegalArgumentException(Reactive.invalidRequestMessage(invalidRequest)));
+			}
+			return (cancelled) ? -1 : demand;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for the subscriber demand");
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void publish(Statement[] statements, int count) {
+
+		for (int i = 0; i < count; i++) {
+			subscriber.onNext(statements[i]);
+		}
+		publishedCount += count;
+
+		lock.lock();
+		try {
+			if (demand != Long.MAX_VALUE) {
+				demand -= count;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean isCancelled() {
+
+		lock.lock();
+		try {
+			return cancelled;
+		} finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,177 @@
+package org.nextprot.pipeline.statement.reactive;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A publisher of the statements of a pump (ie: the pump of a Source) to a single subscriber.
+ *
+ * The statements are pumped on demand by the thread requesting them, a batch of the pump capacity at a time:
+ * the statements pumped beyond the demand wait for the next request, so that no thread and
+ * no more than a batch sit between the pump and the subscriber (the next batch is pumped once the demand
+ * is met, to signal the completion as soon as the pump is exhausted).
+ * The pump is closed once exhausted, on error or when the subscription is cancelled.
+ * Checkpoint barriers pumped with the statements (ie: by a pump reading a pipe) are not published.
+ */
+public class PumpPublisher implements Publisher<Statement> {
+
+	private final Pump<Statement> pump;
+	private final AtomicBoolean subscribed = new AtomicBoolean(false);
+
+	public PumpPublisher(Pump<Statement> pump) {
+
+		this.pump = pump;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Statement> subscriber) {
+
+		Objects.requireNonNull(subscriber);
+
+		if (!subscribed.compareAndSet(false, true)) {
+			Reactive.reject(subscriber, "the statements of a pump can only be published once");
+			return;
+		}
+		subscriber.onSubscribe(new PumpSubscription(subscriber));
+	}
+
+	private class PumpSubscription implements Subscription {
+
+		private final Subscriber<? super Statement> subscriber;
+		private final AtomicLong demand = new AtomicLong(0);
+		/** The number of signals to handle: only the thread raising it from 0 emits (the others leave it the work) */
+		private final AtomicInteger pending = new AtomicInteger(0);
+		private volatile boolean cancelled = false;
+		/** The first invalid request, if any */
+		private volatile Long invalidRequest;
+
+		/** The batch being emitted, only accessed by the emitting thread */
+		private final List<Statement> batch = new ArrayList<>(pump.capacity());
+		private int next = 0;
+		private boolean done = false;
+
+		private PumpSubscription(Subscriber<? super Statement> subscriber) {
+
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(long n) {
+
+			if (n <= 0) {
+				invalidRequest = (invalidRequest == null) ? n : invalidRequest;
+			} else {
+				Reactive.addDemand(demand, n);
+			}
+			emit();
+		}
+
+		@Override
+		public void cancel() {
+
+			cancelled = true;
+			emit();
+		}
+
+		private void emit() {
+
+			if (pending.getAndIncrement() != 0) {
+				return;
+			}
+
+			int missed = 1;
+
+			do {
+				if (!done) {
+					emitBatches();
+				}
+				missed = pending.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void emitBatches() {
+
+			while (true) {
+
+				if (cancelled) {
+					terminate(null, false);
+					return;
+				} else if (invalidRequest != null) {
+					terminate(new IllegalArgumentException(Reactive.invalidRequestMessage(invalidRequest)), false);
+					return;
+				}
+
+				// pumped ahead of the demand, so that the end of the pump is signalled without a further request
+				if (next == batch.size()) {
+
+					batch.clear();
+					next = 0;
+
+					try {
+						if (pump.pump(batch) == -1) {
+							terminate(null, true);
+							return;
+						}
+						batch.removeIf(CheckpointBarrier.class::isInstance);
+					} catch (IOException e) {
+						terminate(e, false);
+						return;
+					}
+				}
+
+				long requested = demand.get();
+
+				if (requested == 0) {
+					return;
+				}
+
+				long emitted = 0;
+
+				while (emitted < requested && next < batch.size() && !cancelled) {
+					subscriber.onNext(batch.get(next++));
+					emitted++;
+				}
+				if (requested != Long.MAX_VALUE) {
+					demand.addAndGet(-emitted);
+				}
+			}
+		}
+
+		/**
+		 * Close the pump and signal the error or the completion (not after a cancel)
+		 */
+		private void terminate(Throwable error, boolean complete) {
+
+			done = true;
+			batch.clear();
+
+			try {
+				pump.close();
+			} catch (IOException e) {
+				if (error == null && !cancelled) {
+					error = e;
+				}
+			}
+			if (cancelled) {
+				return;
+			}
+			if (error != null) {
+				subscriber.onError(error);
+			} else if (complete) {
+				subscriber.onComplete();
+			}
+		}
+	}
+}
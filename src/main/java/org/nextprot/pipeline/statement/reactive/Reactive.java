@@ -0,0 +1,58 @@
+package org.nextprot.pipeline.statement.reactive;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Helpers shared by the reactive adapters
+ */
+final class Reactive {
+
+	/** The subscription given to the rejected subscribers */
+	static final Subscription CANCELLED = new Subscription() {
+
+		@Override
+		public void request(long n) { }
+
+		@Override
+		public void cancel() { }
+	};
+
+	private Reactive() { }
+
+	/**
+	 * Add <code>n</code> to the demand, capped at Long.MAX_VALUE (an unbounded demand)
+	 */
+	static long addDemand(AtomicLong demand, long n) {
+
+		while (true) {
+
+			long current = demand.get();
+
+			if (current == Long.MAX_VALUE) {
+				return current;
+			}
+			long updated = (current + n < 0) ? Long.MAX_VALUE : current + n;
+
+			if (demand.compareAndSet(current, updated)) {
+				return updated;
+			}
+		}
+	}
+
+	static String invalidRequestMessage(long n) {
+
+		return "request(" + n + "): the number of statements requested must be positive (rule 3.9)";
+	}
+
+	/**
+	 * Signal a subscriber that cannot be served
+	 */
+	static void reject(Subscriber<?> subscriber, String message) {
+
+		subscriber.onSubscribe(CANCELLED);
+		subscriber.onError(new IllegalStateException(message));
+	}
+}
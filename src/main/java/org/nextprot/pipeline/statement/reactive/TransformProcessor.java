@@ -0,0 +1,157 @@
+package org.nextprot.pipeline.statement.reactive;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.StatementTransform;
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Objects;
+
+/**
+ * A processor calling a stateless transform on each statement in the thread of the upstream publisher:
+ * the reactive counterpart of a FusedFilter, without any thread or buffer in between.
+ *
+ * The demand of the subscriber is passed upstream as is, and each statement dropped by the transform
+ * is requested again.
+ */
+public class TransformProcessor implements Processor<Statement, Statement> {
+
+	private final StatementTransform transform;
+	/** onNext signals are serial: the transform is called on a single statement batch */
+	private final Statement[] statement = new Statement[1];
+
+	private Subscription upstream;
+	private Subscriber<? super Statement> downstream;
+	/** The demand of the subscriber received before the subscription to the publisher */
+	private long pendingDemand = 0;
+	private boolean cancelled = false;
+	/** The completion or error signalled before the subscriber subscribed */
+	private boolean pendingCompletion = false;
+	private Throwable pendingError;
+
+	public TransformProcessor(StatementTransform transform) {
+
+		this.transform = transform;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super Statement> subscriber) {
+
+		Objects.requireNonNull(subscriber);
+
+		synchronized (this) {
+			if (downstream != null) {
+				Reactive.reject(subscriber, "a transform processor has a single subscriber");
+				return;
+			}
+			downstream = subscriber;
+		}
+		subscriber.onSubscribe(new Subscription() {
+
+			@Override
+			public void request(long n) {
+
+				requestUpstream(n);
+			}
+
+			@Override
+			public void cancel() {
+
+				cancelUpstream();
+			}
+		});
+
+		synchronized (this) {
+			if (pendingError != null) {
+				subscriber.onError(pendingError);
+			} else if (pendingCompletion) {
+				subscriber.onComplete();
+			}
+		}
+	}
+
+	@Override
+	public void onSubscribe(Subscription subscription) {
+
+		long demand;
+
+		synchronized (this) {
+			if (upstream != null || cancelled) {
+				subscription.cancel();
+				return;
+			}
+			upstream = subscription;
+			demand = pendingDemand;
+		}
+		if (demand != 0) {
+			subscription.request(demand);
+		}
+	}
+
+	@Override
+	public void onNext(Statement next) {
+
+		statement[0] = next;
+
+		if (transform.transform(statement, 1) == 1) {
+			downstream.onNext(statement[0]);
+		} else {
+			upstream.request(1);
+		}
+		statement[0] = null;
+	}
+
+	@Override
+	public void onError(Throwable error) {
+
+		synchronized (this) {
+			if (downstream == null) {
+				pendingError = error;
+				return;
+			}
+		}
+		downstream.onError(error);
+	}
+
+	@Override
+	public void onComplete() {
+
+		synchronized (this) {
+			if (downstream == null) {
+				pendingCompletion = true;
+				return;
+			}
+		}
+		downstream.onComplete();
+	}
+
+	private void requestUpstream(long n) {
+
+		Subscription subscription;
+
+		synchronized (this) {
+			if (upstream == null) {
+				// an invalid request is passed on as is for the publisher to signal the error
+				pendingDemand = (n <= 0 || pendingDemand < 0) ? Math.min(n, pendingDemand)
+						: (pendingDemand + n < 0) ? Long.MAX_VALUE : pendingDemand + n;
+				return;
+			}
+			subscription = upstream;
+		}
+		subscription.request(n);
+	}
+
+	private void cancelUpstream() {
+
+		Subscription subscription;
+
+		synchronized (this) {
+			cancelled = true;
+			subscription = upstream;
+		}
+		if (subscription != null) {
+			subscription.cancel();
+		}
+	}
+}
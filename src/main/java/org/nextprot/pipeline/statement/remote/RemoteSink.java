@@ -0,0 +1,306 @@
+package org.nextprot.pipeline.statement.remote;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.elements.Sink;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+
+/**
+ * This sink sends its statements to a RemoteStatementPump over a TCP connection: the upstream side of a remote pipe
+ * between two processes (ie: to run a stage of the pipeline in a worker process on another host).
+ *
+ * The statements are sent in the binary format of StatementCodec: the stream header, then frames made of
+ * a statement count (varint) followed by the records, a frame of 0 statement ending the flow.
+ * The pump grants credits back on the same connection (varints, one credit per statement) as its pipeline consumes
+ * the statements, and this sink never sends more statements than it has been granted:
+ * a stalled remote pipeline blocks this sink as a full local pipe would.
+ *
+ * Each duplicate opens its own connection, so the pump must expect as many connections as sinks.
+ * Checkpoint barriers do not cross the wire: they are dropped, never acknowledged, and the PipelineBuilder does not
+ * build a checkpointed pipeline with remote steps.
+ */
+public class RemoteSink extends Sink {
+
+	private static int COUNT = 0;
+
+	public static final int DEFAULT_CAPACITY = 1000;
+	public static final int BUFFER_SIZE = 1 << 16;
+	public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = 30000;
+
+	private final InetSocketAddress address;
+	private final StatementCodec codec;
+	private final long connectTimeoutMillis;
+	private final int id;
+
+	private SocketChannel channel;
+	private Selector selector;
+	private SelectionKey key;
+	/** The encoded statements not sent yet */
+	private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+	/** The credit bytes received and not decoded yet */
+	private final ByteBuffer in = ByteBuffer.allocate(256);
+	/** The number of statements that can be sent */
+	private long credits;
+	private volatile long sentCount = 0;
+
+	public RemoteSink(InetSocketAddress address, StatementCodec codec) {
+
+		this(DEFAULT_CAPACITY, address, codec);
+	}
+
+	public RemoteSink(int capacity, InetSocketAddress address, StatementCodec codec) {
+
+		this(capacity, address, codec, DEFAULT_CONNECT_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param connectTimeoutMillis the time to wait for the pump to listen (ie: while the remote process starts)
+	 */
+	public RemoteSink(int capacity, InetSocketAddress address, StatementCodec codec, long connectTimeoutMillis) {
+
+		super(capacity);
+
+		this.address = address;
+		this.codec = codec;
+		this.connectTimeoutMillis = connectTimeoutMillis;
+		id = ++COUNT;
+
+		// the statements sent are not durable yet: the barriers are never acknowledged
+		getSinkPipePort().setBarrierHandler(null);
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	/**
+	 * Codecs are not thread-safe: each copy encodes with its own
+	 */
+	@Override
+	public RemoteSink duplicate(int capacity) {
+
+		return new RemoteSink(capacity, address, codec.copy(), connectTimeoutMillis);
+	}
+
+	public InetSocketAddress getAddress() {
+
+		return address;
+	}
+
+	public long getSentCount() {
+
+		return sentCount;
+	}
+
+	@Override
+	protected void handleFlow() throws IOException {
+
+		channel = connect();
+		selector = Selector.open();
+
+		try {
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			key = channel.register(selector, SelectionKey.OP_READ);
+
+			if (!codec.encodeHeader(out)) {
+				throw new IOException("binary statement stream header larger than " + BUFFER_SIZE + " bytes");
+			}
+
+			Statement[] statements = new Statement[getSinkPipePort().capacity()];
+			int n;
+
+			while ((n = getSinkPipePort().read(statements, 0, statements.length)) != -1) {
+
+				int len = 0;
+
+				while (len < n && statements[len] != END_OF_FLOW_TOKEN) {
+					len++;
+				}
+				send(statements, len);
+
+				if (len < n) {
+					break;
+				}
+			}
+
+			// the frame ending the flow
+			ensureRemaining(StatementCodec.MAX_VARINT_SIZE);
+			StatementCodec.putVarint(out, 0);
+			flush();
+			awaitClose();
+		} finally {
+			selector.close();
+			channel.close();
+		}
+		printlnTextInLog(sentCount + " statements sent to " + address);
+	}
+
+	private SocketChannel connect() throws IOException {
+
+		long deadline = System.currentTimeMillis() + connectTimeoutMillis;
+
+		while (true) {
+			try {
+				return SocketChannel.open(address);
+			} catch (ConnectException e) {
+
+				if (System.currentTimeMillis() >= deadline) {
+					throw new ConnectException("cannot connect to " + address + ": " + e.getMessage());
+				}
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("interrupted while connecting to " + address);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send the statements in frames of at most the granted credits
+	 */
+	private void send(Statement[] statements, int len) throws IOException {
+
+		int sent = 0;
+
+		while (sent < len) {
+
+			awaitCredits();
+
+			int count = (int) Math.min(credits, len - sent);
+
+			ensureRemaining(StatementCodec.MAX_VARINT_SIZE);
+			StatementCodec.putVarint(out, count);
+
+			for (int i = sent; i < sent + count; i++) {
+				write(statements[i]);
+			}
+			credits -= count;
+			sent += count;
+			sentCount += count;
+		}
+		flush();
+	}
+
+	private void write(Statement statement) throws IOException {
+
+		if (codec.encode(statement, out)) {
+			return;
+		}
+		flush();
+
+		// the record is larger than the buffer
+		while (!codec.encode(statement, out)) {
+			out = ByteBuffer.allocate(2 * out.capacity());
+		}
+	}
+
+	private void ensureRemaining(int size) throws IOException {
+
+		if (out.remaining() < size) {
+			flush();
+		}
+	}
+
+	/**
+	 * Send the encoded statements, waiting for the socket to be writable when its send buffer is full
+	 */
+	private void flush() throws IOException {
+
+		out.flip();
+
+		while (out.hasRemaining()) {
+
+			if (channel.write(out) == 0) {
+				select(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+			}
+		}
+		out.clear();
+	}
+
+	private void awaitCredits() throws IOException {
+
+		readCredits();
+
+		if (credits > 0) {
+			return;
+		}
+		// the pump grants credits as it consumes the statements sent so far
+		flush();
+
+		while (credits == 0) {
+			select(SelectionKey.OP_READ);
+		}
+	}
+
+	/**
+	 * Wait for the socket to be ready for the given operations, reading the credits received meanwhile
+	 */
+	private void select(int ops) throws IOException {
+
+		key.interestOps(ops);
+		selector.select();
+
+		if (key.isReadable()) {
+			readCredits();
+		}
+		selector.selectedKeys().clear();
+	}
+
+	private void readCredits() throws IOException {
+
+		if (channel.read(in) == -1) {
+			throw new IOException("connection closed by " + address);
+		}
+		in.flip();
+
+		while (in.hasRemaining()) {
+
+			int start = in.position();
+			long granted = StatementCodec.getVarint(in);
+
+			if (granted == -1) {
+				in.position(start);
+				break;
+			}
+			credits += granted;
+		}
+		in.compact();
+	}
+
+	/**
+	 * Wait for the pump to close the connection once it has read the end of the flow
+	 * (closing first with unread credits would reset the connection)
+	 */
+	private void awaitClose() throws IOException {
+
+		channel.shutdownOutput();
+		key.interestOps(SelectionKey.OP_READ);
+
+		while (true) {
+
+			in.clear();
+			int n = channel.read(in);
+
+			if (n == -1) {
+				break;
+			} else if (n == 0) {
+				selector.select();
+				selector.selectedKeys().clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,326 @@
+package org.nextprot.pipeline.statement.remote;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A pump of the statements sent by remote sinks (see RemoteSink): the downstream side of a remote pipe.
+ *
+ * The pump listens as soon as it is created and accepts the given number of connections
+ * (ie: one per sink of a demultiplexed group). It grants each connection a window of credits,
+ * then grants back the credits of the statements of a batch when the next batch is pumped
+ * (ie: once the source has written them in its pipe), so that the sinks only send
+ * what the local pipeline has room for.
+ * All the connections are read by the pumping thread in non-blocking mode.
+ */
+public class RemoteStatementPump implements Pump<Statement> {
+
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	private final ServerSocketChannel server;
+	private final Selector selector;
+	private final StatementCodec codec;
+	private final int capacity;
+	private final int expectedConnections;
+	private final int window;
+
+	private final List<Connection> connections = new ArrayList<>();
+	private int endedCount = 0;
+	/** The index of the connection decoded first in the next pump */
+	private int next = 0;
+
+	public RemoteStatementPump(InetSocketAddress address, StatementCodec codec, int capacity) throws IOException {
+
+		this(address, codec, capacity, 1);
+	}
+
+	public RemoteStatementPump(InetSocketAddress address, StatementCodec codec, int capacity, int connections) throws IOException {
+
+		this(address, codec, capacity, connections, 2 * capacity);
+	}
+
+	/**
+	 * @param address the address to listen to (port 0 to pick an ephemeral port, see {@link #getLocalAddress()})
+	 * @param connections the number of remote sinks
+	 * @param window the number of statements a sink can send ahead of the statements pumped
+	 */
+	public RemoteStatementPump(InetSocketAddress address, StatementCodec codec, int capacity, int connections, int window) throws IOException {
+
+		if (connections < 1) {
+			throw new IllegalArgumentException("Connections < 1");
+		}
+		if (window < 1) {
+			throw new IllegalArgumentException("Window < 1");
+		}
+
+		this.codec = codec;
+		this.capacity = capacity;
+		this.expectedConnections = connections;
+		this.window = window;
+
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(address);
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+	}
+
+	/** @return the address the pump listens to */
+	public InetSocketAddress getLocalAddress() throws IOException {
+
+		return (InetSocketAddress) server.getLocalAddress();
+	}
+
+	@Override
+	public Statement pump() throws IOException {
+
+		List<Statement> collector = new ArrayList<>(1);
+
+		return (pump(collector, 1) == -1) ? null : collector.get(0);
+	}
+
+	@Override
+	public int capacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public int pump(List<Statement> collector) throws IOException {
+
+		return pump(collector, capacity);
+	}
+
+	private int pump(List<Statement> collector, int max) throws IOException {
+
+		// the statements pumped before have been handed over
+		for (Connection connection : connections) {
+			connection.grant();
+		}
+
+		while (true) {
+
+			int count = 0;
+
+			for (int i = 0; i < connections.size() && count < max; i++) {
+				count += connections.get((next + i) % connections.size()).decode(collector, max - count);
+			}
+			if (!connections.isEmpty()) {
+				next = (next + 1) % connections.size();
+			}
+
+			if (count > 0) {
+				return count;
+			} else if (isEmpty()) {
+				return -1;
+			}
+			select();
+		}
+	}
+
+	/**
+	 * @return true once all the sinks have ended their flow
+	 */
+	@Override
+	public boolean isEmpty() {
+
+		return endedCount == expectedConnections;
+	}
+
+	private void select() throws IOException {
+
+		selector.select();
+
+		for (SelectionKey key : selector.selectedKeys()) {
+
+			if (!key.isValid()) {
+				continue;
+			}
+			if (key.isAcceptable()) {
+				accept();
+				continue;
+			}
+
+			Connection connection = (Connection) key.attachment();
+
+			if (key.isReadable()) {
+				connection.fill();
+			}
+			if (key.isValid() && key.isWritable()) {
+				connection.grant();
+			}
+		}
+		selector.selectedKeys().clear();
+	}
+
+	private void accept() throws IOException {
+
+		SocketChannel channel = server.accept();
+
+		if (channel == null) {
+			return;
+		}
+		channel.configureBlocking(false);
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+		Connection connection = new Connection(channel, codec.copy());
+		connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+		connections.add(connection);
+
+		// no more sinks to wait for
+		if (connections.size() == expectedConnections) {
+			server.close();
+		}
+
+		connection.ungranted = window;
+		connection.grant();
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		for (Connection connection : connections) {
+			connection.channel.close();
+		}
+		server.close();
+		selector.close();
+	}
+
+	private class Connection {
+
+		private final SocketChannel channel;
+		private final StatementCodec codec;
+		private SelectionKey key;
+
+		/** The bytes received and not decoded yet (in read mode) */
+		private ByteBuffer buffer = (ByteBuffer) ByteBuffer.allocate(BUFFER_SIZE).flip();
+		/** The credit bytes not sent yet (in read mode) */
+		private final ByteBuffer credits = (ByteBuffer) ByteBuffer.allocate(StatementCodec.MAX_VARINT_SIZE).flip();
+		/** The number of statements decoded and not granted back yet */
+		private long ungranted;
+
+		private boolean headerDecoded = false;
+		/** The number of statements of the current frame not decoded yet */
+		private long remaining = 0;
+		private boolean endOfStream = false;
+		private boolean ended = false;
+
+		private Connection(SocketChannel channel, StatementCodec codec) {
+
+			this.channel = channel;
+			this.codec = codec;
+		}
+
+		/**
+		 * Decode the statements received
+		 *
+		 * @return the number of statements added to the collector, at most <code>max</code>
+		 */
+		private int decode(List<Statement> collector, int max) throws IOException {
+
+			int count = 0;
+
+			while (count < max && !ended) {
+
+				if (!headerDecoded) {
+					if (!(headerDecoded = codec.decodeHeader(buffer))) {
+						break;
+					}
+				} else if (remaining == 0) {
+
+					int start = buffer.position();
+					long frameCount = StatementCodec.getVarint(buffer);
+
+					if (frameCount == -1) {
+						buffer.position(start);
+						break;
+					} else if (frameCount == 0) {
+						end();
+					}
+					remaining = frameCount;
+				} else {
+					Statement statement = codec.decode(buffer);
+
+					if (statement == null) {
+						break;
+					}
+					collector.add(statement);
+					remaining--;
+					ungranted++;
+					count++;
+				}
+			}
+
+			if (count == 0 && endOfStream && !ended) {
+				throw new IOException("connection closed by " + channel.getRemoteAddress() + " before the end of the flow");
+			}
+			return count;
+		}
+
+		/**
+		 * Reads more bytes from the channel, growing the buffer if a record does not fit in it
+		 */
+		private void fill() throws IOException {
+
+			if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+
+				ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+				larger.put(buffer);
+				buffer = larger;
+			} else {
+				buffer.compact();
+			}
+
+			if (channel.read(buffer) == -1) {
+				endOfStream = true;
+				key.cancel();
+			}
+			buffer.flip();
+		}
+
+		/**
+		 * Send the credits of the statements pumped, waiting for the socket to be writable when it is not
+		 */
+		private void grant() throws IOException {
+
+			if (ended || endOfStream) {
+				return;
+			}
+			if (!credits.hasRemaining() && ungranted > 0) {
+
+				int granted = (int) Math.min(ungranted, Integer.MAX_VALUE);
+
+				credits.clear();
+				StatementCodec.putVarint(credits, granted);
+				credits.flip();
+				ungranted -= granted;
+			}
+			if (credits.hasRemaining()) {
+				channel.write(credits);
+			}
+			key.interestOps(SelectionKey.OP_READ | ((credits.hasRemaining() || ungranted > 0) ? SelectionKey.OP_WRITE : 0));
+		}
+
+		/**
+		 * The sink has sent the end of its flow: closing the connection lets it terminate
+		 */
+		private void end() throws IOException {
+
+			ended = true;
+			endedCount++;
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package org.nextprot.pipeline.statement.source;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * A pump of the statements of a binary statement stream (see StatementCodec)
+ */
+public class BinaryStatementPump implements Pump<Statement> {
+
+	public static final int BUFFER_SIZE = 1 << 16;
+
+	private final ReadableByteChannel channel;
+	private final StatementCodec codec;
+	private final int capacity;
+
+	/** The bytes read from the channel and not decoded yet (in read mode) */
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private boolean headerDecoded = false;
+	private boolean endOfStream = false;
+
+	public BinaryStatementPump(Path file, StatementCodec codec, int capacity) throws IOException {
+
+		this(FileChannel.open(file, StandardOpenOption.READ), codec, capacity);
+	}
+
+	public BinaryStatementPump(InputStream in, StatementCodec codec, int capacity) {
+
+		this(Channels.newChannel(in), codec, capacity);
+	}
+
+	public BinaryStatementPump(ReadableByteChannel channel, StatementCodec codec, int capacity) {
+
+		this.channel = channel;
+		this.codec = codec;
+		this.capacity = capacity;
+		buffer.flip();
+	}
+
+	@Override
+	public Statement pump() throws IOException {
+
+		return next();
+	}
+
+	@Override
+	public int capacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public int pump(List<Statement> collector) throws IOException {
+
+		int count = 0;
+		Statement statement;
+
+		while (count < capacity && (statement = next()) != null) {
+			collector.add(statement);
+			count++;
+		}
+		return (count == 0) ? -1 : count;
+	}
+
+	@Override
+	public boolean isEmpty() throws IOException {
+
+		readHeader();
+
+		while (!buffer.hasRemaining() && !endOfStream) {
+			fill();
+		}
+		return !buffer.hasRemaining();
+	}
+
+	/**
+	 * @return the next statement or null at the end of the stream
+	 */
+	private Statement next() throws IOException {
+
+		readHeader();
+
+		Statement statement;
+
+		while ((statement = codec.decode(buffer)) == null) {
+
+			if (endOfStream) {
+				if (buffer.hasRemaining()) {
+					throw new IOException("truncated binary statement stream");
+				}
+				return null;
+			}
+			fill();
+		}
+		return statement;
+	}
+
+	private void readHeader() throws IOException {
+
+		while (!headerDecoded) {
+
+			headerDecoded = codec.decodeHeader(buffer);
+
+			if (!headerDecoded) {
+				if (endOfStream) {
+					throw new IOException("missing binary statement stream header");
+				}
+				fill();
+			}
+		}
+	}
+
+	/**
+	 * Reads more bytes from the channel, growing the buffer if a record does not fit in it
+	 */
+	private void fill() throws IOException {
+
+		if (buffer.position() == 0 && buffer.limit() == buffer.capacity()) {
+
+			ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+			larger.put(buffer);
+			buffer = larger;
+		} else {
+			buffer.compact();
+		}
+
+		if (channel.read(buffer) == -1) {
+			endOfStream = true;
+		}
+		buffer.flip();
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		channel.close();
+	}
+}
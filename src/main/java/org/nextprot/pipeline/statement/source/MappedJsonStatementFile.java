@@ -0,0 +1,400 @@
+package org.nextprot.pipeline.statement.source;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.reader.BufferedJsonStatementReader;
+import org.nextprot.commons.statements.specs.StatementSpecifications;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.elements.Source;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A local json statements file (a json array of statement objects) memory-mapped in read-only mode.
+ *
+ * The file can be cut into byte ranges of whole statement objects that are parsed independently,
+ * each range being decoded straight from the mapped pages without going through a FileInputStream.
+ *
+ * Finding the object boundaries only scans the bytes for brackets and quotes, which is much cheaper than
+ * parsing them: brackets inside json strings are skipped. The whole file is still read once to split it,
+ * but its chunks are scanned in parallel: as a chunk may start inside a string, it is scanned from both states
+ * (inside or outside a string) and the states are chained in the file order afterwards, the end state of a chunk
+ * telling which scan of the next one is right.
+ */
+public class MappedJsonStatementFile implements Closeable {
+
+	/** The maximum size of a mapped window (a MappedByteBuffer is indexed by an int) */
+	static final int MAX_WINDOW_SIZE = 1 << 30;
+
+	/** The number of bytes copied from a mapped chunk at once to be scanned */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	private static final byte[] ARRAY_START = "[".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ARRAY_END = "]".getBytes(StandardCharsets.US_ASCII);
+
+	private final FileChannel channel;
+	private final long size;
+	private final StatementSpecifications specifications;
+	private final int maxWindowSize;
+
+	public MappedJsonStatementFile(Path path) throws IOException {
+
+		this(path, null);
+	}
+
+	/**
+	 * @param specifications the specifications of the statements or null for the default ones
+	 */
+	public MappedJsonStatementFile(Path path, StatementSpecifications specifications) throws IOException {
+
+		this(path, specifications, MAX_WINDOW_SIZE);
+	}
+
+	MappedJsonStatementFile(Path path, StatementSpecifications specifications, int maxWindowSize) throws IOException {
+
+		this.channel = FileChannel.open(path, StandardOpenOption.READ);
+		this.size = channel.size();
+		this.specifications = specifications;
+		this.maxWindowSize = maxWindowSize;
+	}
+
+	public long size() {
+
+		return size;
+	}
+
+	/**
+	 * Cut the file in about <code>count</code> ranges of similar sizes, each starting and ending at a statement boundary.
+	 * There are less ranges than requested if the file contains less statements,
+	 * more if a range would not fit in a mapped window.
+	 *
+	 * @return the ranges in the file order
+	 */
+	public List<Range> split(int count) throws IOException {
+
+		if (count <= 0) {
+			throw new IllegalArgumentException("Range count <= 0");
+		}
+		// a range starts at the first object of a chunk: leave room in a window for the object crossing the next chunk
+		long chunkSize = Math.max(1, Math.min(size / count, maxWindowSize / 2));
+		int chunkCount = (int) ((size + chunkSize - 1) / chunkSize);
+
+		List<ChunkScan> scans;
+
+		try {
+			scans = IntStream.range(0, chunkCount).parallel()
+					.mapToObj(i -> scanChunk(i * chunkSize, (int) Math.min(chunkSize, size - i * chunkSize)))
+					.collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		// the statement objects are at depth 1, in the json array
+		List<Long> starts = new ArrayList<>();
+		ScanState state = null;
+		int depth = 0;
+
+		for (ChunkScan scan : scans) {
+
+			state = (state == null) ? scan.outOfString : scan.following(state);
+
+			Long start = state.firstObjectStarts.get(1 - depth);
+
+			if (start != null) {
+				starts.add(start);
+			}
+			depth += state.depthDelta;
+		}
+
+		List<Range> ranges = new ArrayList<>(starts.size());
+
+		for (int i = 0; i < starts.size(); i++) {
+
+			long end = (i + 1 < starts.size()) ? endBefore(starts.get(i + 1), false) : endBefore(size, true);
+
+			ranges.add(new Range(starts.get(i), end));
+		}
+		return ranges;
+	}
+
+	private ChunkScan scanChunk(long position, int length) {
+
+		try {
+			ByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+			return new ChunkScan(chunk, position);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @param arrayEnd true to skip the bracket closing the json array
+	 * @return the position following the last object before the given position (skipping the blanks and the comma)
+	 */
+	private long endBefore(long position, boolean arrayEnd) throws IOException {
+
+		ByteBuffer b = ByteBuffer.allocate(1);
+
+		while (position > 0) {
+
+			b.clear();
+			channel.read(b, position - 1);
+
+			switch (b.get(0)) {
+				case ']':
+					if (!arrayEnd) {
+						return position;
+					}
+					arrayEnd = false;
+					break;
+				case ' ':
+				case '\t':
+				case '\r':
+				case '\n':
+				case ',':
+					break;
+				default:
+					return position;
+			}
+			position--;
+		}
+		return position;
+	}
+
+	/**
+	 * Split the file into pumps of statements (ie: to be pumped in parallel by a ParallelSource)
+	 */
+	public List<Pump<Statement>> split(int count, int capacity) throws IOException {
+
+		List<Pump<Statement>> pumps = new ArrayList<>();
+
+		for (Range range : split(count)) {
+			pumps.add(pump(range, capacity));
+		}
+		return pumps;
+	}
+
+	/**
+	 * @return a pump parsing the statements of the given range
+	 */
+	public Pump<Statement> pump(Range range, int capacity) throws IOException {
+
+		ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, range.getStart(), range.length());
+
+		InputStream in = new SequenceInputStream(Collections.enumeration(Arrays.asList(
+				new ByteArrayInputStream(ARRAY_START),
+				new ByteBufferInputStream(buffer),
+				new ByteArrayInputStream(ARRAY_END))));
+
+		Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+
+		return new Source.StatementPump((specifications != null) ?
+				new BufferedJsonStatementReader(reader, specifications, capacity) :
+				new BufferedJsonStatementReader(reader, capacity), capacity);
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		// the mapped buffers stay valid until they are garbage collected
+		channel.close();
+	}
+
+	/**
+	 * A range of bytes [start, end) containing whole statement objects separated by commas
+	 */
+	public static class Range {
+
+		private final long start;
+		private final long end;
+
+		Range(long start, long end) {
+
+			this.start = start;
+			this.end = end;
+		}
+
+		public long getStart() {
+
+			return start;
+		}
+
+		public long getEnd() {
+
+			return end;
+		}
+
+		public long length() {
+
+			return end - start;
+		}
+
+		@Override
+		public String toString() {
+
+			return "[" + start + ", " + end + ")";
+		}
+	}
+
+	/**
+	 * The scans of a chunk of the file from both string states
+	 */
+	private static class ChunkScan {
+
+		private final ByteBuffer chunk;
+		private final long position;
+		private final ScanState outOfString;
+		private final ScanState inString;
+
+		private ChunkScan(ByteBuffer chunk, long position) {
+
+			this.chunk = chunk;
+			this.position = position;
+			this.outOfString = new ScanState(chunk, position, false, false);
+			this.inString = new ScanState(chunk, position, true, false);
+		}
+
+		/**
+		 * @return the scan following the given state of the previous chunk
+		 */
+		private ScanState following(ScanState previous) {
+
+			if (!previous.inString) {
+				return outOfString;
+			} else if (!previous.escaped) {
+				return inString;
+			}
+			// the chunk starts with an escaped character (rare enough to be scanned again)
+			return new ScanState(chunk, position, true, true);
+		}
+	}
+
+	/**
+	 * The json state at the end of a chunk scanned from a given state: whether it ends in a string,
+	 * its depth relative to its start, and the first object starting at each relative depth
+	 */
+	private static class ScanState {
+
+		private boolean inString;
+		private boolean escaped;
+		private int depthDelta = 0;
+		private final Map<Integer, Long> firstObjectStarts = new HashMap<>();
+
+		private ScanState(ByteBuffer chunk, long position, boolean inString, boolean escaped) {
+
+			this.inString = inString;
+			this.escaped = escaped;
+
+			ByteBuffer bytes = chunk.duplicate();
+			byte[] block = new byte[Math.min(BLOCK_SIZE, bytes.remaining())];
+
+			while (bytes.hasRemaining()) {
+
+				int offset = bytes.position();
+				int length = Math.min(block.length, bytes.remaining());
+
+				bytes.get(block, 0, length);
+				scan(block, length, position + offset);
+			}
+		}
+
+		private void scan(byte[] block, int length, long blockPosition) {
+
+			for (int i = 0; i < length; i++) {
+
+				byte b = block[i];
+
+				if (inString) {
+					if (escaped) {
+						escaped = false;
+					} else if (b == '\\') {
+						escaped = true;
+					} else if (b == '"') {
+						inString = false;
+					}
+					continue;
+				}
+
+				switch (b) {
+					case '"':
+						inString = true;
+						break;
+					case '{':
+						if (!firstObjectStarts.containsKey(depthDelta)) {
+							firstObjectStarts.put(depthDelta, blockPosition + i);
+						}
+						depthDelta++;
+						break;
+					case '[':
+						depthDelta++;
+						break;
+					case '}':
+					case ']':
+						depthDelta--;
+						break;
+					default:
+						break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the bytes of a (mapped) buffer without copying them to the heap first
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+
+		private final ByteBuffer buffer;
+
+		private ByteBufferInputStream(ByteBuffer buffer) {
+
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+
+			return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int off, int len) {
+
+			if (len == 0) {
+				return 0;
+			} else if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(bytes, off, len);
+
+			return len;
+		}
+
+		@Override
+		public int available() {
+
+			return buffer.remaining();
+		}
+	}
+}
@@ -0,0 +1,205 @@
+package org.nextprot.pipeline.statement.source;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.StatementSpecifications;
+import org.nextprot.pipeline.statement.Pump;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pump of the statements of a local json file parsed in parallel.
+ *
+ * The file is memory-mapped and cut into ranges of whole statements (more ranges than threads so that
+ * fast threads take over the remaining ranges). Parsing threads start at the first pump and hand
+ * their batches over to the pumping thread through a bounded queue.
+ *
+ * Statements of a range keep their order but the ranges are interleaved.
+ */
+public class MappedJsonStatementPump implements Pump<Statement> {
+
+	/** Marks the end of a parsing thread in the queue */
+	private static final List<Statement> END_OF_RANGES = Collections.emptyList();
+	private static final int RANGES_PER_THREAD = 4;
+
+	private final MappedJsonStatementFile file;
+	private final int capacity;
+	private final int parallelism;
+
+	private List<Pump<Statement>> rangePumps;
+	private final AtomicInteger nextRangePump = new AtomicInteger(0);
+	private final BlockingQueue<List<Statement>> batches;
+	private ExecutorService executor;
+	private volatile IOException error;
+	private int endedThreadCount = 0;
+
+	/** The statements of the current batch not yet pumped */
+	private List<Statement> pending = Collections.emptyList();
+	private int pendingIndex = 0;
+
+	public MappedJsonStatementPump(Path path, int capacity, int parallelism) throws IOException {
+
+		this(new MappedJsonStatementFile(path), capacity, parallelism);
+	}
+
+	public MappedJsonStatementPump(Path path, StatementSpecifications specifications, int capacity, int parallelism) throws IOException {
+
+		this(new MappedJsonStatementFile(path, specifications), capacity, parallelism);
+	}
+
+	private MappedJsonStatementPump(MappedJsonStatementFile file, int capacity, int parallelism) {
+
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("Parallelism <= 0");
+		}
+		this.file = file;
+		this.capacity = capacity;
+		this.parallelism = parallelism;
+		this.batches = new ArrayBlockingQueue<>(2 * parallelism);
+	}
+
+	@Override
+	public Statement pump() throws IOException {
+
+		if (!fetchBatch()) {
+			return null;
+		}
+		return pending.get(pendingIndex++);
+	}
+
+	@Override
+	public int capacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public int pump(List<Statement> collector) throws IOException {
+
+		if (!fetchBatch()) {
+			return -1;
+		}
+		int count = pending.size() - pendingIndex;
+
+		collector.addAll((pendingIndex == 0) ? pending : pending.subList(pendingIndex, pending.size()));
+		pending = Collections.emptyList();
+		pendingIndex = 0;
+
+		return count;
+	}
+
+	@Override
+	public boolean isEmpty() throws IOException {
+
+		return !fetchBatch();
+	}
+
+	/**
+	 * Wait for the next batch if the current one has been pumped
+	 *
+	 * @return false if all the ranges have been pumped
+	 */
+	private boolean fetchBatch() throws IOException {
+
+		if (pendingIndex < pending.size()) {
+			return true;
+		}
+		if (executor == null) {
+			startParsing();
+		}
+
+		try {
+			while (endedThreadCount < parallelism) {
+
+				List<Statement> batch = batches.take();
+
+				if (batch == END_OF_RANGES) {
+					endedThreadCount++;
+				} else if (!batch.isEmpty()) {
+					pending = batch;
+					pendingIndex = 0;
+					return true;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+
+		if (error != null) {
+			throw error;
+		}
+		return false;
+	}
+
+	private void startParsing() throws IOException {
+
+		rangePumps = file.split(parallelism * RANGES_PER_THREAD, capacity);
+
+		AtomicInteger threadCount = new AtomicInteger(0);
+
+		executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+			Thread thread = new Thread(runnable, "MappedJsonStatementPump-" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		for (int i = 0; i < parallelism; i++) {
+			executor.execute(this::parseRanges);
+		}
+	}
+
+	/**
+	 * Parse ranges until there is none left (or another thread has failed)
+	 */
+	private void parseRanges() {
+
+		try {
+			int index;
+
+			while (error == null && (index = nextRangePump.getAndIncrement()) < rangePumps.size()) {
+
+				try (Pump<Statement> pump = rangePumps.get(index)) {
+
+					List<Statement> batch = new ArrayList<>(capacity);
+
+					while (pump.pump(batch) != -1) {
+						batches.put(batch);
+						batch = new ArrayList<>(capacity);
+					}
+				}
+			}
+		} catch (IOException e) {
+			error = e;
+		} catch (RuntimeException e) {
+			error = new IOException(e);
+		} catch (InterruptedException e) {
+			// closed
+			return;
+		}
+
+		try {
+			batches.put(END_OF_RANGES);
+		} catch (InterruptedException e) {
+			// closed
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+		file.close();
+	}
+}
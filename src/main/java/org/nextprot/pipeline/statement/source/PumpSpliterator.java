@@ -0,0 +1,232 @@
+package org.nextprot.pipeline.statement.source;
+
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.Pump;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.nextprot.pipeline.statement.elements.Source;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A spliterator of the statements of a sequence of pumps (ie: the splits of a SplittableStatementSource),
+ * to read a release with a (parallel) Stream instead of a Pipeline.
+ *
+ * Statements are pumped a batch at a time with <code>pump(List)</code>. A split hands over the first half
+ * of the pumps not read yet, then, with a single pump left, a prefix array of batches pumped in advance
+ * (a batch more at each split), so that the fork-join pool reads the last pump while the arrays are processed.
+ * The number of statements of a pump is unknown: the spliterator is ORDERED and NONNULL but not SIZED,
+ * only the arrays split from a pump are SIZED.
+ *
+ * Checkpoint barriers pumped with the statements (ie: by a pump reading a pipe) are dropped: a stream has no sink
+ * to acknowledge them.
+ *
+ * Each pump is closed once exhausted, and all the pumps are closed with the streams of {@link #stream(List)}.
+ * Pump I/O errors are thrown as UncheckedIOException.
+ */
+public class PumpSpliterator implements Spliterator<Statement> {
+
+	/** The maximum number of statements of an array split from a pump */
+	public static final int MAX_BATCH_SIZE = 1 << 16;
+
+	private static final int CHARACTERISTICS = ORDERED | NONNULL;
+
+	private final List<? extends Pump<Statement>> pumps;
+	/** The range of the pumps not opened yet */
+	private int from;
+	private int to;
+
+	/** The pump being read and its last batch */
+	private Pump<Statement> current;
+	private final List<Statement> batch = new ArrayList<>();
+	private int next = 0;
+
+	/** The number of statements of the next array split from the current pump */
+	private int splitSize = 0;
+
+	public PumpSpliterator(Pump<Statement> pump) {
+
+		this(Collections.singletonList(pump));
+	}
+
+	public PumpSpliterator(List<? extends Pump<Statement>> pumps) {
+
+		this(pumps, 0, pumps.size());
+	}
+
+	private PumpSpliterator(List<? extends Pump<Statement>> pumps, int from, int to) {
+
+		this.pumps = pumps;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @return a sequential stream of the statements of the pump (see Stream.parallel())
+	 */
+	public static Stream<Statement> stream(Pump<Statement> pump) {
+
+		return stream(Collections.singletonList(pump));
+	}
+
+	/**
+	 * @return a sequential stream of the statements of the pumps in turn, closing the pumps when closed
+	 */
+	public static Stream<Statement> stream(List<? extends Pump<Statement>> pumps) {
+
+		return StreamSupport.stream(new PumpSpliterator(pumps), false)
+				.onClose(() -> closeAll(pumps));
+	}
+
+	/**
+	 * @return a sequential stream of the statements of all the splits of the source
+	 */
+	public static Stream<Statement> stream(SplittableStatementSource source, int capacity) throws IOException {
+
+		List<Source.StatementPump> pumps = source.split(capacity)
+				.map(split -> new Source.StatementPump(split, capacity))
+				.collect(Collectors.toList());
+
+		return stream(pumps);
+	}
+
+	@Override
+	public boolean tryAdvance(Consumer<? super Statement> action) {
+
+		if (next == batch.size() && !pumpBatch()) {
+			return false;
+		}
+		action.accept(batch.get(next++));
+		return true;
+	}
+
+	@Override
+	public void forEachRemaining(Consumer<? super Statement> action) {
+
+		do {
+			while (next < batch.size()) {
+				action.accept(batch.get(next++));
+			}
+		} while (pumpBatch());
+	}
+
+	@Override
+	public Spliterator<Statement> trySplit() {
+
+		// the current pump and the first half of the others
+		if (to - from > 1 || (current != null && to - from == 1)) {
+
+			int mid = (current != null) ? from + (to - from) / 2 : from + (to - from + 1) / 2;
+			PumpSpliterator prefix = new PumpSpliterator(pumps, from, mid);
+
+			prefix.current = current;
+			prefix.batch.addAll(batch.subList(next, batch.size()));
+
+			current = null;
+			batch.clear();
+			next = 0;
+			from = mid;
+
+			return prefix;
+		}
+		return splitBatches();
+	}
+
+	/**
+	 * @return the array of the next statements of the single pump left or null if it is exhausted
+	 */
+	private Spliterator<Statement> splitBatches() {
+
+		if (next == batch.size() && !pumpBatch()) {
+			return null;
+		}
+
+		splitSize = Math.min(splitSize + Math.max(current.capacity(), 1), MAX_BATCH_SIZE);
+
+		List<Statement> prefix = new ArrayList<>(splitSize);
+
+		do {
+			int n = Math.min(splitSize - prefix.size(), batch.size() - next);
+
+			prefix.addAll(batch.subList(next, next + n));
+			next += n;
+		} while (prefix.size() < splitSize && (next < batch.size() || pumpBatch()));
+
+		return Spliterators.spliterator(prefix.toArray(), 0, prefix.size(), CHARACTERISTICS | IMMUTABLE);
+	}
+
+	/**
+	 * Pump the next batch of the current pump or of the next pump, closing the exhausted pumps
+	 *
+	 * @return false if all the pumps are exhausted
+	 */
+	private boolean pumpBatch() {
+
+		batch.clear();
+		next = 0;
+
+		try {
+			while (true) {
+
+				if (current == null) {
+					if (from == to) {
+						return false;
+					}
+					current = pumps.get(from++);
+				}
+				if (current.pump(batch) == -1) {
+					current.close();
+					current = null;
+					continue;
+				}
+				batch.removeIf(CheckpointBarrier.class::isInstance);
+
+				if (!batch.isEmpty()) {
+					return true;
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the number of statements buffered, or Long.MAX_VALUE while a pump is left to read
+	 */
+	@Override
+	public long estimateSize() {
+
+		return (current == null && from == to) ? batch.size() - next : Long.MAX_VALUE;
+	}
+
+	@Override
+	public int characteristics() {
+
+		return CHARACTERISTICS;
+	}
+
+	private static void closeAll(List<? extends Pump<Statement>> pumps) {
+
+		IOException error = null;
+
+		for (Pump<Statement> pump : pumps) {
+			try {
+				pump.close();
+			} catch (IOException e) {
+				error = e;
+			}
+		}
+		if (error != null) {
+			throw new UncheckedIOException(error);
+		}
+	}
+}
@@ -62,17 +62,24 @@ public class SimpleStatementSource implements BufferableStatementReader {
 	@Override
 	public List<Statement> readStatements() throws IOException {
 
+		lazyReaderCreation();
+
 		return reader.readStatements();
 	}
 
 	@Override
 	public int readStatements(List<Statement> buffer) throws IOException {
 
+		lazyReaderCreation();
+
 		return reader.readStatements(buffer);
 	}
 
 	@Override
 	public void close() throws IOException {
-		reader.close();
+
+		if (reader != null) {
+			reader.close();
+		}
 	}
 }
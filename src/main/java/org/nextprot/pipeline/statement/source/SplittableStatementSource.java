@@ -9,5 +9,14 @@ import java.util.stream.Stream;
 public interface SplittableStatementSource {
 
 	Specifications specifications();
-	Stream<SimpleStatementSource> split() throws IOException;
+
+	default Stream<SimpleStatementSource> split() throws IOException {
+
+		return split(1);
+	}
+
+	/**
+	 * @param bufferSize the number of statements each split reads at once
+	 */
+	Stream<SimpleStatementSource> split(int bufferSize) throws IOException;
 }
@@ -89,10 +89,10 @@ public class StatementSourceServer implements SplittableStatementSource {
 	}
 
 	@Override
-	public Stream<SimpleStatementSource> split() throws IOException {
+	public Stream<SimpleStatementSource> split(int bufferSize) throws IOException {
 
 		return parseJsonStatementsUrls().stream()
-				.map(url -> new SimpleStatementSource(specifications, url));
+				.map(url -> new SimpleStatementSource(specifications, url, bufferSize));
 	}
 
 	private String homeStatementsURL() {
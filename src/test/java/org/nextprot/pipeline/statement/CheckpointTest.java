@@ -0,0 +1,415 @@
+package org.nextprot.pipeline.statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.checkpoint.Checkpoint;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointCoordinator;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointStore;
+import org.nextprot.pipeline.statement.elements.BaseFilter;
+import org.nextprot.pipeline.statement.elements.NxFlatTableSink;
+import org.nextprot.pipeline.statement.elements.Sink;
+import org.nextprot.pipeline.statement.elements.TsvBulkLoadSink;
+import org.nextprot.pipeline.statement.muxdemux.DuplicableElement;
+import org.nextprot.pipeline.statement.muxdemux.LeastLoadedDispatchPolicy;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class CheckpointTest {
+
+	private Path directory;
+	private CheckpointStore store;
+
+	@Before
+	public void createStore() throws IOException {
+
+		directory = Files.createTempDirectory("checkpoint");
+		store = new CheckpointStore(directory.resolve("release.checkpoint"));
+	}
+
+	@After
+	public void deleteStore() throws IOException {
+
+		store.clear();
+		Files.delete(directory);
+	}
+
+	@Test
+	public void commitCheckpointsThroughDemux() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+		// a barrier after each batch
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(store, 0, TimeUnit.MILLISECONDS);
+
+		Pipeline pipeline = new PipelineBuilder()
+				.checkpointing(checkpoints)
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.demuxFilter(c -> new NarcolepticFilter(c), 3)
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, counter.get());
+
+		Checkpoint committed = checkpoints.getCommittedCheckpoint();
+
+		Assert.assertNotNull(committed);
+		Assert.assertEquals(101, committed.getId());
+		Assert.assertTrue(committed.isDone("0"));
+		// the run is complete: the next one starts from scratch
+		Assert.assertNull(store.load());
+	}
+
+	@Test
+	public void commitCheckpointsThroughWorkStealingDemux() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(store, 0, TimeUnit.MILLISECONDS);
+		LeastLoadedDispatchPolicy policy = new LeastLoadedDispatchPolicy();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.checkpointing(checkpoints)
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.demuxFilter(c -> new NarcolepticFilter(c), 3, policy)
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, counter.get());
+		Assert.assertEquals(101, checkpoints.getCommittedCheckpoint().getId());
+		Assert.assertTrue(checkpoints.getCommittedCheckpoint().isDone("0"));
+		Assert.assertNull(store.load());
+	}
+
+	@Test
+	public void restartFromScratchAfterACompleteRun() throws IOException, InterruptedException {
+
+		for (int run = 0; run < 2; run++) {
+
+			AtomicInteger counter = new AtomicInteger();
+			CheckpointCoordinator checkpoints = new CheckpointCoordinator(store, 0, TimeUnit.MILLISECONDS);
+
+			Assert.assertNull(checkpoints.getRestoredCheckpoint());
+
+			Pipeline pipeline = new PipelineBuilder()
+					.checkpointing(checkpoints)
+					.start()
+					.source(new GeneratedStatementPump(1000, 100))
+					.filter(c -> new NarcolepticFilter(c))
+					.sink(c -> new CountingSink(counter))
+					.build();
+
+			pipeline.open();
+			pipeline.waitForThePipesToComplete();
+
+			Assert.assertEquals(1000, counter.get());
+		}
+	}
+
+	@Test
+	public void commitCheckpointsThroughMuxToACustomSink() throws IOException, InterruptedException {
+
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(store, 0, TimeUnit.MILLISECONDS);
+		RecordingSink sink = new RecordingSink();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.checkpointing(checkpoints)
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.demuxFilter(c -> new NarcolepticFilter(c), 3)
+				.mux()
+				.sink(c -> sink)
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		// the barriers never reach the sink as statements
+		Assert.assertEquals(10000, sink.getStatements().size());
+		Assert.assertTrue(sink.getStatements().stream().noneMatch(statement -> statement instanceof CheckpointBarrier));
+		// each barrier arrives once per chain
+		Assert.assertEquals(3 * 101, sink.getCheckpointCount());
+		Assert.assertEquals(101, checkpoints.getCommittedCheckpoint().getId());
+		Assert.assertTrue(checkpoints.getCommittedCheckpoint().isDone("0"));
+	}
+
+	@Test
+	public void resumeFromCommittedOffset() throws IOException, InterruptedException {
+
+		store.save(new Checkpoint(5, singletonOffset("0", 6050)));
+
+		AtomicInteger counter = new AtomicInteger();
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(store, 1, TimeUnit.HOURS);
+
+		Assert.assertEquals(5, checkpoints.getRestoredCheckpoint().getId());
+
+		Pipeline pipeline = new PipelineBuilder()
+				.checkpointing(checkpoints)
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.filter(c -> new NarcolepticFilter(c))
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(3950, counter.get());
+		Assert.assertEquals(6, checkpoints.getCommittedCheckpoint().getId());
+		Assert.assertTrue(checkpoints.getCommittedCheckpoint().isDone("0"));
+		Assert.assertNull(store.load());
+	}
+
+	@Test
+	public void resumeParallelSourceFromCommittedSplits() throws IOException, InterruptedException {
+
+		Map<String, Long> offsets = new HashMap<>();
+		offsets.put("0", Checkpoint.DONE);
+		offsets.put("1", 500L);
+		store.save(new Checkpoint(1, offsets));
+
+		List<GeneratedStatementPump> pumps = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			pumps.add(new GeneratedStatementPump(1000, 100));
+		}
+
+		AtomicInteger counter = new AtomicInteger();
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(store, 0, TimeUnit.MILLISECONDS);
+
+		Pipeline pipeline = new PipelineBuilder()
+				.checkpointing(checkpoints)
+				.start()
+				.source(pumps, 2, 100)
+				.filter(c -> new NarcolepticFilter(c))
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(2500, counter.get());
+
+		Checkpoint committed = checkpoints.getCommittedCheckpoint();
+
+		Assert.assertNull(store.load());
+
+		for (int i = 0; i < 4; i++) {
+			Assert.assertTrue(committed.isDone(String.valueOf(i)));
+		}
+	}
+
+	@Test
+	public void resumeKilledBulkLoadWithoutDuplicatedRows() throws IOException, InterruptedException {
+
+		Path tables = Files.createTempDirectory("bulk-load");
+
+		try {
+			// a barrier after each batch, the run killed in the middle of the 61st batch
+			CheckpointCoordinator checkpoints = new CheckpointCoordinator(store, 0, TimeUnit.MILLISECONDS);
+
+			runBulkLoad(checkpoints, tables, c -> new KillingFilter(c, 6050));
+
+			Checkpoint committed = checkpoints.getCommittedCheckpoint();
+
+			Assert.assertNotNull(committed);
+			Assert.assertFalse(committed.isDone("0"));
+			waitForTheSave(committed);
+			// the rows after the last barrier are not committed
+			Assert.assertTrue(listFiles(tables).stream().anyMatch(file -> file.getFileName().toString().endsWith(".inprogress")));
+
+			checkpoints = new CheckpointCoordinator(store, 0, TimeUnit.MILLISECONDS);
+
+			Assert.assertEquals(committed.getId(), checkpoints.getRestoredCheckpoint().getId());
+
+			runBulkLoad(checkpoints, tables, c -> new NarcolepticFilter(c));
+
+			List<Path> files = listFiles(tables);
+
+			Assert.assertTrue(files.stream().noneMatch(file -> file.getFileName().toString().endsWith(".inprogress")));
+			Assert.assertEquals(10000, countLines(files));
+		} finally {
+			try (Stream<Path> paths = Files.walk(tables)) {
+				for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+					Files.delete(path);
+				}
+			}
+		}
+	}
+
+	private void runBulkLoad(CheckpointCoordinator checkpoints, Path tables, Function<Integer, DuplicableElement> filter) throws IOException, InterruptedException {
+
+		Pipeline pipeline = new PipelineBuilder()
+				.checkpointing(checkpoints)
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.filter(filter)
+				.sink(c -> new TsvBulkLoadSink(NxFlatTableSink.Table.raw_statements, tables,
+						Arrays.asList(CoreStatementField.STATEMENT_ID, CoreStatementField.ENTRY_ACCESSION), false, TsvBulkLoadSink.UNLIMITED_FILE_SIZE))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+	}
+
+	/**
+	 * The checkpoints are saved in the background: wait for the last committed one to be in the store
+	 */
+	private void waitForTheSave(Checkpoint committed) throws IOException, InterruptedException {
+
+		long deadline = System.currentTimeMillis() + 10000;
+
+		while (store.load() == null || store.load().getId() != committed.getId()) {
+
+			Assert.assertTrue("checkpoint " + committed.getId() + " not saved", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private static List<Path> listFiles(Path directory) throws IOException {
+
+		try (Stream<Path> paths = Files.list(directory)) {
+			return paths.collect(Collectors.toList());
+		}
+	}
+
+	private static long countLines(List<Path> files) throws IOException {
+
+		long count = 0;
+
+		for (Path file : files) {
+			count += Files.readAllLines(file).size();
+		}
+		return count;
+	}
+
+	/**
+	 * A filter failing after a number of statements, as a killed run would
+	 */
+	private static class KillingFilter extends BaseFilter {
+
+		private final int killAfter;
+		private int count = 0;
+
+		private KillingFilter(int capacity, int killAfter) {
+
+			super(capacity);
+			this.killAfter = killAfter;
+		}
+
+		@Override
+		public KillingFilter duplicate(int newCapacity) {
+
+			return new KillingFilter(newCapacity, killAfter);
+		}
+
+		@Override
+		public String getThreadName() {
+
+			return getClass().getSimpleName();
+		}
+
+		@Override
+		public boolean filter(SinkPipePort in, SourcePipePort out) throws IOException {
+
+			Statement statement = in.read();
+
+			if (statement != END_OF_FLOW_TOKEN && ++count > killAfter) {
+				throw new IOException("killed after " + killAfter + " statements");
+			}
+			out.write(statement);
+
+			return statement == END_OF_FLOW_TOKEN;
+		}
+	}
+
+	/**
+	 * A sink reading its pipe in batches, as a custom sink would
+	 */
+	private static class RecordingSink extends Sink {
+
+		private final List<Statement> statements = new ArrayList<>();
+		private int checkpointCount = 0;
+
+		private RecordingSink() {
+
+			super(100);
+		}
+
+		@Override
+		public RecordingSink duplicate(int newCapacity) {
+
+			return new RecordingSink();
+		}
+
+		@Override
+		public String getThreadName() {
+
+			return getClass().getSimpleName();
+		}
+
+		@Override
+		protected void handleFlow() throws IOException {
+
+			Statement[] buffer = new Statement[getSinkPipePort().capacity()];
+			int n;
+
+			read:
+			while ((n = getSinkPipePort().read(buffer, 0, buffer.length)) != -1) {
+				for (int i = 0; i < n; i++) {
+					if (buffer[i] == END_OF_FLOW_TOKEN) {
+						break read;
+					}
+					statements.add(buffer[i]);
+				}
+			}
+		}
+
+		@Override
+		protected void checkpoint() {
+
+			checkpointCount++;
+		}
+
+		private List<Statement> getStatements() {
+
+			return statements;
+		}
+
+		private int getCheckpointCount() {
+
+			return checkpointCount;
+		}
+	}
+
+	private static Map<String, Long> singletonOffset(String split, long offset) {
+
+		Map<String, Long> offsets = new HashMap<>();
+		offsets.put(split, offset);
+		return offsets;
+	}
+}
@@ -0,0 +1,45 @@
+package org.nextprot.pipeline.statement;
+
+import org.nextprot.pipeline.statement.elements.Sink;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This sink counts the statements it receives, duplicates share the same counter
+ */
+public class CountingSink extends Sink {
+
+	private static int COUNT = 0;
+
+	private final AtomicInteger counter;
+	private final int id;
+
+	public CountingSink(AtomicInteger counter) {
+
+		super(1);
+		this.counter = counter;
+
+		id = ++COUNT;
+	}
+
+	@Override
+	public CountingSink duplicate(int newCapacity) {
+
+		return new CountingSink(counter);
+	}
+
+	@Override
+	public String getThreadName() {
+
+		return getClass().getSimpleName()+"-"+id;
+	}
+
+	@Override
+	protected void handleFlow() throws IOException {
+
+		while (getSinkPipePort().read() != END_OF_FLOW_TOKEN) {
+			counter.incrementAndGet();
+		}
+	}
+}
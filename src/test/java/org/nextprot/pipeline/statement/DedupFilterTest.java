@@ -0,0 +1,139 @@
+package org.nextprot.pipeline.statement;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.elements.DedupFilter;
+import org.nextprot.pipeline.statement.muxdemux.KeyPartitionedDispatchPolicy;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class DedupFilterTest {
+
+	private static final int DISTINCT = 1000;
+	private static final int REPEATS = 10;
+	private static final int KEYLESS = 100;
+
+	@Test
+	public void dropRepeatedStatements() throws IOException, InterruptedException {
+
+		RepeatingStatementPump pump = new RepeatingStatementPump();
+
+		Assert.assertEquals(DISTINCT, runPipeline(new PipelineBuilder()
+				.start()
+				.source(pump)
+				.filter(c -> new DedupFilter(c, pump.keys(), DISTINCT, false))));
+	}
+
+	@Test
+	public void dropRepeatedStatementsInKeyPartitionedBranches() throws IOException, InterruptedException {
+
+		RepeatingStatementPump pump = new RepeatingStatementPump();
+
+		Assert.assertEquals(DISTINCT, runPipeline(new PipelineBuilder()
+				.start()
+				.source(pump)
+				.demuxFilter(c -> new DedupFilter(c, pump.keys(), DISTINCT, true), 4, new KeyPartitionedDispatchPolicy(pump.keys()))
+				.mux()));
+	}
+
+	@Test
+	public void dropRepeatedStatementsInRoundRobinBranches() throws IOException, InterruptedException {
+
+		RepeatingStatementPump pump = new RepeatingStatementPump();
+
+		Assert.assertEquals(DISTINCT, runPipeline(new PipelineBuilder()
+				.start()
+				.source(pump)
+				.demuxFilter(c -> new DedupFilter(c, pump.keys(), DISTINCT, false), 4)
+				.mux()));
+	}
+
+	@Test
+	public void passKeylessStatementsThrough() throws IOException, InterruptedException {
+
+		RepeatingStatementPump pump = new RepeatingStatementPump(KEYLESS);
+
+		Assert.assertEquals(DISTINCT + KEYLESS * REPEATS, runPipeline(new PipelineBuilder()
+				.start()
+				.source(pump)
+				.filter(c -> new DedupFilter(c, pump.keys(), DISTINCT, false))));
+	}
+
+	@Test
+	public void passKeylessStatementsThroughKeyPartitionedBranches() throws IOException, InterruptedException {
+
+		RepeatingStatementPump pump = new RepeatingStatementPump(KEYLESS);
+
+		Assert.assertEquals(DISTINCT + KEYLESS * REPEATS, runPipeline(new PipelineBuilder()
+				.start()
+				.source(pump)
+				.demuxFilter(c -> new DedupFilter(c, pump.keys(), DISTINCT, true), 4, new KeyPartitionedDispatchPolicy(pump.keys()))
+				.mux()));
+	}
+
+	private static int runPipeline(Pipeline.FilterStep step) throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+
+		Pipeline pipeline = step
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		return counter.get();
+	}
+
+	/**
+	 * Pumps the same distinct statements several times (the keyless ones have no key)
+	 */
+	private static class RepeatingStatementPump extends GeneratedStatementPump {
+
+		private final Statement[] statements;
+		private final Map<Statement, String> keys = new IdentityHashMap<>();
+		private int pumped = 0;
+
+		private RepeatingStatementPump() {
+
+			this(0);
+		}
+
+		private RepeatingStatementPump(int keylessCount) {
+
+			super((DISTINCT + keylessCount) * REPEATS, 100);
+
+			statements = new Statement[DISTINCT + keylessCount];
+
+			for (int i = 0; i < statements.length; i++) {
+				statements[i] = new Statement();
+				if (i < DISTINCT) {
+					keys.put(statements[i], "NX_" + i);
+				}
+			}
+		}
+
+		private Function<Statement, String> keys() {
+
+			return keys::get;
+		}
+
+		@Override
+		public int pump(List<Statement> collector) {
+
+			int count = super.pump(collector);
+
+			// replace the generated statements with the repeated ones
+			for (int i = collector.size() - Math.max(count, 0); i < collector.size(); i++) {
+				collector.set(i, statements[pumped++ % statements.length]);
+			}
+			return count;
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package org.nextprot.pipeline.statement;
+
+import org.nextprot.commons.statements.Statement;
+
+import java.util.List;
+
+/**
+ * This pump generates in-memory statements
+ */
+public class GeneratedStatementPump implements Pump<Statement> {
+
+	private final int capacity;
+	private int remaining;
+
+	public GeneratedStatementPump(int statementCount, int capacity) {
+
+		this.remaining = statementCount;
+		this.capacity = capacity;
+	}
+
+	@Override
+	public Statement pump() {
+
+		if (remaining == 0) {
+			return null;
+		}
+		remaining--;
+		return new Statement();
+	}
+
+	@Override
+	public int capacity() {
+
+		return capacity;
+	}
+
+	@Override
+	public int pump(List<Statement> collector) {
+
+		if (remaining == 0) {
+			return -1;
+		}
+
+		int count = Math.min(capacity, remaining);
+		for (int i = 0; i < count; i++) {
+			collector.add(new Statement());
+		}
+		remaining -= count;
+
+		return count;
+	}
+
+	@Override
+	public boolean isEmpty() {
+
+		return remaining == 0;
+	}
+
+	@Override
+	public void close() { }
+}
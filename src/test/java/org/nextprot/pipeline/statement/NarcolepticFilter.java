@@ -51,6 +51,15 @@ public class NarcolepticFilter extends BaseFilter {
 
 		int numOfStatements = in.read(buffer, 0, in.capacity());
 
+		// the END_OF_FLOW_TOKEN came first in this batch
+		if (numOfStatements == -1) {
+
+			out.write(END_OF_FLOW_TOKEN);
+			return true;
+		}
+
+		boolean debug = getLogger().isDebugEnabled();
+
 		for (int i=0 ; i<numOfStatements ; i++) {
 
 			out.write(buffer[i]);
@@ -68,7 +77,9 @@ public class NarcolepticFilter extends BaseFilter {
 					}
 				}
 
-				printlnTextInLog("filter statement "+ buffer[i].getStatementId());
+				if (debug) {
+					getLogger().debug("filter statement "+ buffer[i].getStatementId());
+				}
 			}
 		}
 
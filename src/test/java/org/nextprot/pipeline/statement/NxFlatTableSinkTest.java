@@ -0,0 +1,90 @@
+package org.nextprot.pipeline.statement;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.commons.statements.specs.StatementField;
+import org.nextprot.pipeline.statement.elements.NxFlatTableSink;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+public class NxFlatTableSinkTest {
+
+	private static final List<StatementField> FIELDS = Arrays.asList(CoreStatementField.STATEMENT_ID, CoreStatementField.ENTRY_ACCESSION);
+
+	private JdbcDataSource dataSource;
+	private Connection connection;
+
+	@Before
+	public void createTable() throws SQLException {
+
+		dataSource = new JdbcDataSource();
+		dataSource.setURL("jdbc:h2:mem:nxflat;DB_CLOSE_DELAY=-1");
+
+		// keeps the in-memory database alive during the test
+		connection = dataSource.getConnection();
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE raw_statements (STATEMENT_ID VARCHAR(255), ENTRY_ACCESSION VARCHAR(255))");
+		}
+	}
+
+	@After
+	public void dropTable() throws SQLException {
+
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE raw_statements");
+		}
+		connection.close();
+	}
+
+	@Test
+	public void writeInBatches() throws IOException, InterruptedException, SQLException {
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.sink(c -> new NxFlatTableSink(NxFlatTableSink.Table.raw_statements, dataSource, FIELDS, 300, 1000))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, countRows());
+	}
+
+	@Test
+	public void writeWithOneConnectionPerDuplicatedSink() throws IOException, InterruptedException, SQLException {
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.demuxFilter(c -> new NarcolepticFilter(c), 4)
+				.sink(c -> new NxFlatTableSink(NxFlatTableSink.Table.raw_statements, dataSource, FIELDS, 128, 512))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, countRows());
+	}
+
+	private int countRows() throws SQLException {
+
+		try (Statement statement = connection.createStatement();
+		     ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM raw_statements")) {
+
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+}
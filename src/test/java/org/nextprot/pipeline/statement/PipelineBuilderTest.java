@@ -1,19 +1,40 @@
 package org.nextprot.pipeline.statement;
 
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.elements.FusedFilter;
 import org.nextprot.pipeline.statement.elements.NxFlatTableSink;
 import org.nextprot.pipeline.statement.elements.Source;
+import org.nextprot.pipeline.statement.metrics.ElementMetrics;
+import org.nextprot.pipeline.statement.metrics.PipelineMetrics;
+import org.nextprot.pipeline.statement.ports.PipePortType;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class PipelineBuilderTest {
 
@@ -73,6 +94,394 @@ public class PipelineBuilderTest {
 		System.out.println("Done in "+timer.getElapsedTimeInMs() + " ms.");
 	}
 
+	@Test
+	public void testPipelineWithDemuxAndMux() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.demuxFilter(c -> new NarcolepticFilter(c), 4)
+				.filter(c -> new NarcolepticFilter(c))
+				.mux()
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, counter.get());
+	}
+
+	@Test
+	public void testPipelineWithFixedThreadPool() throws IOException, InterruptedException {
+
+		ExecutionBackend backend = ExecutionBackend.fixedThreadPool(16);
+
+		try {
+			Assert.assertEquals(10000, runPipelineWithDemuxAndMux(backend));
+		} finally {
+			backend.shutdown();
+		}
+	}
+
+	@Test
+	public void testOwnedBackendIsShutDownOnCompletion() throws IOException, InterruptedException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+
+		try {
+			Assert.assertEquals(10000, runPipelineWithDemuxAndMux(new ExecutorServiceBackend(executor, true), true));
+			Assert.assertTrue(executor.isShutdown());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSharedBackendRunsSeveralPipelines() throws IOException, InterruptedException {
+
+		ExecutorService executor = Executors.newFixedThreadPool(16);
+		ExecutionBackend backend = new ExecutorServiceBackend(executor, true);
+
+		try {
+			Assert.assertEquals(10000, runPipelineWithDemuxAndMux(backend, false));
+			Assert.assertFalse(executor.isShutdown());
+			Assert.assertEquals(10000, runPipelineWithDemuxAndMux(backend, false));
+		} finally {
+			backend.shutdown();
+		}
+		Assert.assertTrue(executor.isShutdown());
+	}
+
+	@Test
+	public void testPipelineWithVirtualThreads() throws IOException, InterruptedException {
+
+		if (!ExecutorServiceBackend.isVirtualThreadSupported()) {
+
+			try {
+				ExecutionBackend.virtualThreadPerElement();
+				Assert.fail("virtual threads should not be supported");
+			} catch (UnsupportedOperationException e) {
+				return;
+			}
+		}
+
+		ExecutionBackend backend = ExecutionBackend.virtualThreadPerElement();
+
+		try {
+			Assert.assertEquals(10000, runPipelineWithDemuxAndMux(backend));
+		} finally {
+			backend.shutdown();
+		}
+	}
+
+	@Test
+	public void testPipelineWithFusedTransforms() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+		AtomicInteger mapped = new AtomicInteger();
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.fuse()
+				.transform(recordThreadName(threadNames))
+				// every fourth statement is mapped to null, ie: dropped
+				.transform(StatementTransform.map(statement -> (mapped.incrementAndGet() % 4 == 0) ? null : statement))
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, mapped.get());
+		Assert.assertEquals(7500, counter.get());
+		// all transforms ran in the same element
+		Assert.assertEquals(1, threadNames.size());
+	}
+
+	@Test
+	public void testPipelineWithDemuxedFusedTransforms() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+		Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.demuxFilter(c -> new FusedFilter(c, recordThreadName(threadNames)), 4)
+				.fuse()
+				.transform(StatementTransform.filter(statement -> true))
+				.mux()
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, counter.get());
+		Assert.assertEquals(4, threadNames.size());
+	}
+
+	@Test
+	public void testPipelineMetrics() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+		List<PipelineMetrics> snapshots = new CopyOnWriteArrayList<>();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start(new Pipeline.Monitorable() {
+
+					@Override
+					public void started() { }
+
+					@Override
+					public void ended() { }
+
+					@Override
+					public void metricsUpdated(PipelineMetrics metrics) {
+						snapshots.add(metrics);
+					}
+
+					@Override
+					public long getMetricsPeriodMillis() {
+						return 5;
+					}
+				})
+				.source(new GeneratedStatementPump(10000, 100))
+				.filter(c -> new NarcolepticFilter(c))
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, counter.get());
+		Assert.assertFalse(snapshots.isEmpty());
+
+		// the last snapshot is taken when all elements have completed
+		PipelineMetrics metrics = snapshots.get(snapshots.size() - 1);
+
+		Assert.assertEquals(3, metrics.getElements().size());
+
+		ElementMetrics source = metrics.getElement("Source").get();
+		Assert.assertNull(source.getInput());
+		Assert.assertEquals(1, source.getOutputs().size());
+
+		ElementMetrics sink = metrics.getElements().get(2);
+		Assert.assertEquals(10000, sink.getInput().getReadCount());
+		Assert.assertEquals(0, sink.getInput().getSize());
+		Assert.assertTrue(sink.getOutputs().isEmpty());
+
+		for (ElementMetrics element : metrics.getElements()) {
+			Assert.assertTrue(element.getRunningTimeNanos() > 0);
+			Assert.assertTrue(element.getBusyTimeNanos() >= 0);
+		}
+	}
+
+	private static StatementTransform recordThreadName(Set<String> threadNames) {
+
+		return (statements, length) -> {
+			threadNames.add(Thread.currentThread().getName());
+			return length;
+		};
+	}
+
+	@Test
+	public void testPipelineWithPrefetchingSource() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100), 4)
+				.filter(c -> new NarcolepticFilter(c))
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		List<String> threadNames = new CopyOnWriteArrayList<>();
+
+		pipeline.open(new ExecutorServiceBackend(Executors.newCachedThreadPool(), true) {
+
+			@Override
+			public <T> Future<T> submit(String threadName, Callable<T> task) {
+
+				threadNames.add(threadName);
+				return super.submit(threadName, task);
+			}
+		});
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10000, counter.get());
+		// the I/O task runs on the backend of the pipeline
+		Assert.assertTrue(threadNames.contains("Source-prefetch"));
+
+		// the input of the source is its prefetch queue
+		ElementMetrics source = pipeline.getMetrics().getElement("Source").get();
+
+		Assert.assertEquals(400, source.getInput().getCapacity());
+		Assert.assertEquals(10000, source.getInput().getReceivedCount());
+		Assert.assertEquals(10000, source.getInput().getReadCount());
+	}
+
+	@Test
+	public void testPipelineWithSpillover() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+		Path directory = Files.createTempDirectory("spill");
+
+		Pipeline pipeline = new PipelineBuilder()
+				.spillover(directory, new StatementCodec(Arrays.asList(CoreStatementField.values())))
+				.start()
+				.source(new GeneratedStatementPump(2000, 100))
+				.demuxFilter(c -> new NarcolepticFilter(c, 1), 2)
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(2000, counter.get());
+		Assert.assertTrue(pipeline.getMetrics().getElements().stream()
+				.filter(element -> element.getName().startsWith("NarcolepticFilter"))
+				.allMatch(element -> element.getInput().getSpillMetrics() != null));
+
+		try (Stream<Path> files = Files.list(directory)) {
+			Assert.assertEquals(0, files.count());
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void testPipelineWithParallelSource() throws IOException, InterruptedException {
+
+		Assert.assertEquals(8000, runPipelineWithParallelSource(PipePortType.MONITOR, 8, 3));
+	}
+
+	@Test
+	public void testPipelineWithParallelSourceOnRing() throws IOException, InterruptedException {
+
+		Assert.assertEquals(8000, runPipelineWithParallelSource(PipePortType.SPSC_RING, 8, 8));
+	}
+
+	@Test
+	public void testPipelineWithParallelSourceWithoutSplit() throws IOException, InterruptedException {
+
+		Assert.assertEquals(0, runPipelineWithParallelSource(PipePortType.MONITOR, 0, 4));
+	}
+
+	@Test
+	public void testParallelSourcePumpsOnThePipelineBackend() throws IOException, InterruptedException {
+
+		List<String> threadNames = new CopyOnWriteArrayList<>();
+
+		ExecutionBackend backend = new ExecutorServiceBackend(Executors.newCachedThreadPool(), true) {
+
+			@Override
+			public <T> Future<T> submit(String threadName, Callable<T> task) {
+
+				threadNames.add(threadName);
+				return super.submit(threadName, task);
+			}
+		};
+
+		Assert.assertEquals(8000, runPipelineWithParallelSource(PipePortType.MONITOR, 8, 3, backend));
+		Assert.assertEquals(3, threadNames.stream().filter(name -> name.contains("-pump-")).count());
+	}
+
+	@Test
+	public void testParallelSourceWithASlowSplit() throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+
+		// the thread pumping the first split is dead before the slow split writes its first batch
+		GeneratedStatementPump slow = new GeneratedStatementPump(100, 100) {
+
+			private boolean started = false;
+
+			@Override
+			public int pump(List<Statement> collector) {
+
+				if (!started) {
+					started = true;
+					try {
+						Thread.sleep(500);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				return super.pump(collector);
+			}
+		};
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(Arrays.asList(new GeneratedStatementPump(100, 100), slow), 2, 100)
+				.filter(c -> new NarcolepticFilter(c, 1))
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(200, counter.get());
+	}
+
+	private static int runPipelineWithParallelSource(PipePortType type, int pumpCount, int parallelism) throws IOException, InterruptedException {
+
+		return runPipelineWithParallelSource(type, pumpCount, parallelism, ExecutionBackend.threadPerElement());
+	}
+
+	private static int runPipelineWithParallelSource(PipePortType type, int pumpCount, int parallelism, ExecutionBackend backend) throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+
+		List<GeneratedStatementPump> pumps = new ArrayList<>();
+		for (int i = 0; i < pumpCount; i++) {
+			pumps.add(new GeneratedStatementPump(1000, 100));
+		}
+
+		Pipeline pipeline = new PipelineBuilder(type)
+				.start()
+				.source(pumps, parallelism, 100)
+				.demuxFilter(c -> new NarcolepticFilter(c), 2)
+				.mux()
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open(backend);
+		pipeline.waitForThePipesToComplete();
+
+		return counter.get();
+	}
+
+	private static int runPipelineWithDemuxAndMux(ExecutionBackend backend) throws IOException, InterruptedException {
+
+		return runPipelineWithDemuxAndMux(backend, true);
+	}
+
+	private static int runPipelineWithDemuxAndMux(ExecutionBackend backend, boolean owned) throws IOException, InterruptedException {
+
+		AtomicInteger counter = new AtomicInteger();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.demuxFilter(c -> new NarcolepticFilter(c), 4)
+				.filter(c -> new NarcolepticFilter(c))
+				.mux()
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open(backend, owned);
+		pipeline.waitForThePipesToComplete();
+
+		return counter.get();
+	}
+
 	private static class Timer implements Pipeline.Monitorable {
 
 		private Instant start;
@@ -0,0 +1,37 @@
+package org.nextprot.pipeline.statement;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+public class PipelineLoggingTest {
+
+	@Test
+	public void logFileIsCreatedLazilyWithEnabledLevelsOnly() throws IOException {
+
+		File file = new File("logs", "PipelineLoggingTest.log");
+		file.delete();
+
+		Logger logger = PipelineLogging.getLogger("PipelineLoggingTest");
+
+		Assert.assertFalse(logger.isDebugEnabled());
+
+		logger.debug("per statement message");
+		PipelineLogging.flush();
+		Assert.assertFalse(file.exists());
+
+		logger.info("end of flow");
+		PipelineLogging.shutdown();
+
+		Assert.assertTrue(file.exists());
+
+		String content = new String(Files.readAllBytes(file.toPath()));
+
+		Assert.assertTrue(content.contains("end of flow"));
+		Assert.assertFalse(content.contains("per statement message"));
+	}
+}
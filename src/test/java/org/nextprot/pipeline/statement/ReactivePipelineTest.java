@@ -0,0 +1,126 @@
+package org.nextprot.pipeline.statement;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.reactive.PublisherPump;
+import org.nextprot.pipeline.statement.reactive.PublisherSink;
+import org.nextprot.pipeline.statement.reactive.PumpPublisher;
+import org.nextprot.pipeline.statement.reactive.TransformProcessor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReactivePipelineTest {
+
+	@Test
+	public void publishPumpOnDemand() {
+
+		CountingSubscriber subscriber = new CountingSubscriber();
+
+		new PumpPublisher(new GeneratedStatementPump(1000, 100)).subscribe(subscriber);
+
+		subscriber.subscription.request(10);
+		Assert.assertEquals(10, subscriber.received.get());
+
+		subscriber.subscription.request(500);
+		Assert.assertEquals(510, subscriber.received.get());
+		Assert.assertFalse(subscriber.completed);
+
+		subscriber.subscription.request(490);
+		Assert.assertEquals(1000, subscriber.received.get());
+		Assert.assertTrue(subscriber.completed);
+	}
+
+	@Test
+	public void pumpTransformedPublisher() throws IOException, InterruptedException {
+
+		AtomicInteger index = new AtomicInteger();
+		TransformProcessor everyOther = new TransformProcessor(StatementTransform.filter(s -> index.getAndIncrement() % 2 == 0));
+
+		new PumpPublisher(new GeneratedStatementPump(10000, 100)).subscribe(everyOther);
+
+		AtomicInteger counter = new AtomicInteger();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new PublisherPump(everyOther, 100))
+				.filter(c -> new NarcolepticFilter(c))
+				.sink(c -> new CountingSink(counter))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(5000, counter.get());
+	}
+
+	@Test
+	public void publishPipelineOnDemand() throws IOException, InterruptedException {
+
+		PublisherSink sink = new PublisherSink(100);
+		CountingSubscriber subscriber = new CountingSubscriber();
+
+		sink.subscribe(subscriber);
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(1000, 100))
+				.filter(c -> new NarcolepticFilter(c))
+				.sink(c -> sink)
+				.build();
+
+		pipeline.open();
+
+		subscriber.subscription.request(10);
+		Assert.assertTrue(subscriber.firstTen.await(10, TimeUnit.SECONDS));
+		// no more than the demand
+		Assert.assertEquals(10, subscriber.received.get());
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1000, subscriber.received.get());
+		Assert.assertTrue(subscriber.completed);
+	}
+
+	private static class CountingSubscriber implements Subscriber<Statement> {
+
+		private final AtomicInteger received = new AtomicInteger();
+		private final CountDownLatch firstTen = new CountDownLatch(10);
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Subscription subscription;
+		private volatile boolean completed = false;
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+
+			this.subscription = subscription;
+		}
+
+		@Override
+		public void onNext(Statement statement) {
+
+			received.incrementAndGet();
+			firstTen.countDown();
+		}
+
+		@Override
+		public void onError(Throwable error) {
+
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+
+			completed = true;
+			done.countDown();
+		}
+	}
+}
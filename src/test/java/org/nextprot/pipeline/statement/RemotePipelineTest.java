@@ -0,0 +1,142 @@
+package org.nextprot.pipeline.statement;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointCoordinator;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointStore;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.remote.RemoteSink;
+import org.nextprot.pipeline.statement.remote.RemoteStatementPump;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RemotePipelineTest {
+
+	static final StatementCodec CODEC = new StatementCodec(Arrays.asList(CoreStatementField.STATEMENT_ID,
+			CoreStatementField.ENTRY_ACCESSION));
+
+	@Test(expected = IllegalStateException.class)
+	public void cannotCheckpointRemoteSteps() throws IOException {
+
+		Path directory = Files.createTempDirectory("checkpoint");
+
+		try {
+			InetAddress loopback = InetAddress.getLoopbackAddress();
+
+			new PipelineBuilder()
+					.checkpointing(new CheckpointCoordinator(new CheckpointStore(directory.resolve("c")), 1, TimeUnit.SECONDS))
+					.start()
+					.source(new GeneratedStatementPump(10, 10))
+					.remote(new InetSocketAddress(loopback, freePort()), new InetSocketAddress(loopback, 0), CODEC);
+		} finally {
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void offloadDemuxedStageToWorkerProcess() throws IOException, InterruptedException {
+
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+		int workerPort = freePort();
+		int returnPort = freePort();
+
+		Process worker = new ProcessBuilder(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java",
+				"-cp", System.getProperty("java.class.path"), RemoteWorker.class.getName(),
+				String.valueOf(workerPort), String.valueOf(returnPort))
+				.inheritIO()
+				.start();
+
+		try {
+			AtomicInteger counter = new AtomicInteger();
+
+			Pipeline pipeline = new PipelineBuilder()
+					.start()
+					.source(new GeneratedStatementPump(10000, 100))
+					.remote(new InetSocketAddress(loopback, workerPort), new InetSocketAddress(loopback, returnPort), CODEC)
+					.sink(c -> new CountingSink(counter))
+					.build();
+
+			pipeline.open();
+			pipeline.waitForThePipesToComplete();
+
+			Assert.assertEquals(10000, counter.get());
+			Assert.assertTrue(worker.waitFor(30, TimeUnit.SECONDS));
+			Assert.assertEquals(0, worker.exitValue());
+		} finally {
+			worker.destroy();
+		}
+	}
+
+	@Test
+	public void creditsBoundStatementsInFlight() throws IOException, InterruptedException {
+
+		RemoteStatementPump pump = new RemoteStatementPump(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+				CODEC.copy(), 100, 1, 250);
+		RemoteSink sink = new RemoteSink(100, pump.getLocalAddress(), CODEC.copy());
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(1000, 100))
+				.sink(c -> sink)
+				.build();
+
+		pipeline.open();
+
+		List<Statement> statements = new ArrayList<>();
+
+		// the sink sends the whole window then waits for the pump
+		Assert.assertEquals(100, pump.pump(statements));
+		Assert.assertEquals(250, awaitStableSentCount(sink, 10000));
+
+		while (pump.pump(statements) != -1) { }
+
+		pipeline.waitForThePipesToComplete();
+		pump.close();
+
+		Assert.assertEquals(1000, statements.size());
+		Assert.assertEquals(1000, sink.getSentCount());
+	}
+
+	/**
+	 * Poll the number of statements sent until it has not changed for a few polls or the timeout has elapsed
+	 *
+	 * @return the last number of statements sent
+	 */
+	private static long awaitStableSentCount(RemoteSink sink, long timeoutMillis) throws InterruptedException {
+
+		long deadline = System.currentTimeMillis() + timeoutMillis;
+		long sent = sink.getSentCount();
+		int stablePolls = 0;
+
+		while (stablePolls < 5 && System.currentTimeMillis() < deadline) {
+
+			Thread.sleep(20);
+
+			long current = sink.getSentCount();
+
+			stablePolls = (current == sent) ? stablePolls + 1 : 0;
+			sent = current;
+		}
+		return sent;
+	}
+
+	private static int freePort() throws IOException {
+
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package org.nextprot.pipeline.statement;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+/**
+ * A worker process running the demultiplexed stage offloaded by RemotePipelineTest
+ *
+ * Usage: RemoteWorker listen-port return-port
+ */
+public class RemoteWorker {
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+
+		InetAddress loopback = InetAddress.getLoopbackAddress();
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.remoteSource(new InetSocketAddress(loopback, Integer.parseInt(args[0])), RemotePipelineTest.CODEC, 100, 1)
+				.demuxFilter(c -> new NarcolepticFilter(c), 3)
+				.mux()
+				.remoteSink(new InetSocketAddress(loopback, Integer.parseInt(args[1])), RemotePipelineTest.CODEC)
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+	}
+}
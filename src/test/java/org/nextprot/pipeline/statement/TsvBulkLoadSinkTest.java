@@ -0,0 +1,152 @@
+package org.nextprot.pipeline.statement;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.commons.statements.specs.StatementField;
+import org.nextprot.pipeline.statement.elements.NxFlatTableSink;
+import org.nextprot.pipeline.statement.elements.TsvBulkLoadSink;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+public class TsvBulkLoadSinkTest {
+
+	private static final List<StatementField> FIELDS = Arrays.asList(CoreStatementField.STATEMENT_ID, CoreStatementField.ENTRY_ACCESSION);
+
+	private Path directory;
+
+	@Before
+	public void createDirectory() throws IOException {
+
+		directory = Files.createTempDirectory("bulk-load");
+	}
+
+	@After
+	public void deleteDirectory() throws IOException {
+
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	public void writeOneFile() throws IOException, InterruptedException {
+
+		runPipeline(1, false, TsvBulkLoadSink.UNLIMITED_FILE_SIZE);
+
+		List<Path> files = listFiles();
+
+		Assert.assertEquals(1, files.size());
+		Assert.assertEquals(10000, countLines(files, false));
+		Assert.assertEquals("\\N\t\\N", Files.readAllLines(files.get(0)).get(0));
+	}
+
+	@Test
+	public void rotateFiles() throws IOException, InterruptedException {
+
+		// each line "\N\t\N\n" is 6 bytes long: 1000 lines per file
+		runPipeline(1, false, 6000);
+
+		List<Path> files = listFiles();
+
+		Assert.assertEquals(10, files.size());
+		Assert.assertEquals(10000, countLines(files, false));
+	}
+
+	@Test
+	public void writeOneShardPerDuplicatedSink() throws IOException, InterruptedException {
+
+		runPipeline(4, true, 12000);
+
+		List<Path> files = listFiles();
+
+		Assert.assertTrue(files.size() >= 4);
+		Assert.assertTrue(files.stream().allMatch(file -> file.getFileName().toString().endsWith(".tsv.gz")));
+		Assert.assertEquals(4, files.stream().map(file -> file.getFileName().toString().split("-")[1]).distinct().count());
+		Assert.assertEquals(10000, countLines(files, true));
+	}
+
+	@Test
+	public void keepTheFilesOfAPreviousRun() throws IOException, InterruptedException {
+
+		TsvBulkLoadSink sink = new TsvBulkLoadSink(NxFlatTableSink.Table.raw_statements, directory, FIELDS, false, 6000);
+		String shard = sink.getThreadName().split("-")[1];
+
+		// the parts committed by a previous run with the same shard
+		Path part0 = Files.write(directory.resolve("raw_statements-" + shard + "-0.tsv"), Collections.singletonList("committed"));
+		Path part1 = Files.write(directory.resolve("raw_statements-" + shard + "-1.tsv"), Collections.singletonList("committed"));
+
+		Pipeline pipeline = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100))
+				.sink(c -> sink)
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+
+		Assert.assertEquals(10, sink.getFiles().size());
+		Assert.assertFalse(sink.getFiles().contains(part0));
+		Assert.assertFalse(sink.getFiles().contains(part1));
+		Assert.assertEquals(Collections.singletonList("committed"), Files.readAllLines(part0));
+		Assert.assertEquals(Collections.singletonList("committed"), Files.readAllLines(part1));
+		Assert.assertEquals(10000, countLines(sink.getFiles(), false));
+	}
+
+	private void runPipeline(int sinkCount, boolean compressed, long maxFileSize) throws IOException, InterruptedException {
+
+		Pipeline.FilterStep step = new PipelineBuilder()
+				.start()
+				.source(new GeneratedStatementPump(10000, 100));
+
+		if (sinkCount > 1) {
+			step = step.demuxFilter(c -> new NarcolepticFilter(c), sinkCount);
+		}
+
+		Pipeline pipeline = step
+				.sink(c -> new TsvBulkLoadSink(NxFlatTableSink.Table.raw_statements, directory, FIELDS, compressed, maxFileSize))
+				.build();
+
+		pipeline.open();
+		pipeline.waitForThePipesToComplete();
+	}
+
+	private List<Path> listFiles() throws IOException {
+
+		try (Stream<Path> paths = Files.list(directory)) {
+			return paths.sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static long countLines(List<Path> files, boolean compressed) throws IOException {
+
+		long count = 0;
+
+		for (Path file : files) {
+
+			InputStream in = Files.newInputStream(file);
+
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(compressed ? new GZIPInputStream(in) : in, StandardCharsets.UTF_8))) {
+				count += reader.lines().count();
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,70 @@
+package org.nextprot.pipeline.statement;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+
+import java.util.Collections;
+
+public class ValueDictionaryTest {
+
+	@Test
+	public void internSharesInstances() {
+
+		ValueDictionary dictionary = new ValueDictionary(10);
+
+		String first = dictionary.intern(new String("BioEditor"));
+		String second = dictionary.intern(new String("BioEditor"));
+
+		Assert.assertSame(first, second);
+		Assert.assertEquals(1, dictionary.size());
+		Assert.assertEquals(1, dictionary.getHitCount());
+		Assert.assertTrue(dictionary.getSavedBytes() > 0);
+	}
+
+	@Test
+	public void internIsBounded() {
+
+		ValueDictionary dictionary = new ValueDictionary(2);
+
+		dictionary.intern("IDA");
+		dictionary.intern("IEA");
+
+		String value = new String("ISS");
+
+		Assert.assertSame(value, dictionary.intern(value));
+		Assert.assertEquals(2, dictionary.size());
+		Assert.assertEquals(1, dictionary.getRejectedCount());
+		Assert.assertEquals(-1, dictionary.getId("ISS"));
+	}
+
+	@Test
+	public void valuesHaveDistinctIds() {
+
+		ValueDictionary dictionary = new ValueDictionary(10);
+
+		dictionary.intern("NX_P01308");
+		dictionary.intern("NX_P04637");
+
+		Assert.assertNotEquals(dictionary.getId("NX_P01308"), dictionary.getId("NX_P04637"));
+		Assert.assertEquals(dictionary.getId("NX_P01308"), dictionary.getId(new String("NX_P01308")));
+	}
+
+	@Test
+	public void internStatementFields() {
+
+		StatementInterner interner = new StatementInterner(new ValueDictionary(10), Collections.singletonList(CoreStatementField.SOURCE));
+
+		Statement[] statements = { new Statement(), new Statement() };
+
+		for (Statement statement : statements) {
+			statement.put(CoreStatementField.SOURCE, new String("BioEditor"));
+			statement.put(CoreStatementField.STATEMENT_ID, new String("id"));
+		}
+
+		Assert.assertEquals(2, interner.transform(statements, 2));
+		Assert.assertSame(statements[0].getValue(CoreStatementField.SOURCE), statements[1].getValue(CoreStatementField.SOURCE));
+		Assert.assertNotSame(statements[0].getValue(CoreStatementField.STATEMENT_ID), statements[1].getValue(CoreStatementField.STATEMENT_ID));
+	}
+}
@@ -0,0 +1,127 @@
+package org.nextprot.pipeline.statement.codec;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.commons.statements.specs.StatementField;
+import org.nextprot.pipeline.statement.source.BinaryStatementPump;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StatementCodecTest {
+
+	private static final List<StatementField> FIELDS = Arrays.asList(CoreStatementField.STATEMENT_ID,
+			CoreStatementField.ENTRY_ACCESSION, CoreStatementField.ANNOTATION_CATEGORY);
+
+	@Test
+	public void encodeThenDecode() throws IOException {
+
+		StatementCodec codec = new StatementCodec(FIELDS);
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+		Statement statement = newStatement("id-1", null, "na\u00efve \u00e9\u4e2d \ud83e\uddec");
+
+		Assert.assertTrue(codec.encode(statement, buffer));
+		buffer.flip();
+
+		Statement decoded = codec.decode(buffer);
+
+		Assert.assertEquals("id-1", decoded.getValue(CoreStatementField.STATEMENT_ID));
+		Assert.assertNull(decoded.getValue(CoreStatementField.ENTRY_ACCESSION));
+		Assert.assertEquals("na\u00efve \u00e9\u4e2d \ud83e\uddec", decoded.getValue(CoreStatementField.ANNOTATION_CATEGORY));
+		Assert.assertFalse(buffer.hasRemaining());
+	}
+
+	@Test
+	public void encodeInTooSmallBuffer() {
+
+		StatementCodec codec = new StatementCodec(FIELDS);
+		ByteBuffer buffer = ByteBuffer.allocate(8);
+
+		Assert.assertFalse(codec.encode(newStatement("id-1", "NX_P12345", "go-cellular-component"), buffer));
+		Assert.assertEquals(0, buffer.position());
+	}
+
+	@Test
+	public void decodeIncompleteRecord() throws IOException {
+
+		StatementCodec codec = new StatementCodec(FIELDS);
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+		codec.encode(newStatement("id-1", "NX_P12345", null), buffer);
+		buffer.flip();
+		buffer.limit(buffer.limit() - 1);
+
+		Assert.assertNull(codec.decode(buffer));
+		Assert.assertEquals(0, buffer.position());
+	}
+
+	@Test(expected = StreamCorruptedException.class)
+	public void decodeCorruptedRecordLength() throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x01 });
+
+		new StatementCodec(FIELDS).decode(buffer);
+	}
+
+	@Test(expected = IOException.class)
+	public void decodeHeaderOfOtherFields() throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+		new StatementCodec(FIELDS).encodeHeader(buffer);
+		buffer.flip();
+
+		new StatementCodec(FIELDS.subList(0, 2)).decodeHeader(buffer);
+	}
+
+	@Test
+	public void pumpStream() throws IOException {
+
+		StatementCodec codec = new StatementCodec(FIELDS);
+		// records larger than the buffer of the pump
+		char[] chars = new char[3 * BinaryStatementPump.BUFFER_SIZE];
+		Arrays.fill(chars, 'x');
+		String largeValue = new String(chars);
+
+		ByteBuffer buffer = ByteBuffer.allocate(8 * BinaryStatementPump.BUFFER_SIZE);
+		codec.encodeHeader(buffer);
+
+		for (int i = 0; i < 1000; i++) {
+			codec.encode(newStatement("id-" + i, (i == 500) ? largeValue : "NX_P12345", null), buffer);
+		}
+
+		BinaryStatementPump pump = new BinaryStatementPump(new ByteArrayInputStream(buffer.array(), 0, buffer.position()), codec.copy(), 300);
+
+		List<Statement> statements = new ArrayList<>();
+
+		Assert.assertEquals(300, pump.pump(statements));
+		Assert.assertEquals(300, pump.pump(statements));
+		Assert.assertEquals(300, pump.pump(statements));
+		Assert.assertEquals(100, pump.pump(statements));
+		Assert.assertEquals(-1, pump.pump(statements));
+		Assert.assertTrue(pump.isEmpty());
+
+		Assert.assertEquals(1000, statements.size());
+		Assert.assertEquals("id-999", statements.get(999).getValue(CoreStatementField.STATEMENT_ID));
+		Assert.assertEquals(largeValue, statements.get(500).getValue(CoreStatementField.ENTRY_ACCESSION));
+	}
+
+	private static Statement newStatement(String id, String accession, String category) {
+
+		Statement statement = new Statement();
+
+		if (id != null) statement.put(CoreStatementField.STATEMENT_ID, id);
+		if (accession != null) statement.put(CoreStatementField.ENTRY_ACCESSION, accession);
+		if (category != null) statement.put(CoreStatementField.ANNOTATION_CATEGORY, category);
+
+		return statement;
+	}
+}
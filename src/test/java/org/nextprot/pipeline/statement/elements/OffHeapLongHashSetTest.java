@@ -0,0 +1,66 @@
+package org.nextprot.pipeline.statement.elements;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OffHeapLongHashSetTest {
+
+	@Test
+	public void addOnce() {
+
+		OffHeapLongHashSet set = new OffHeapLongHashSet(10);
+
+		Assert.assertTrue(set.add(42));
+		Assert.assertFalse(set.add(42));
+		Assert.assertTrue(set.contains(42));
+		Assert.assertFalse(set.contains(43));
+		Assert.assertEquals(1, set.size());
+	}
+
+	@Test
+	public void addZeroHash() {
+
+		OffHeapLongHashSet set = new OffHeapLongHashSet(10);
+
+		Assert.assertFalse(set.contains(0));
+		Assert.assertTrue(set.add(0));
+		Assert.assertFalse(set.add(0));
+		Assert.assertTrue(set.contains(0));
+	}
+
+	@Test
+	public void growBeyondExpectedSize() {
+
+		OffHeapLongHashSet set = new OffHeapLongHashSet(100);
+		long initialCapacity = set.capacity();
+
+		for (int i = 0; i < 100000; i++) {
+			Assert.assertTrue(set.add(OffHeapLongHashSet.hash("NX_" + i)));
+		}
+
+		Assert.assertEquals(100000, set.size());
+		Assert.assertTrue(set.capacity() > initialCapacity);
+		Assert.assertTrue(set.size() <= set.capacity() * 3 / 4);
+
+		for (int i = 0; i < 100000; i++) {
+			Assert.assertFalse(set.add(OffHeapLongHashSet.hash("NX_" + i)));
+		}
+		Assert.assertEquals(100000, set.size());
+	}
+
+	@Test
+	public void sizeSlotsForExpectedSize() {
+
+		OffHeapLongHashSet set = new OffHeapLongHashSet(1000);
+
+		Assert.assertEquals(2048, set.capacity());
+		Assert.assertEquals(2048 * 8, set.getMemorySize());
+	}
+
+	@Test
+	public void hashDistinctKeys() {
+
+		Assert.assertEquals(OffHeapLongHashSet.hash("NX_P01308|GO:0005515|"), OffHeapLongHashSet.hash("NX_P01308|GO:0005515|"));
+		Assert.assertNotEquals(OffHeapLongHashSet.hash("NX_P01308|GO:0005515|"), OffHeapLongHashSet.hash("NX_P01308|GO:0005516|"));
+	}
+}
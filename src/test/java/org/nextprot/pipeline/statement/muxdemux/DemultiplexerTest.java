@@ -1,26 +1,33 @@
 package org.nextprot.pipeline.statement.muxdemux;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.CountingSink;
+import org.nextprot.pipeline.statement.ExecutionBackend;
 import org.nextprot.pipeline.statement.Filter;
 import org.nextprot.pipeline.statement.NarcolepticFilter;
+import org.nextprot.pipeline.statement.PipelineElement;
 import org.nextprot.pipeline.statement.Pump;
 import org.nextprot.pipeline.statement.elements.NxFlatTableSink;
 import org.nextprot.pipeline.statement.elements.Sink;
 import org.nextprot.pipeline.statement.elements.Source;
 import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DemultiplexerTest {
 
 	@Test
-	public void connect() throws IOException, InterruptedException {
+	public void connect() throws Exception {
 
 		URL url = new URL("http://kant.sib.swiss:9001/glyconnect/2019-01-22/all-entries.json");
 		Reader reader = new InputStreamReader(url.openStream());
@@ -41,13 +48,40 @@ public class DemultiplexerTest {
 		//source.pipe(demux);
 		demux.pipe(filter);
 
-		List<Thread> tl = new ArrayList<>();
-		demux.start(tl);
+		Map<PipelineElement<?>, Future<?>> futures = new LinkedHashMap<>();
+		demux.start(ExecutionBackend.threadPerElement(), futures);
 
-		for (Thread thread : tl) {
-			thread.join();
-			System.out.println("Pipe " + thread.getName() + ": closed");
+		for (Map.Entry<PipelineElement<?>, Future<?>> entry : futures.entrySet()) {
+			entry.getValue().get();
+			System.out.println("Pipe " + entry.getKey().getThreadName() + ": closed");
 		}
-		System.out.println(tl);
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void distributeAllStatements() throws Exception {
+
+		AtomicInteger counter = new AtomicInteger();
+
+		SourcePipePort source = new SourcePipePort(10);
+		Demultiplexer demux = new Demultiplexer(new SinkPipePort(10), 3);
+		source.connect(demux.getSinkPipePort());
+
+		Filter filter = new NarcolepticFilter(10);
+		filter.pipe(new CountingSink(counter));
+		demux.pipe(filter);
+
+		Map<PipelineElement<?>, Future<?>> futures = new LinkedHashMap<>();
+		demux.start(ExecutionBackend.threadPerElement(), futures);
+
+		for (int i = 0; i < 1000; i++) {
+			source.write(new Statement());
+		}
+		source.write(Sink.END_OF_FLOW_TOKEN);
+		source.close();
+
+		for (Future<?> future : futures.values()) {
+			future.get();
+		}
+		Assert.assertEquals(1000, counter.get());
+	}
+}
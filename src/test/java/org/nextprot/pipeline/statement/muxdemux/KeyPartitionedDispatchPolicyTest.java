@@ -0,0 +1,87 @@
+package org.nextprot.pipeline.statement.muxdemux;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class KeyPartitionedDispatchPolicyTest {
+
+	@Test
+	public void partitionIsInRange() {
+
+		for (int i = 0; i < 10000; i++) {
+
+			int partition = KeyPartitionedDispatchPolicy.partition("NX_P" + i, 7);
+			Assert.assertTrue(partition >= 0 && partition < 7);
+		}
+		Assert.assertEquals(0, KeyPartitionedDispatchPolicy.partition(null, 7));
+	}
+
+	@Test
+	public void statementsOfSameKeyGoToSamePort() throws IOException {
+
+		int portCount = 4;
+		int count = 1000;
+
+		List<SourcePipePort> sourcePipePorts = new ArrayList<>();
+		List<SinkPipePort> sinkPipePorts = new ArrayList<>();
+
+		for (int i = 0; i < portCount; i++) {
+
+			SourcePipePort source = new SourcePipePort(count);
+			SinkPipePort sink = new SinkPipePort(count);
+			source.connect(sink);
+
+			sourcePipePorts.add(source);
+			sinkPipePorts.add(sink);
+		}
+
+		Map<Statement, String> keys = new IdentityHashMap<>();
+		Statement[] batch = new Statement[count];
+
+		for (int i = 0; i < count; i++) {
+
+			batch[i] = new Statement();
+			keys.put(batch[i], "NX_P" + (i % 37));
+		}
+
+		DispatchPolicy policy = new KeyPartitionedDispatchPolicy(keys::get);
+
+		// twice to reuse the partition buffers
+		policy.distribute(batch, count / 2, sourcePipePorts);
+		System.arraycopy(batch, count / 2, batch, 0, count / 2);
+		policy.distribute(batch, count / 2, sourcePipePorts);
+
+		Map<String, Integer> portOfKey = new HashMap<>();
+		int received = 0;
+
+		for (int port = 0; port < portCount; port++) {
+
+			SourcePipePort source = sourcePipePorts.get(port);
+			source.close();
+
+			Statement[] buffer = new Statement[count];
+			int n;
+			while ((n = sinkPipePorts.get(port).read(buffer, 0, count)) != -1) {
+
+				for (int i = 0; i < n; i++) {
+
+					Integer previousPort = portOfKey.put(keys.get(buffer[i]), port);
+					Assert.assertTrue(previousPort == null || previousPort == port);
+				}
+				received += n;
+			}
+		}
+		Assert.assertEquals(count, received);
+		Assert.assertEquals(37, portOfKey.size());
+	}
+}
@@ -0,0 +1,171 @@
+package org.nextprot.pipeline.statement.muxdemux;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.ports.PipePortType;
+import org.nextprot.pipeline.statement.ports.SinkPipePort;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LeastLoadedDispatchPolicyTest {
+
+	@Test
+	public void stalledBranchDoesNotBlockOthers() throws Exception {
+
+		int capacity = 10;
+		int count = 1000;
+
+		SourcePipePort stalledSource = new SourcePipePort(capacity);
+		SinkPipePort stalledSink = new SinkPipePort(capacity, PipePortType.SPSC_RING);
+		stalledSource.connect(stalledSink);
+
+		SourcePipePort activeSource = new SourcePipePort(capacity);
+		SinkPipePort activeSink = new SinkPipePort(capacity, PipePortType.SPSC_RING);
+		activeSource.connect(activeSink);
+
+		List<SourcePipePort> sourcePipePorts = Arrays.asList(stalledSource, activeSource);
+
+		AtomicInteger received = new AtomicInteger();
+
+		// only the active branch reads
+		Thread reader = new Thread(() -> {
+			try {
+				Statement[] buffer = new Statement[capacity];
+				int n;
+				while ((n = activeSink.read(buffer, 0, capacity)) != -1) {
+					received.addAndGet(n);
+				}
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		});
+		reader.start();
+
+		Statement[] batch = new Statement[capacity];
+		for (int i = 0; i < capacity; i++) {
+			batch[i] = new Statement();
+		}
+
+		LeastLoadedDispatchPolicy policy = new LeastLoadedDispatchPolicy();
+
+		for (int i = 0; i < count; i += capacity) {
+			policy.distribute(batch, capacity, sourcePipePorts);
+		}
+		activeSource.close();
+		reader.join(5000);
+
+		Assert.assertFalse(reader.isAlive());
+		Assert.assertEquals(2, policy.getBranchCount());
+		Assert.assertEquals(count, policy.getDispatchedStatementCount(0) + policy.getDispatchedStatementCount(1));
+		Assert.assertEquals(capacity, policy.getDispatchedStatementCount(0));
+		Assert.assertEquals(stalledSink.size(), capacity);
+		Assert.assertEquals(count - capacity, received.get());
+		Assert.assertTrue(policy.getFullPipeCount(0) > 0);
+		// counted once per chunk, not at each poll of the full pipe
+		Assert.assertTrue(policy.getFullPipeCount(0) <= count - capacity);
+		Assert.assertTrue(policy.getLoadSkew() > 1.9);
+	}
+
+	@Test
+	public void idleBranchStealsTheStatementsOfAStalledBranch() throws Exception {
+
+		int capacity = 10;
+		int count = 1000;
+
+		SinkPipePort stalledSink = new SinkPipePort(capacity);
+		SinkPipePort activeSink = new SinkPipePort(capacity);
+
+		LeastLoadedDispatchPolicy policy = new LeastLoadedDispatchPolicy();
+		policy.prepareBranches(Arrays.asList(stalledSink, activeSink));
+
+		SourcePipePort stalledSource = new SourcePipePort(capacity);
+		stalledSource.connect(stalledSink);
+
+		SourcePipePort activeSource = new SourcePipePort(capacity);
+		activeSource.connect(activeSink);
+
+		AtomicInteger received = new AtomicInteger();
+
+		// only the active branch reads
+		Thread reader = new Thread(() -> {
+			try {
+				Statement[] buffer = new Statement[capacity];
+				int n;
+				while ((n = activeSink.read(buffer, 0, capacity)) != -1) {
+					received.addAndGet(n);
+				}
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		});
+		reader.start();
+
+		Statement[] batch = new Statement[capacity];
+		for (int i = 0; i < capacity; i++) {
+			batch[i] = new Statement();
+		}
+
+		for (int i = 0; i < count; i += capacity) {
+			policy.distribute(batch, capacity, Arrays.asList(stalledSource, activeSource));
+		}
+		// the statements of the stalled branch are taken over before the end of flow of the active one
+		long deadline = System.currentTimeMillis() + 5000;
+		while (stalledSink.size() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		activeSource.write((Statement) null);
+		reader.join(5000);
+
+		Assert.assertFalse(reader.isAlive());
+		Assert.assertEquals(0, stalledSink.size());
+		Assert.assertEquals(count, received.get());
+		Assert.assertEquals(policy.getDispatchedStatementCount(0), policy.getStolenStatementCount(1));
+		Assert.assertEquals(0, policy.getStolenStatementCount(0));
+	}
+
+	@Test
+	public void spillingBranchIsWrittenWhenAllPipesAreFull() throws Exception {
+
+		int capacity = 10;
+		int count = 100;
+
+		SourcePipePort spillingSource = new SourcePipePort(capacity);
+		SinkPipePort spillingSink = new SinkPipePort(capacity, PipePortType.MONITOR);
+		spillingSink.setSpillover(Files.createTempDirectory("spill"),
+				new StatementCodec(Collections.singletonList(CoreStatementField.STATEMENT_ID)));
+		spillingSource.connect(spillingSink);
+
+		SourcePipePort blockingSource = new SourcePipePort(capacity);
+		SinkPipePort blockingSink = new SinkPipePort(capacity, PipePortType.MONITOR);
+		blockingSource.connect(blockingSink);
+
+		Assert.assertTrue(spillingSource.isSpillingOver());
+		Assert.assertFalse(blockingSource.isSpillingOver());
+
+		Statement[] batch = new Statement[capacity];
+		for (int i = 0; i < capacity; i++) {
+			batch[i] = new Statement();
+		}
+
+		LeastLoadedDispatchPolicy policy = new LeastLoadedDispatchPolicy();
+
+		// nobody reads: without spillover the dispatch would wait forever
+		for (int i = 0; i < count; i += capacity) {
+			policy.distribute(batch, capacity, Arrays.asList(spillingSource, blockingSource));
+		}
+
+		Assert.assertEquals(capacity, policy.getDispatchedStatementCount(1));
+		Assert.assertEquals(count - capacity, policy.getDispatchedStatementCount(0));
+		Assert.assertEquals(count - capacity, spillingSink.size());
+		Assert.assertTrue(spillingSink.getSpillMetrics().getSpilledCount() > 0);
+	}
+}
@@ -0,0 +1,71 @@
+package org.nextprot.pipeline.statement.muxdemux;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.CountingSink;
+import org.nextprot.pipeline.statement.ExecutionBackend;
+import org.nextprot.pipeline.statement.PipelineElement;
+import org.nextprot.pipeline.statement.elements.Sink;
+import org.nextprot.pipeline.statement.ports.SourcePipePort;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MultiplexerTest {
+
+	@Test
+	public void mergeInputChannels() throws Exception {
+
+		Multiplexer mux = new Multiplexer(10, 3);
+		AtomicInteger counter = new AtomicInteger();
+		CountingSink sink = new CountingSink(counter);
+		mux.pipe(sink);
+
+		Map<PipelineElement<?>, Future<?>> futures = new LinkedHashMap<>();
+		mux.start(ExecutionBackend.threadPerElement(), futures);
+
+		List<Thread> writers = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+
+			SourcePipePort source = new SourcePipePort(10);
+			source.connect(mux.getSinkPipePort());
+
+			writers.add(new Thread(() -> {
+				try {
+					for (int j = 0; j < 1000; j++) {
+						source.write(new Statement());
+					}
+					source.write(Sink.END_OF_FLOW_TOKEN);
+					source.close();
+				} catch (IOException e) {
+					System.err.println(e.getMessage());
+				}
+			}));
+		}
+		writers.forEach(Thread::start);
+
+		for (Thread thread : writers) {
+			thread.join();
+		}
+		for (Future<?> future : futures.values()) {
+			future.get();
+		}
+
+		Assert.assertEquals(3000, counter.get());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void cannotConnectMoreChannelsThanSinkPipePorts() throws IOException {
+
+		Multiplexer mux = new Multiplexer(10, 1);
+
+		new SourcePipePort(10).connect(mux.getSinkPipePort());
+		new SourcePipePort(10).connect(mux.getSinkPipePort());
+	}
+}
@@ -0,0 +1,119 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class FanInPipeTest {
+
+	@Test
+	public void readAllStatementsOfAllWriters() throws Exception {
+
+		FanInPipe pipe = new FanInPipe(8, 4);
+
+		List<Thread> writers = new ArrayList<>();
+		Set<Statement> written = new HashSet<>();
+
+		for (SinkPipePort port : pipe.getSinkPipePorts()) {
+
+			SourcePipePort source = new SourcePipePort(8);
+			source.connect(port);
+
+			Statement[] statements = new Statement[1000];
+			for (int i = 0; i < statements.length; i++) {
+				statements[i] = new Statement();
+				written.add(statements[i]);
+			}
+
+			writers.add(new Thread(() -> {
+				try {
+					for (int i = 0; i < statements.length; i += 10) {
+						source.write(statements, i, 10);
+					}
+					source.write((Statement) null);
+					source.close();
+				} catch (IOException e) {
+					System.err.println(e.getMessage());
+				}
+			}));
+		}
+		writers.forEach(Thread::start);
+
+		Set<Statement> received = new HashSet<>();
+		Statement[] buffer = new Statement[8];
+		int n;
+		while ((n = pipe.read(buffer, 0, buffer.length)) != -1) {
+			for (int i = 0; i < n; i++) {
+				Assert.assertNotNull(buffer[i]);
+				received.add(buffer[i]);
+			}
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+
+		Assert.assertEquals(written, received);
+	}
+
+	@Test
+	public void readStatementsWrittenFromAList() throws Exception {
+
+		FanInPipe pipe = new FanInPipe(8, 1);
+
+		SourcePipePort source = new SourcePipePort(8);
+		source.connect(pipe.getSinkPipePorts().get(0));
+
+		List<Statement> statements = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			statements.add(new Statement());
+		}
+		// the END_OF_FLOW_TOKEN in the list finishes the port
+		statements.add(null);
+		statements.add(new Statement());
+
+		source.write(statements, 1, 7);
+
+		for (int i = 1; i < 6; i++) {
+			Assert.assertSame(statements.get(i), pipe.read());
+		}
+		Assert.assertNull(pipe.read());
+	}
+
+	@Test
+	public void endOfStreamOnlyWhenAllWritersFinished() throws Exception {
+
+		FanInPipe pipe = new FanInPipe(8, 2);
+
+		SourcePipePort source1 = new SourcePipePort(8);
+		source1.connect(pipe.getSinkPipePorts().get(0));
+		SourcePipePort source2 = new SourcePipePort(8);
+		source2.connect(pipe.getSinkPipePorts().get(1));
+
+		source1.write(new Statement());
+		source1.close();
+
+		Assert.assertNotNull(pipe.read());
+
+		Thread finisher = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+				source2.close();
+			} catch (IOException | InterruptedException e) {
+				System.err.println(e.getMessage());
+			}
+		});
+		finisher.start();
+
+		long start = System.nanoTime();
+		Assert.assertNull(pipe.read());
+		Assert.assertTrue(System.nanoTime() - start > 10_000_000);
+
+		finisher.join();
+	}
+}
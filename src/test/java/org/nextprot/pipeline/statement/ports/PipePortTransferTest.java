@@ -0,0 +1,108 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Check that statement-by-statement and bulk writes transfer every statement in order between two threads
+ */
+public class PipePortTransferTest {
+
+	private static final int STATEMENT_COUNT = 10_000;
+	private static final int CAPACITY = 100;
+
+	@Test
+	public void transferThroughMonitor() throws Exception {
+
+		assertTransfer(PipePortType.MONITOR, false);
+	}
+
+	@Test
+	public void bulkTransferThroughMonitor() throws Exception {
+
+		assertTransfer(PipePortType.MONITOR, true);
+	}
+
+	@Test
+	public void transferThroughRing() throws Exception {
+
+		assertTransfer(PipePortType.SPSC_RING, false);
+	}
+
+	@Test
+	public void bulkTransferThroughRing() throws Exception {
+
+		assertTransfer(PipePortType.SPSC_RING, true);
+	}
+
+	private static void assertTransfer(PipePortType type, boolean bulk) throws Exception {
+
+		SinkPipePort sink = new SinkPipePort(CAPACITY, type);
+		SourcePipePort source = new SourcePipePort(CAPACITY);
+		source.connect(sink);
+
+		AtomicReference<IOException> error = new AtomicReference<>();
+
+		Thread writer = new Thread(() -> {
+			try {
+				Statement[] statements = new Statement[CAPACITY];
+
+				for (int i = 0; i < STATEMENT_COUNT; i += CAPACITY) {
+
+					for (int j = 0; j < CAPACITY; j++) {
+						statements[j] = newStatement(i + j);
+					}
+					if (bulk) {
+						source.write(statements, 0, CAPACITY);
+					} else {
+						for (Statement statement : statements) {
+							source.write(statement);
+						}
+						source.flush();
+					}
+				}
+				source.close();
+			} catch (IOException e) {
+				error.set(e);
+			}
+		});
+		writer.start();
+
+		List<String> ids = new ArrayList<>();
+		Statement[] buffer = new Statement[CAPACITY];
+		int n;
+
+		read:
+		while ((n = sink.read(buffer, 0, CAPACITY)) != -1) {
+
+			for (int i = 0; i < n; i++) {
+				if (buffer[i] == null) {
+					break read;
+				}
+				ids.add(buffer[i].getValue(CoreStatementField.STATEMENT_ID));
+			}
+		}
+		writer.join();
+
+		Assert.assertNull(error.get());
+		Assert.assertEquals(STATEMENT_COUNT, ids.size());
+
+		for (int i = 0; i < STATEMENT_COUNT; i++) {
+			Assert.assertEquals(String.valueOf(i), ids.get(i));
+		}
+	}
+
+	private static Statement newStatement(int id) {
+
+		Statement statement = new Statement();
+		statement.put(CoreStatementField.STATEMENT_ID, String.valueOf(id));
+		return statement;
+	}
+}
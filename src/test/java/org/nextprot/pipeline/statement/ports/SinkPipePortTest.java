@@ -0,0 +1,441 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointCoordinator;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointStore;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+import org.nextprot.pipeline.statement.metrics.PortMetrics;
+import org.nextprot.pipeline.statement.metrics.SpillMetrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+public class SinkPipePortTest {
+
+	@Test
+	public void transferWithMonitor() throws Exception {
+
+		assertTransferInOrder(PipePortType.MONITOR, 10, 10000);
+	}
+
+	@Test
+	public void transferWithRing() throws Exception {
+
+		assertTransferInOrder(PipePortType.SPSC_RING, 10, 10000);
+	}
+
+	@Test
+	public void transferWithRingOfCapacityOne() throws Exception {
+
+		assertTransferInOrder(PipePortType.SPSC_RING, 1, 1000);
+	}
+
+	@Test
+	public void transferWithRingAndBusySpin() throws Exception {
+
+		assertTransferInOrder(new SinkPipePort(10, PipePortType.SPSC_RING, new BusySpinWaitStrategy()), 1000);
+	}
+
+	@Test
+	public void transferWithRingAndYielding() throws Exception {
+
+		assertTransferInOrder(new SinkPipePort(10, PipePortType.SPSC_RING, new YieldingWaitStrategy()), 10000);
+	}
+
+	@Test
+	public void transferWithRingAndBlocking() throws Exception {
+
+		assertTransferInOrder(new SinkPipePort(10, PipePortType.SPSC_RING, new BlockingWaitStrategy()), 10000);
+	}
+
+	@Test
+	public void readerWaitTimeIsReported() throws Exception {
+
+		SinkPipePort sink = new SinkPipePort(4, PipePortType.SPSC_RING, new BlockingWaitStrategy());
+		SourcePipePort source = new SourcePipePort(4);
+		source.connect(sink);
+
+		Thread writer = new Thread(() -> {
+			try {
+				Thread.sleep(50);
+				source.write(new Statement());
+			} catch (IOException | InterruptedException e) {
+				System.err.println(e.getMessage());
+			}
+		});
+		writer.start();
+
+		Assert.assertNotNull(sink.read());
+		writer.join();
+
+		Assert.assertTrue(sink.getReaderWaitTimeNanos() > 0);
+		Assert.assertEquals(0, sink.getWriterWaitTimeNanos());
+	}
+
+	@Test
+	public void readEndOfFlowWithRing() throws IOException {
+
+		SinkPipePort sink = new SinkPipePort(4, PipePortType.SPSC_RING);
+		SourcePipePort source = new SourcePipePort(4);
+		source.connect(sink);
+
+		Statement statement = new Statement();
+		source.write(statement);
+		source.close();
+
+		Statement[] buffer = new Statement[4];
+
+		Assert.assertEquals(1, sink.read(buffer, 0, 4));
+		Assert.assertSame(statement, buffer[0]);
+		Assert.assertEquals(-1, sink.read(buffer, 0, 4));
+	}
+
+	@Test
+	public void writerDetectsClosedReaderWithRing() throws Exception {
+
+		SinkPipePort sink = new SinkPipePort(2, PipePortType.SPSC_RING);
+		SourcePipePort source = new SourcePipePort(2);
+		source.connect(sink);
+
+		AtomicReference<IOException> error = new AtomicReference<>();
+
+		Thread writer = new Thread(() -> {
+			try {
+				for (int i = 0; i < 10; i++) {
+					source.write(new Statement());
+				}
+			} catch (IOException e) {
+				error.set(e);
+			}
+		});
+		writer.start();
+
+		// let the writer fill the ring and park
+		Thread.sleep(100);
+		sink.close();
+		writer.join(1000);
+
+		Assert.assertFalse(writer.isAlive());
+		Assert.assertNotNull(error.get());
+	}
+
+	@Test
+	public void bulkTransferLargerThanCapacityWithMonitor() throws Exception {
+
+		assertBulkTransferInOrder(PipePortType.MONITOR, 7, 1000);
+	}
+
+	@Test
+	public void bulkTransferLargerThanCapacityWithRing() throws Exception {
+
+		assertBulkTransferInOrder(PipePortType.SPSC_RING, 7, 1000);
+	}
+
+	@Test
+	public void countStatementsInAndOut() throws IOException {
+
+		SinkPipePort sink = new SinkPipePort(10, PipePortType.SPSC_RING);
+		SourcePipePort source = new SourcePipePort(10);
+		source.connect(sink);
+
+		source.write(new Statement[] { new Statement(), new Statement(), new Statement() }, 0, 3);
+		source.write(new Statement());
+
+		Assert.assertNotNull(sink.read());
+
+		PortMetrics metrics = source.getMetrics();
+
+		Assert.assertEquals(10, metrics.getCapacity());
+		Assert.assertEquals(4, metrics.getReceivedCount());
+		Assert.assertEquals(1, metrics.getReadCount());
+		Assert.assertEquals(3, metrics.getSize());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void cannotChangeTypeOfConnectedPort() throws IOException {
+
+		SinkPipePort sink = new SinkPipePort(2);
+		new SourcePipePort(2).connect(sink);
+
+		sink.setType(PipePortType.SPSC_RING);
+	}
+
+	@Test
+	public void spillWhenFullWithoutBlockingTheWriter() throws IOException {
+
+		Path directory = Files.createTempDirectory("spill");
+
+		SinkPipePort sink = new SinkPipePort(10, PipePortType.MONITOR);
+		sink.setSpillover(directory, new StatementCodec(Collections.singletonList(CoreStatementField.STATEMENT_ID)));
+		SourcePipePort source = new SourcePipePort(10);
+		source.connect(sink);
+
+		// nobody reads: the writer would block on a full buffer
+		for (int i = 0; i < 1000; i += 10) {
+			source.write(newStatements(i, 10), 0, 10);
+		}
+		source.write((Statement) null);
+		source.close();
+
+		SpillMetrics metrics = sink.getSpillMetrics();
+
+		Assert.assertEquals(990, metrics.getSpilledCount());
+		Assert.assertTrue(metrics.getFileSize() > 0);
+		Assert.assertEquals(1000, sink.size());
+
+		List<Statement> received = readAll(sink);
+
+		Assert.assertEquals(1000, received.size());
+		for (int i = 0; i < 1000; i++) {
+			Assert.assertEquals(String.valueOf(i), received.get(i).getValue(CoreStatementField.STATEMENT_ID));
+		}
+		Assert.assertEquals(990, sink.getSpillMetrics().getReplayedCount());
+
+		// the spill file is deleted at the end of the flow
+		try (Stream<Path> files = Files.list(directory)) {
+			Assert.assertEquals(0, files.count());
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void spillAndReplayConcurrentlyInOrder() throws Exception {
+
+		Path directory = Files.createTempDirectory("spill");
+
+		SinkPipePort sink = new SinkPipePort(7, PipePortType.SPSC_RING);
+		sink.setSpillover(directory, new StatementCodec(Collections.singletonList(CoreStatementField.STATEMENT_ID)));
+		SourcePipePort source = new SourcePipePort(7);
+		source.connect(sink);
+
+		int count = 100000;
+
+		Thread writer = new Thread(() -> {
+			try {
+				for (int i = 0; i < count; i += 7) {
+					source.write(newStatements(i, Math.min(7, count - i)), 0, Math.min(7, count - i));
+				}
+				source.write((Statement) null);
+				source.close();
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		});
+		writer.start();
+
+		List<Statement> received = new ArrayList<>();
+		Statement[] buffer = new Statement[7];
+		int n;
+
+		read:
+		while ((n = sink.read(buffer, 0, buffer.length)) != -1) {
+			for (int i = 0; i < n; i++) {
+				if (buffer[i] == null) {
+					break read;
+				}
+				received.add(buffer[i]);
+			}
+		}
+		writer.join();
+		sink.close();
+
+		Assert.assertEquals(count, received.size());
+		for (int i = 0; i < count; i++) {
+			Assert.assertEquals(String.valueOf(i), received.get(i).getValue(CoreStatementField.STATEMENT_ID));
+		}
+		Files.delete(directory);
+	}
+
+	@Test
+	public void handBarrierOverBetweenReads() throws IOException {
+
+		SinkPipePort sink = new SinkPipePort(10, PipePortType.MONITOR);
+		List<CheckpointBarrier> handled = new ArrayList<>();
+		sink.setBarrierHandler(handled::add);
+		SourcePipePort source = new SourcePipePort(10);
+		source.connect(sink);
+
+		Path directory = Files.createTempDirectory("checkpoint");
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(new CheckpointStore(directory.resolve("c")), 0, TimeUnit.SECONDS);
+		CheckpointBarrier barrier = checkpoints.newBarrier(Collections.singletonMap("0", 4L), false);
+
+		source.write(newStatements(0, 4), 0, 4);
+		source.write(barrier);
+		source.write(newStatements(4, 3), 0, 3);
+		source.close();
+
+		Statement[] buffer = new Statement[10];
+
+		Assert.assertEquals(4, sink.read(buffer, 0, 10));
+		Assert.assertTrue(handled.isEmpty());
+		Assert.assertEquals(3, sink.read(buffer, 0, 10));
+		Assert.assertEquals(Collections.singletonList(barrier), handled);
+		Assert.assertEquals("4", buffer[0].getValue(CoreStatementField.STATEMENT_ID));
+		Assert.assertEquals(-1, sink.read(buffer, 0, 10));
+		Files.delete(directory);
+	}
+
+	@Test
+	public void dropBarrierWithoutHandler() throws IOException {
+
+		SinkPipePort sink = new SinkPipePort(10, PipePortType.MONITOR);
+		SourcePipePort source = new SourcePipePort(10);
+		source.connect(sink);
+
+		Path directory = Files.createTempDirectory("checkpoint");
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(new CheckpointStore(directory.resolve("c")), 0, TimeUnit.SECONDS);
+
+		source.write(newStatements(0, 2), 0, 2);
+		source.write(checkpoints.newBarrier(Collections.singletonMap("0", 2L), false));
+		source.write(newStatements(2, 1), 0, 1);
+		source.write(checkpoints.newBarrier(Collections.singletonMap("0", 3L), false));
+		source.write((Statement) null);
+		source.close();
+
+		Statement[] buffer = new Statement[10];
+
+		Assert.assertEquals(2, sink.read(buffer, 0, 10));
+		Assert.assertEquals("2", sink.read().getValue(CoreStatementField.STATEMENT_ID));
+		Assert.assertNull(sink.read());
+		Files.delete(directory);
+	}
+
+	@Test
+	public void spillBarriersInOrder() throws IOException {
+
+		Path directory = Files.createTempDirectory("spill");
+
+		SinkPipePort sink = new SinkPipePort(2, PipePortType.MONITOR);
+		sink.setSpillover(directory, new StatementCodec(Collections.singletonList(CoreStatementField.STATEMENT_ID)));
+		List<Integer> handledAt = new ArrayList<>();
+		List<Statement> received = new ArrayList<>();
+		sink.setBarrierHandler(barrier -> handledAt.add(received.size()));
+		SourcePipePort source = new SourcePipePort(2);
+		source.connect(sink);
+
+		CheckpointCoordinator checkpoints = new CheckpointCoordinator(new CheckpointStore(directory.resolve("c")), 0, TimeUnit.SECONDS);
+
+		for (int i = 0; i < 10; i += 2) {
+			source.write(newStatements(i, 2), 0, 2);
+			source.write(checkpoints.newBarrier(Collections.singletonMap("0", (long) i + 2), false));
+		}
+		source.write((Statement) null);
+		source.close();
+
+		Assert.assertEquals(8, sink.getSpillMetrics().getSpilledCount());
+
+		Statement statement;
+		while ((statement = sink.read()) != null) {
+			received.add(statement);
+		}
+		Assert.assertEquals(10, received.size());
+		Assert.assertEquals(Arrays.asList(2, 4, 6, 8, 10), handledAt);
+		Files.delete(directory);
+	}
+
+	private static Statement[] newStatements(int from, int count) {
+
+		Statement[] statements = new Statement[count];
+
+		for (int i = 0; i < count; i++) {
+			statements[i] = new Statement();
+			statements[i].put(CoreStatementField.STATEMENT_ID, String.valueOf(from + i));
+		}
+		return statements;
+	}
+
+	private static void assertBulkTransferInOrder(PipePortType type, int capacity, int count) throws Exception {
+
+		SinkPipePort sink = new SinkPipePort(capacity, type);
+		SourcePipePort source = new SourcePipePort(capacity);
+		source.connect(sink);
+
+		Statement[] statements = new Statement[count];
+		for (int i = 0; i < count; i++) {
+			statements[i] = new Statement();
+		}
+
+		Thread writer = new Thread(() -> {
+			try {
+				// batches of 3 capacities wrapping around the buffer
+				for (int i = 0; i < count; i += 3 * capacity) {
+					source.write(statements, i, Math.min(3 * capacity, count - i));
+				}
+				source.close();
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		});
+		writer.start();
+
+		List<Statement> received = readAll(sink);
+		writer.join();
+
+		Assert.assertEquals(count, received.size());
+		for (int i = 0; i < count; i++) {
+			Assert.assertSame(statements[i], received.get(i));
+		}
+	}
+
+	private static List<Statement> readAll(SinkPipePort sink) throws IOException {
+
+		List<Statement> received = new ArrayList<>();
+		Statement[] buffer = new Statement[sink.capacity()];
+		int n;
+		while ((n = sink.read(buffer, 0, buffer.length)) != -1) {
+			for (int i = 0; i < n; i++) {
+				received.add(buffer[i]);
+			}
+		}
+		return received;
+	}
+
+	private static void assertTransferInOrder(PipePortType type, int capacity, int count) throws Exception {
+
+		assertTransferInOrder(new SinkPipePort(capacity, type), count);
+	}
+
+	private static void assertTransferInOrder(SinkPipePort sink, int count) throws Exception {
+
+		int capacity = sink.capacity();
+		SourcePipePort source = new SourcePipePort(capacity);
+		source.connect(sink);
+
+		List<Statement> statements = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			statements.add(new Statement());
+		}
+
+		Thread writer = new Thread(() -> {
+			try {
+				for (int i = 0; i < count; i += capacity) {
+					source.write(statements, i, Math.min(capacity, count - i));
+				}
+				source.close();
+			} catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		});
+		writer.start();
+
+		List<Statement> received = readAll(sink);
+		writer.join();
+
+		Assert.assertEquals(count, received.size());
+		for (int i = 0; i < count; i++) {
+			Assert.assertSame(statements.get(i), received.get(i));
+		}
+	}
+}
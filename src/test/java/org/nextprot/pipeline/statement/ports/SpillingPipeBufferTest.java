@@ -0,0 +1,164 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.codec.StatementCodec;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class SpillingPipeBufferTest {
+
+	@Test
+	public void takeMemoryBeforeStatementsSpilledWhileCheckingIt() throws IOException {
+
+		Path directory = Files.createTempDirectory("spill");
+
+		RacingPipeBuffer memory = new RacingPipeBuffer(new MonitorPipeBuffer(2));
+		SpillingPipeBuffer buffer = new SpillingPipeBuffer(memory, directory,
+				new StatementCodec(Collections.singletonList(CoreStatementField.STATEMENT_ID)));
+
+		// the reader sees an empty memory, then the writer fills it and spills before the reader takes the lock
+		memory.onceEmpty = () -> {
+			for (int i = 0; i < 3; i++) {
+				buffer.put(newStatement(i));
+			}
+			buffer.put((Statement) null);
+		};
+
+		List<String> ids = new ArrayList<>();
+		Statement statement;
+
+		while ((statement = buffer.take()) != null) {
+			ids.add(statement.getValue(CoreStatementField.STATEMENT_ID));
+		}
+
+		Assert.assertEquals(Arrays.asList("0", "1", "2"), ids);
+		buffer.closeByReader();
+		Files.delete(directory);
+	}
+
+	private static Statement newStatement(int id) {
+
+		Statement statement = new Statement();
+		statement.put(CoreStatementField.STATEMENT_ID, String.valueOf(id));
+		return statement;
+	}
+
+	private interface Action {
+
+		void run() throws IOException;
+	}
+
+	/**
+	 * A buffer running an action the first time it is found empty, as if another thread ran it right after the check
+	 */
+	private static class RacingPipeBuffer implements PipeBuffer {
+
+		private final PipeBuffer delegate;
+		private Action onceEmpty;
+
+		private RacingPipeBuffer(PipeBuffer delegate) {
+
+			this.delegate = delegate;
+		}
+
+		@Override
+		public boolean isEmpty() throws IOException {
+
+			boolean empty = delegate.isEmpty();
+
+			if (empty && onceEmpty != null) {
+				Action action = onceEmpty;
+				onceEmpty = null;
+				action.run();
+			}
+			return empty;
+		}
+
+		@Override
+		public int capacity() {
+
+			return delegate.capacity();
+		}
+
+		@Override
+		public void put(Statement statement) throws IOException {
+
+			delegate.put(statement);
+		}
+
+		@Override
+		public void put(List<Statement> statements, int off, int len) throws IOException {
+
+			delegate.put(statements, off, len);
+		}
+
+		@Override
+		public void put(Statement[] statements, int off, int len) throws IOException {
+
+			delegate.put(statements, off, len);
+		}
+
+		@Override
+		public Statement take() throws IOException {
+
+			return delegate.take();
+		}
+
+		@Override
+		public int take(Statement[] sbuf, int off, int len) throws IOException {
+
+			return delegate.take(sbuf, off, len);
+		}
+
+		@Override
+		public int size() {
+
+			return delegate.size();
+		}
+
+		@Override
+		public void flush() {
+
+			delegate.flush();
+		}
+
+		@Override
+		public void closeByWriter() {
+
+			delegate.closeByWriter();
+		}
+
+		@Override
+		public void closeByReader() {
+
+			delegate.closeByReader();
+		}
+
+		@Override
+		public boolean isClosedByReader() {
+
+			return delegate.isClosedByReader();
+		}
+
+		@Override
+		public long getReaderWaitTimeNanos() {
+
+			return delegate.getReaderWaitTimeNanos();
+		}
+
+		@Override
+		public long getWriterWaitTimeNanos() {
+
+			return delegate.getWriterWaitTimeNanos();
+		}
+	}
+}
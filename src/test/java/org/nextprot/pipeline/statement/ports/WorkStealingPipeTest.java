@@ -0,0 +1,103 @@
+package org.nextprot.pipeline.statement.ports;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointBarrier;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointCoordinator;
+import org.nextprot.pipeline.statement.checkpoint.CheckpointStore;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class WorkStealingPipeTest {
+
+	private SinkPipePort busy;
+	private SinkPipePort idle;
+	private SourcePipePort busySource;
+	private WorkStealingPipe pipe;
+
+	@Before
+	public void connect() throws Exception {
+
+		busy = new SinkPipePort(10);
+		idle = new SinkPipePort(10);
+		pipe = new WorkStealingPipe(Arrays.asList(busy, idle));
+
+		busySource = new SourcePipePort(10);
+		busySource.connect(busy);
+		new SourcePipePort(10).connect(idle);
+	}
+
+	@Test
+	public void idleBranchStealsHalfOfTheTail() throws Exception {
+
+		Statement[] statements = newStatements(10);
+		busySource.write(statements, 0, 10);
+
+		Statement[] buffer = new Statement[10];
+
+		Assert.assertEquals(5, idle.read(buffer, 0, 10));
+		for (int i = 0; i < 5; i++) {
+			Assert.assertSame(statements[5 + i], buffer[i]);
+		}
+		Assert.assertEquals(5, pipe.getStolenCount(1));
+		Assert.assertEquals(0, pipe.getStolenCount(0));
+
+		Assert.assertEquals(5, busy.read(buffer, 0, 10));
+		for (int i = 0; i < 5; i++) {
+			Assert.assertSame(statements[i], buffer[i]);
+		}
+	}
+
+	@Test
+	public void statementsBeforeABarrierAreNeverStolen() throws Exception {
+
+		List<CheckpointBarrier> handled = new ArrayList<>();
+		busy.setBarrierHandler(handled::add);
+
+		Path directory = Files.createTempDirectory("checkpoint");
+		CheckpointBarrier barrier = new CheckpointCoordinator(new CheckpointStore(directory.resolve("none")), 0, TimeUnit.MILLISECONDS)
+				.newBarrier(Collections.emptyMap(), false);
+		Files.delete(directory);
+
+		Statement[] statements = newStatements(6);
+
+		busySource.write(statements, 0, 4);
+		busySource.write(barrier);
+		busySource.write(statements, 4, 2);
+		busySource.write((Statement) null);
+
+		Statement[] buffer = new Statement[10];
+
+		// only the statements after the barrier, never the END_OF_FLOW_TOKEN
+		Assert.assertEquals(1, idle.read(buffer, 0, 10));
+		Assert.assertSame(statements[5], buffer[0]);
+		Assert.assertEquals(1, idle.read(buffer, 0, 10));
+		Assert.assertSame(statements[4], buffer[0]);
+		Assert.assertEquals(6, busy.size());
+
+		Assert.assertEquals(4, busy.read(buffer, 0, 10));
+		for (int i = 0; i < 4; i++) {
+			Assert.assertSame(statements[i], buffer[i]);
+		}
+		Assert.assertEquals(-1, busy.read(buffer, 0, 10));
+		Assert.assertEquals(Collections.singletonList(barrier), handled);
+	}
+
+	private static Statement[] newStatements(int count) {
+
+		Statement[] statements = new Statement[count];
+
+		for (int i = 0; i < count; i++) {
+			statements[i] = new Statement();
+		}
+		return statements;
+	}
+}
@@ -0,0 +1,96 @@
+package org.nextprot.pipeline.statement.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MappedJsonStatementFileTest {
+
+	private static final String[] STATEMENTS = {
+			"{\"ENTRY_ACCESSION\":\"NX_P01308\",\"ANNOTATION_NAME\":\"{not an object}\"}",
+			"{\"ENTRY_ACCESSION\":\"NX_P01308\",\"ANNOTATION_NAME\":\"a \\\"quoted}\\\" name\"}",
+			"{\"ENTRY_ACCESSION\":\"NX_Q9Y6K9\",\"EXTRA_FIELDS\":{\"CANONICAL\":\"[YES]\"}}",
+			"{\"ENTRY_ACCESSION\":\"NX_P04637\"}",
+			"{\"ENTRY_ACCESSION\":\"NX_P38398\",\"ANNOTATION_NAME\":\"},{\"}"
+	};
+
+	@Test
+	public void splitAtStatementBoundaries() throws IOException {
+
+		assertSplitAtStatementBoundaries(3, MappedJsonStatementFile.MAX_WINDOW_SIZE);
+	}
+
+	@Test
+	public void splitAtStatementBoundariesAcrossWindows() throws IOException {
+
+		assertSplitAtStatementBoundaries(2, 16);
+	}
+
+	@Test
+	public void splitAtStatementBoundariesWithAnyChunkSize() throws IOException {
+
+		// chunks starting anywhere: in a string, after an escaping backslash, between two objects...
+		for (int maxWindowSize = 2; maxWindowSize <= 64; maxWindowSize++) {
+			assertSplitAtStatementBoundaries(2, maxWindowSize);
+		}
+	}
+
+	@Test
+	public void splitInMoreRangesThanStatements() throws IOException {
+
+		Assert.assertEquals(STATEMENTS.length, assertSplitAtStatementBoundaries(100, MappedJsonStatementFile.MAX_WINDOW_SIZE));
+	}
+
+	@Test
+	public void splitEmptyArray() throws IOException {
+
+		Path path = writeJson("[ ]");
+
+		try (MappedJsonStatementFile file = new MappedJsonStatementFile(path)) {
+
+			Assert.assertTrue(file.split(4).isEmpty());
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private static int assertSplitAtStatementBoundaries(int count, int maxWindowSize) throws IOException {
+
+		String json = "[\n  " + String.join(",\n  ", STATEMENTS) + "\n]\n";
+		Path path = writeJson(json);
+
+		try (MappedJsonStatementFile file = new MappedJsonStatementFile(path, null, maxWindowSize)) {
+
+			List<MappedJsonStatementFile.Range> ranges = file.split(count);
+			List<String> statements = new ArrayList<>();
+
+			for (MappedJsonStatementFile.Range range : ranges) {
+
+				String content = json.substring((int) range.getStart(), (int) range.getEnd());
+
+				Assert.assertTrue(content.startsWith("{"));
+				Assert.assertTrue(content.endsWith("}"));
+				statements.add(content);
+			}
+			Assert.assertEquals(String.join(",\n  ", STATEMENTS), String.join(",\n  ", statements));
+
+			return ranges.size();
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private static Path writeJson(String json) throws IOException {
+
+		Path path = Files.createTempFile("statements", ".json");
+		Files.write(path, json.getBytes(StandardCharsets.UTF_8));
+
+		return path;
+	}
+}
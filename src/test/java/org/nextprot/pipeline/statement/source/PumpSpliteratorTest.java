@@ -0,0 +1,152 @@
+package org.nextprot.pipeline.statement.source;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.nextprot.commons.statements.Statement;
+import org.nextprot.commons.statements.specs.CoreStatementField;
+import org.nextprot.pipeline.statement.Pump;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class PumpSpliteratorTest {
+
+	@Test
+	public void streamPumpsInOrder() {
+
+		try (Stream<Statement> stream = PumpSpliterator.stream(numberedPumps(3, 1000, 100))) {
+
+			Assert.assertEquals(expectedIds(3000), stream.map(PumpSpliteratorTest::getId).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void parallelStreamKeepsEncounterOrder() {
+
+		try (Stream<Statement> stream = PumpSpliterator.stream(numberedPumps(4, 25000, 100)).parallel()) {
+
+			Assert.assertEquals(expectedIds(100000), stream.map(PumpSpliteratorTest::getId).collect(Collectors.toList()));
+		}
+	}
+
+	@Test
+	public void parallelStreamOfSinglePump() {
+
+		try (Stream<Statement> stream = PumpSpliterator.stream(numberedPumps(1, 100000, 100).get(0)).parallel()) {
+
+			Assert.assertEquals(100000, stream.count());
+		}
+	}
+
+	@Test
+	public void splitPumpsThenBatches() {
+
+		List<NumberedPump> pumps = numberedPumps(2, 250, 100);
+		PumpSpliterator spliterator = new PumpSpliterator(pumps);
+
+		Spliterator<Statement> firstPump = spliterator.trySplit();
+
+		Assert.assertFalse(firstPump.hasCharacteristics(Spliterator.SIZED));
+		Assert.assertTrue(firstPump.hasCharacteristics(Spliterator.ORDERED));
+
+		// a batch, then two batches of the second pump
+		Spliterator<Statement> batch = spliterator.trySplit();
+
+		Assert.assertTrue(batch.hasCharacteristics(Spliterator.SIZED));
+		Assert.assertEquals(100, batch.estimateSize());
+		Assert.assertEquals(150, spliterator.trySplit().estimateSize());
+		Assert.assertNull(spliterator.trySplit());
+		Assert.assertTrue(pumps.get(1).closed);
+
+		List<Integer> ids = new ArrayList<>();
+
+		firstPump.forEachRemaining(statement -> ids.add(getId(statement)));
+		batch.forEachRemaining(statement -> ids.add(getId(statement)));
+
+		Assert.assertEquals(expectedIds(350), ids);
+		Assert.assertTrue(pumps.get(0).closed);
+	}
+
+	private static List<Integer> expectedIds(int count) {
+
+		return IntStream.range(0, count).boxed().collect(Collectors.toList());
+	}
+
+	private static int getId(Statement statement) {
+
+		return Integer.parseInt(statement.getValue(CoreStatementField.STATEMENT_ID));
+	}
+
+	/**
+	 * @return pumps of consecutively numbered statements
+	 */
+	private static List<NumberedPump> numberedPumps(int pumpCount, int statementCount, int capacity) {
+
+		List<NumberedPump> pumps = new ArrayList<>();
+
+		for (int i = 0; i < pumpCount; i++) {
+			pumps.add(new NumberedPump(i * statementCount, statementCount, capacity));
+		}
+		return pumps;
+	}
+
+	private static class NumberedPump implements Pump<Statement> {
+
+		private final int end;
+		private final int capacity;
+		private int next;
+		private boolean closed = false;
+
+		private NumberedPump(int first, int count, int capacity) {
+
+			this.next = first;
+			this.end = first + count;
+			this.capacity = capacity;
+		}
+
+		@Override
+		public Statement pump() {
+
+			if (next == end) {
+				return null;
+			}
+			Statement statement = new Statement();
+			statement.put(CoreStatementField.STATEMENT_ID, String.valueOf(next++));
+			return statement;
+		}
+
+		@Override
+		public int capacity() {
+
+			return capacity;
+		}
+
+		@Override
+		public int pump(List<Statement> collector) {
+
+			int count = 0;
+
+			while (count < capacity && next < end) {
+				collector.add(pump());
+				count++;
+			}
+			return (count == 0) ? -1 : count;
+		}
+
+		@Override
+		public boolean isEmpty() {
+
+			return next == end;
+		}
+
+		@Override
+		public void close() {
+
+			closed = true;
+		}
+	}
+}